@@ -0,0 +1,37 @@
+package com.northwind.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+
+// Runs the DAO benchmarks once per thread count and writes one JSON result file per run:
+//   java -jar benchmarks/target/benchmarks.jar [jmh options] [-Dthreads=1,4,16] [-Dresults=target/jmh]
+// Compare two commits with any JMH JSON viewer, or diff the "primaryMetric.score" fields.
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        String resultsDir = System.getProperty("results", "target/jmh");
+        new File(resultsDir).mkdirs();
+
+        for (String threads : System.getProperty("threads", "1,4,16").split(",")) {
+            int threadCount = Integer.parseInt(threads.trim());
+
+            OptionsBuilder options = new OptionsBuilder();
+            options.parent(commandLine);
+            if (commandLine.getIncludes().isEmpty()) {
+                options.include("com\\.northwind\\.benchmarks\\..*");
+            }
+            options.threads(threadCount)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(resultsDir + "/dao-t" + threadCount + ".json");
+
+            new Runner(options.build()).run();
+        }
+    }
+}
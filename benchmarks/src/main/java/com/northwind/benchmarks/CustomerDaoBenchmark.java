@@ -0,0 +1,62 @@
+package com.northwind.benchmarks;
+
+import com.northwind.data.CustomerDao;
+import com.northwind.model.Customer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CustomerDaoBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int tableSize;
+
+    private EmbeddedNorthwind database;
+    private CustomerDao customerDao;
+    private final AtomicInteger nextId = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        database = EmbeddedNorthwind.start(0, tableSize);
+        customerDao = new CustomerDao(database.getRunner());
+        nextId.set(tableSize);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        database.close();
+    }
+
+    @Benchmark
+    public Customer find() {
+        return customerDao.find(EmbeddedNorthwind.customerId(ThreadLocalRandom.current().nextInt(tableSize)));
+    }
+
+    @Benchmark
+    public List<Customer> getAll() {
+        return customerDao.getAll();
+    }
+
+    @Benchmark
+    public void update() {
+        Customer customer = EmbeddedNorthwind.newCustomer(ThreadLocalRandom.current().nextInt(tableSize));
+        customer.setPhone("555-" + ThreadLocalRandom.current().nextInt(10000));
+        customerDao.update(customer);
+    }
+
+    // delete is measured together with the add that gives it a row to remove, so the table size stays put
+    @Benchmark
+    public void addThenDelete() {
+        Customer customer = customerDao.add(EmbeddedNorthwind.newCustomer(nextId.getAndIncrement()));
+        customerDao.delete(customer.getCustomerId());
+    }
+}
@@ -0,0 +1,130 @@
+package com.northwind.benchmarks;
+
+import com.northwind.data.CustomerDao;
+import com.northwind.data.JdbcRunner;
+import com.northwind.data.ProductDao;
+import com.northwind.model.Customer;
+import com.northwind.model.Product;
+import org.apache.commons.dbcp2.BasicDataSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+// An in-memory H2 database in MySQL mode, loaded with Northwind-shaped rows.
+// Runs in-process, so the benchmarks need no MySQL server and no network.
+public final class EmbeddedNorthwind implements AutoCloseable {
+    private final BasicDataSource dataSource;
+    private final JdbcRunner runner;
+
+    private EmbeddedNorthwind(BasicDataSource dataSource) {
+        this.dataSource = dataSource;
+        this.runner = new JdbcRunner(dataSource);
+        // H2 rejects MySQL's Integer.MIN_VALUE streaming hint, so stream with a plain fetch size
+        this.runner.setStreamFetchSize(1000);
+    }
+
+    public static EmbeddedNorthwind start(int products, int customers) throws SQLException, IOException {
+        BasicDataSource dataSource = new BasicDataSource();
+        dataSource.setUrl("jdbc:h2:mem:northwind-" + UUID.randomUUID()
+                + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;CASE_INSENSITIVE_IDENTIFIERS=TRUE;DB_CLOSE_DELAY=-1");
+        dataSource.setUsername("sa");
+        dataSource.setPassword("");
+        dataSource.setMinIdle(4);
+        dataSource.setMaxTotal(64);
+        dataSource.setPoolPreparedStatements(true);
+        dataSource.setMaxOpenPreparedStatements(256);
+
+        EmbeddedNorthwind database = new EmbeddedNorthwind(dataSource);
+        database.createSchema();
+        database.loadProducts(products);
+        database.loadCustomers(customers);
+        return database;
+    }
+
+    public JdbcRunner getRunner() {
+        return runner;
+    }
+
+    public BasicDataSource getDataSource() {
+        return dataSource;
+    }
+
+    public static Product newProduct(int i) {
+        return new Product(0, "Product " + i, 1 + i % 29, 1 + i % 8, "10 boxes x 20 bags",
+                5.0 + i % 100, i % 120, 0, 10, false);
+    }
+
+    // 5 character ids like the real table: A0000, A0001, ...
+    public static String customerId(int i) {
+        String digits = Integer.toString(i, 36).toUpperCase();
+        return "C" + "0".repeat(Math.max(0, 4 - digits.length())) + digits;
+    }
+
+    public static Customer newCustomer(int i) {
+        return new Customer(customerId(i), "Company " + i, "Contact " + i, "Owner", i + " Main St.",
+                "City " + i % 90, null, String.valueOf(10000 + i % 90000), "Country " + i % 21, "555-0100", null);
+    }
+
+    private void createSchema() throws SQLException, IOException {
+        String script;
+        try (InputStream in = EmbeddedNorthwind.class.getResourceAsStream("/northwind-schema.sql")) {
+            script = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            for (String sql : script.replaceAll("(?m)^--.*$", "").split(";")) {
+                if (!sql.isBlank()) {
+                    statement.execute(sql);
+                }
+            }
+        }
+    }
+
+    private void loadProducts(int count) {
+        ProductDao productDao = new ProductDao(runner);
+        productDao.setBatchSize(1000);
+
+        List<Product> batch = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            batch.add(newProduct(i));
+            if (batch.size() == 10_000) {
+                productDao.addAll(batch);
+                batch.clear();
+            }
+        }
+        productDao.addAll(batch);
+    }
+
+    private void loadCustomers(int count) {
+        CustomerDao customerDao = new CustomerDao(runner);
+        customerDao.setBatchSize(1000);
+
+        List<Customer> batch = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            batch.add(newCustomer(i));
+            if (batch.size() == 10_000) {
+                customerDao.addAll(batch);
+                batch.clear();
+            }
+        }
+        customerDao.addAll(batch);
+    }
+
+    @Override
+    public void close() throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("SHUTDOWN");
+        } finally {
+            dataSource.close();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.northwind.benchmarks;
+
+import com.northwind.analytics.OrderColumnStore;
+import com.northwind.model.Order;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// "freight over 100, shipped via shipper 2, ordered in Q3 2024": total freight,
+// once by looping over List<Order> and once through OrderColumnStore. Everything is in memory,
+// so this measures the scan alone, not the database.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderScanBenchmark {
+    private static final String[] COUNTRIES = {"Germany", "USA", "Brazil", "France", "UK", "Mexico", "Spain"};
+
+    @Param({"100000", "1000000"})
+    public int orderCount;
+
+    private List<Order> orders;
+    private OrderColumnStore store;
+    private final LocalDateTime from = LocalDateTime.of(2024, 7, 1, 0, 0);
+    private final LocalDateTime to = LocalDateTime.of(2024, 10, 1, 0, 0);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        orders = new ArrayList<>(orderCount);
+        for (int i = 1; i <= orderCount; i++) {
+            LocalDateTime orderDate = LocalDateTime.of(2022 + random.nextInt(3), 1 + random.nextInt(12), 1 + random.nextInt(28), 0, 0);
+            String country = COUNTRIES[random.nextInt(COUNTRIES.length)];
+            orders.add(new Order(i, EmbeddedNorthwind.customerId(random.nextInt(1000)), 1 + random.nextInt(9),
+                    orderDate, orderDate, null, 1 + random.nextInt(3), random.nextInt(100_000) / 100.0,
+                    "Ship " + i, "Street " + i, country + " City " + random.nextInt(20), null, "12345", country));
+        }
+        store = OrderColumnStore.of(orders);
+    }
+
+    @Benchmark
+    public double listScan() {
+        double sum = 0;
+        for (Order order : orders) {
+            if (order.getFreight() > 100 && order.getShipVia() == 2 && order.getOrderDate() != null
+                    && !order.getOrderDate().isBefore(from) && order.getOrderDate().isBefore(to)) {
+                sum += order.getFreight();
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double columnScan() {
+        return store.select().freightAbove(100).shipVia(2).orderDateBetween(from, to).sumFreight();
+    }
+
+    @Benchmark
+    public int columnCountByCountry() {
+        return store.select().shipVia(2).countByShipCountry().size();
+    }
+}
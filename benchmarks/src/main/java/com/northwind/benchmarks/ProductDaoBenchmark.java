@@ -0,0 +1,83 @@
+package com.northwind.benchmarks;
+
+import com.northwind.data.ProductDao;
+import com.northwind.model.Product;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductDaoBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int tableSize;
+
+    private EmbeddedNorthwind database;
+    private ProductDao productDao;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        database = EmbeddedNorthwind.start(tableSize, 0);
+        productDao = new ProductDao(database.getRunner());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        database.close();
+    }
+
+    @Benchmark
+    public Product find() {
+        return productDao.find(1 + ThreadLocalRandom.current().nextInt(tableSize));
+    }
+
+    @Benchmark
+    public List<Product> getAll() {
+        return productDao.getAll();
+    }
+
+    @Benchmark
+    public void stream(Blackhole blackhole) {
+        productDao.forEach(blackhole::consume);
+    }
+
+    @Benchmark
+    public Product add() {
+        return productDao.add(EmbeddedNorthwind.newProduct(ThreadLocalRandom.current().nextInt()));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(100)
+    public List<Product> addAll() {
+        List<Product> products = new ArrayList<>(100);
+        for (int i = 0; i < 100; i++) {
+            products.add(EmbeddedNorthwind.newProduct(i));
+        }
+        return productDao.addAll(products);
+    }
+
+    @Benchmark
+    public void update() {
+        int productId = 1 + ThreadLocalRandom.current().nextInt(tableSize);
+        Product product = EmbeddedNorthwind.newProduct(productId);
+        product.setProductId(productId);
+        product.setUnitsInStock(ThreadLocalRandom.current().nextInt(100));
+        productDao.update(product);
+    }
+
+    // delete is measured together with the add that gives it a row to remove, so the table size stays put
+    @Benchmark
+    public void addThenDelete() {
+        Product product = productDao.add(EmbeddedNorthwind.newProduct(0));
+        productDao.delete(product.getProductId());
+    }
+}
@@ -0,0 +1,68 @@
+-- Northwind-shaped tables used by the benchmarks (MySQL syntax, runs on H2 in MySQL mode)
+
+CREATE TABLE Customers (
+    CustomerID   VARCHAR(5)  NOT NULL PRIMARY KEY,
+    CompanyName  VARCHAR(40) NOT NULL,
+    ContactName  VARCHAR(30),
+    ContactTitle VARCHAR(30),
+    Address      VARCHAR(60),
+    City         VARCHAR(15),
+    Region       VARCHAR(15),
+    PostalCode   VARCHAR(10),
+    Country      VARCHAR(15),
+    Phone        VARCHAR(24),
+    Fax          VARCHAR(24)
+);
+
+CREATE INDEX idx_customers_city ON Customers (City);
+
+CREATE TABLE Shippers (
+    ShipperID   INT AUTO_INCREMENT PRIMARY KEY,
+    CompanyName VARCHAR(40) NOT NULL,
+    Phone       VARCHAR(24)
+);
+
+CREATE TABLE Products (
+    ProductID       INT AUTO_INCREMENT PRIMARY KEY,
+    ProductName     VARCHAR(40) NOT NULL,
+    SupplierID      INT,
+    CategoryID      INT,
+    QuantityPerUnit VARCHAR(20),
+    UnitPrice       DECIMAL(10, 4) DEFAULT 0,
+    UnitsInStock    SMALLINT DEFAULT 0,
+    UnitsOnOrder    SMALLINT DEFAULT 0,
+    ReorderLevel    SMALLINT DEFAULT 0,
+    Discontinued    BOOLEAN NOT NULL DEFAULT FALSE
+);
+
+CREATE INDEX idx_products_name ON Products (ProductName);
+
+CREATE TABLE Orders (
+    OrderID        INT AUTO_INCREMENT PRIMARY KEY,
+    CustomerID     VARCHAR(5),
+    EmployeeID     INT,
+    OrderDate      DATETIME,
+    RequiredDate   DATETIME,
+    ShippedDate    DATETIME,
+    ShipVia        INT,
+    Freight        DECIMAL(10, 4) DEFAULT 0,
+    ShipName       VARCHAR(40),
+    ShipAddress    VARCHAR(60),
+    ShipCity       VARCHAR(15),
+    ShipRegion     VARCHAR(15),
+    ShipPostalCode VARCHAR(10),
+    ShipCountry    VARCHAR(15)
+);
+
+CREATE INDEX idx_orders_customer ON Orders (CustomerID);
+CREATE INDEX idx_orders_order_date ON Orders (OrderDate);
+CREATE INDEX idx_orders_shipped_date ON Orders (ShippedDate);
+
+CREATE TABLE `Order Details` (
+    OrderID   INT NOT NULL,
+    ProductID INT NOT NULL,
+    UnitPrice DECIMAL(10, 4) NOT NULL DEFAULT 0,
+    Quantity  SMALLINT NOT NULL DEFAULT 1,
+    Discount  DOUBLE NOT NULL DEFAULT 0,
+    PRIMARY KEY (OrderID, ProductID)
+);
@@ -1,34 +1,64 @@
 package com.northwind;
 
 import com.northwind.data.CustomerDao;
+import com.northwind.data.DataAccessException;
+import com.northwind.data.DataSourceFactory;
 import com.northwind.data.ProductDao;
 import com.northwind.data.ShipperDao;
+import com.northwind.metrics.DaoMetrics;
+import com.northwind.metrics.MethodStats;
 import com.northwind.model.Customer;
 import com.northwind.model.Product;
 import com.northwind.model.Shipper;
-import org.apache.commons.dbcp2.BasicDataSource;
 
 import javax.sql.DataSource;
+import java.util.ArrayList;
 import java.util.List;
 
 public class Program {
+    // --benchmark-insert (or --benchmark-insert=<rows>) also times add() against addAll()
+    private static final String BENCHMARK_INSERT = "--benchmark-insert";
+    private static final int DEFAULT_BENCHMARK_ROWS = 5000;
 
     public static void main(String[] args) {
-        String username = args[0];
-        String password = args[1];
-        String url = "jdbc:mysql://localhost:3306/northwind";
+        // usage: Program [username password] [--benchmark-insert[=rows]]
+        List<String> credentials = new ArrayList<>();
+        int benchmarkRows = 0;
+        for (String arg : args) {
+            if (arg.equals(BENCHMARK_INSERT)) {
+                benchmarkRows = DEFAULT_BENCHMARK_ROWS;
+            } else if (arg.startsWith(BENCHMARK_INSERT + "=")) {
+                benchmarkRows = Integer.parseInt(arg.substring(BENCHMARK_INSERT.length() + 1));
+            } else {
+                credentials.add(arg);
+            }
+        }
 
-        BasicDataSource dataSource = new BasicDataSource();
-        dataSource.setUrl(url);
-        dataSource.setUsername(username);
-        dataSource.setPassword(password);
+        // pool and driver settings come from northwind.properties (see DataSourceFactory);
+        // reads go to the replicas in db.replicaUrls when there are any
+        DataSource dataSource = credentials.size() >= 2
+                ? DataSourceFactory.createRouting(credentials.get(0), credentials.get(1))
+                : DataSourceFactory.createRouting();
 
 //        // ===================== Customer ======================
 //        CustomerDao customerDao = new CustomerDao(dataSource);
 //        List<Customer> customers = customerDao.getAll();
 //        System.out.println(customers);
 
-        testProductCrud(dataSource);
+        // DAO calls throw DataAccessException when the database fails, instead of returning null
+        try {
+            testProductCrud(dataSource);
+            if (benchmarkRows > 0) {
+                benchmarkProductInsert(dataSource, benchmarkRows);
+            }
+        } catch (DataAccessException e) {
+            System.out.println("\nThe tests stopped because a database call failed. " + e.getMessage());
+        }
+
+        // per-method latency and error counts (also visible in JConsole under com.northwind)
+        for (MethodStats stats : DaoMetrics.getDefault().getAll()) {
+            System.out.println(stats);
+        }
 
 
 //        // ===================== Shipper ======================
@@ -53,7 +83,7 @@ public class Program {
 
     }
 
-    private static void testProductCrud(BasicDataSource dataSource) {
+    private static void testProductCrud(DataSource dataSource) {
         // ===================== Product ======================
 
         System.out.println("\n---------------------------------------");
@@ -178,4 +208,44 @@ public class Program {
         System.out.println("           ALL TESTS COMPLETED");
         System.out.println("---------------------------------------\n");
     }
+
+    // compares rows/sec of one add() per product against addAll(), then removes the test rows
+    private static void benchmarkProductInsert(DataSource dataSource, int rows) {
+        System.out.println("\n---------------------------------------");
+        System.out.println("        BENCHMARK PRODUCT INSERT");
+        System.out.println("---------------------------------------\n");
+
+        ProductDao productDao = new ProductDao(dataSource);
+
+        List<Product> single = benchmarkProducts(rows, "Single Insert ");
+        long start = System.nanoTime();
+        for (Product product : single) {
+            productDao.add(product);
+        }
+        long singleNanos = System.nanoTime() - start;
+
+        List<Product> batched = benchmarkProducts(rows, "Batch Insert ");
+        start = System.nanoTime();
+        productDao.addAll(batched);
+        long batchNanos = System.nanoTime() - start;
+
+        System.out.printf("add()    : %,d rows in %,d ms -> %,.0f rows/sec%n", rows, singleNanos / 1_000_000, rows * 1e9 / singleNanos);
+        System.out.printf("addAll() : %,d rows in %,d ms -> %,.0f rows/sec%n", rows, batchNanos / 1_000_000, rows * 1e9 / batchNanos);
+
+        // clean up the test rows
+        for (Product product : single) {
+            productDao.delete(product.getProductId());
+        }
+        for (Product product : batched) {
+            productDao.delete(product.getProductId());
+        }
+    }
+
+    private static List<Product> benchmarkProducts(int rows, String namePrefix) {
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < rows; i++) {
+            products.add(new Product(0, namePrefix + i, 1, 1, "1 box", 1.00, 10, 0, 0, false));
+        }
+        return products;
+    }
 }
@@ -0,0 +1,221 @@
+package com.northwind.analytics;
+
+import com.northwind.data.OrderDao;
+import com.northwind.model.Order;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+// A read-only, column-per-field copy of the orders table for analytical scans
+// (Ex. "freight over 100, shipped via shipper 2, ordered in Q3").
+// Each field is one primitive array indexed by row, so a filter walks one array front to back with no
+// objects and no pointer chasing:
+//   - ids, employee and shipper are int columns
+//   - dates are long seconds since 1970-01-01 (the column's wall-clock time read as UTC), NO_DATE for NULL
+//   - freight is fixed-point, in 1/10000ths (the scale of the DECIMAL column), so sums are exact
+//   - customer, ship city and ship country are dictionary-encoded: an int code per row, each distinct string
+//     stored once; comparing a row is comparing two ints
+// Filters and aggregates are on OrderSelection: store.select().shipVia(2).freightAbove(100).sumFreight()
+// The store is a snapshot; load it again to see later changes.
+public final class OrderColumnStore {
+    public static final long NO_DATE = Long.MIN_VALUE;
+    static final long FREIGHT_SCALE = 10_000;
+
+    final int size;
+    final int[] orderId;
+    final int[] customer;
+    final int[] employeeId;
+    final long[] orderDate;
+    final long[] requiredDate;
+    final long[] shippedDate;
+    final int[] shipVia;
+    final long[] freight;
+    final int[] shipCity;
+    final int[] shipCountry;
+
+    final Dictionary customers;
+    final Dictionary cities;
+    final Dictionary countries;
+
+    private OrderColumnStore(Builder builder) {
+        this.size = builder.size;
+        this.orderId = Arrays.copyOf(builder.orderId, size);
+        this.customer = Arrays.copyOf(builder.customer, size);
+        this.employeeId = Arrays.copyOf(builder.employeeId, size);
+        this.orderDate = Arrays.copyOf(builder.orderDate, size);
+        this.requiredDate = Arrays.copyOf(builder.requiredDate, size);
+        this.shippedDate = Arrays.copyOf(builder.shippedDate, size);
+        this.shipVia = Arrays.copyOf(builder.shipVia, size);
+        this.freight = Arrays.copyOf(builder.freight, size);
+        this.shipCity = Arrays.copyOf(builder.shipCity, size);
+        this.shipCountry = Arrays.copyOf(builder.shipCountry, size);
+        this.customers = builder.customers;
+        this.cities = builder.cities;
+        this.countries = builder.countries;
+    }
+
+    // every order, streamed from the database in id order (no List<Order> is held while loading)
+    public static OrderColumnStore load(OrderDao orderDao) {
+        Builder builder = new Builder();
+        try (Stream<Order> orders = orderDao.stream()) {
+            orders.forEach(builder::add);
+        }
+        return new OrderColumnStore(builder);
+    }
+
+    public static OrderColumnStore of(Collection<Order> orders) {
+        Builder builder = new Builder();
+        orders.forEach(builder::add);
+        return new OrderColumnStore(builder);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // a selection of every order, to narrow down with its filters
+    public OrderSelection select() {
+        return new OrderSelection(this);
+    }
+
+    public int getOrderId(int row) {
+        return orderId[row];
+    }
+
+    public String getCustomerId(int row) {
+        return customers.value(customer[row]);
+    }
+
+    public int getShipVia(int row) {
+        return shipVia[row];
+    }
+
+    public double getFreight(int row) {
+        return (double) freight[row] / FREIGHT_SCALE;
+    }
+
+    public LocalDateTime getOrderDate(int row) {
+        return toDateTime(orderDate[row]);
+    }
+
+    public LocalDateTime getRequiredDate(int row) {
+        return toDateTime(requiredDate[row]);
+    }
+
+    public LocalDateTime getShippedDate(int row) {
+        return toDateTime(shippedDate[row]);
+    }
+
+    public String getShipCity(int row) {
+        return cities.value(shipCity[row]);
+    }
+
+    public String getShipCountry(int row) {
+        return countries.value(shipCountry[row]);
+    }
+
+    // ---------- encoding ----------
+
+    static long toEpochSecond(LocalDateTime dateTime) {
+        return dateTime == null ? NO_DATE : dateTime.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    static LocalDateTime toDateTime(long epochSecond) {
+        return epochSecond == NO_DATE ? null : LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+    }
+
+    static long toFixedPoint(double amount) {
+        return Math.round(amount * FREIGHT_SCALE);
+    }
+
+    // each distinct string gets the next code; code -1 is NULL
+    static final class Dictionary {
+        static final int NULL = -1;
+
+        private final Map<String, Integer> codes = new HashMap<>();
+        private String[] values = new String[64];
+
+        int encode(String value) {
+            if (value == null) {
+                return NULL;
+            }
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = codes.size();
+                if (code == values.length) {
+                    values = Arrays.copyOf(values, code * 2);
+                }
+                values[code] = value;
+                codes.put(value, code);
+            }
+            return code;
+        }
+
+        // the code of value, or null when no row has it
+        Integer code(String value) {
+            return value == null ? Integer.valueOf(NULL) : codes.get(value);
+        }
+
+        String value(int code) {
+            return code == NULL ? null : values[code];
+        }
+
+        int size() {
+            return codes.size();
+        }
+    }
+
+    // growable columns filled one order at a time, trimmed to size by the constructor
+    private static final class Builder {
+        int size;
+        int[] orderId = new int[1024];
+        int[] customer = new int[1024];
+        int[] employeeId = new int[1024];
+        long[] orderDate = new long[1024];
+        long[] requiredDate = new long[1024];
+        long[] shippedDate = new long[1024];
+        int[] shipVia = new int[1024];
+        long[] freight = new long[1024];
+        int[] shipCity = new int[1024];
+        int[] shipCountry = new int[1024];
+
+        final Dictionary customers = new Dictionary();
+        final Dictionary cities = new Dictionary();
+        final Dictionary countries = new Dictionary();
+
+        void add(Order order) {
+            if (size == orderId.length) {
+                grow(size * 2);
+            }
+            orderId[size] = order.getOrderId();
+            customer[size] = customers.encode(order.getCustomerId());
+            employeeId[size] = order.getEmployeeId();
+            orderDate[size] = toEpochSecond(order.getOrderDate());
+            requiredDate[size] = toEpochSecond(order.getRequiredDate());
+            shippedDate[size] = toEpochSecond(order.getShippedDate());
+            shipVia[size] = order.getShipVia();
+            freight[size] = toFixedPoint(order.getFreight());
+            shipCity[size] = cities.encode(order.getShipCity());
+            shipCountry[size] = countries.encode(order.getShipCountry());
+            size++;
+        }
+
+        private void grow(int capacity) {
+            orderId = Arrays.copyOf(orderId, capacity);
+            customer = Arrays.copyOf(customer, capacity);
+            employeeId = Arrays.copyOf(employeeId, capacity);
+            orderDate = Arrays.copyOf(orderDate, capacity);
+            requiredDate = Arrays.copyOf(requiredDate, capacity);
+            shippedDate = Arrays.copyOf(shippedDate, capacity);
+            shipVia = Arrays.copyOf(shipVia, capacity);
+            freight = Arrays.copyOf(freight, capacity);
+            shipCity = Arrays.copyOf(shipCity, capacity);
+            shipCountry = Arrays.copyOf(shipCountry, capacity);
+        }
+    }
+}
@@ -0,0 +1,341 @@
+package com.northwind.analytics;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// A set of rows of an OrderColumnStore, one bit per row, narrowed by chained filters:
+//   store.select().shipVia(2).freightAbove(100).orderDateBetween(julyFirst, octoberFirst).sumFreight()
+// Each filter ANDs in place and returns this. A filter computes 64 rows into one mask word with
+// arithmetic on sign bits (no branch per row), and skips words where nothing is selected any more, so
+// later filters get cheaper.
+// Aggregates visit only the selected rows. Not thread-safe; the store itself can be shared.
+public final class OrderSelection {
+    // scan bounds are clamped to +-2^62: far beyond any date or freight, and small enough that the
+    // branch-free range test below never overflows
+    private static final long MIN_BOUND = -(1L << 62);
+    private static final long MAX_BOUND = 1L << 62;
+
+    private final OrderColumnStore store;
+    private final long[] bits;
+
+    OrderSelection(OrderColumnStore store) {
+        this.store = store;
+        this.bits = new long[(store.size + 63) >>> 6];
+        for (int w = 0; w < bits.length; w++) {
+            bits[w] = -1L;
+        }
+        int tail = store.size & 63;
+        if (tail != 0) {
+            bits[bits.length - 1] = (1L << tail) - 1;
+        }
+    }
+
+    private OrderSelection(OrderSelection other) {
+        this.store = other.store;
+        this.bits = other.bits.clone();
+    }
+
+    // an independent copy, to branch one filter chain into two
+    public OrderSelection copy() {
+        return new OrderSelection(this);
+    }
+
+    // ---------- filters ----------
+
+    public OrderSelection shipVia(int shipperId) {
+        return keepEqual(store.shipVia, shipperId);
+    }
+
+    public OrderSelection employee(int employeeId) {
+        return keepEqual(store.employeeId, employeeId);
+    }
+
+    public OrderSelection customer(String customerId) {
+        return keepEqual(store.customer, store.customers.code(customerId));
+    }
+
+    public OrderSelection shipCity(String city) {
+        return keepEqual(store.shipCity, store.cities.code(city));
+    }
+
+    public OrderSelection shipCountry(String country) {
+        return keepEqual(store.shipCountry, store.countries.code(country));
+    }
+
+    // freight strictly greater than amount
+    public OrderSelection freightAbove(double amount) {
+        return keepBetween(store.freight, bound(OrderColumnStore.toFixedPoint(amount)) + 1, MAX_BOUND);
+    }
+
+    // freight strictly less than amount
+    public OrderSelection freightBelow(double amount) {
+        return keepBetween(store.freight, MIN_BOUND, bound(OrderColumnStore.toFixedPoint(amount)));
+    }
+
+    // from <= OrderDate < to; orders without a date never match
+    public OrderSelection orderDateBetween(LocalDateTime from, LocalDateTime to) {
+        return keepDates(store.orderDate, from, to);
+    }
+
+    // from <= ShippedDate < to; unshipped orders never match
+    public OrderSelection shippedBetween(LocalDateTime from, LocalDateTime to) {
+        return keepDates(store.shippedDate, from, to);
+    }
+
+    public OrderSelection notShipped() {
+        return keepEqual(store.shippedDate, OrderColumnStore.NO_DATE);
+    }
+
+    // shipped after the required date (orders missing either date never match)
+    public OrderSelection shippedLate() {
+        long[] shipped = store.shippedDate;
+        long[] required = store.requiredDate;
+        long none = OrderColumnStore.NO_DATE;
+        for (int w = 0; w < bits.length; w++) {
+            long word = bits[w];
+            if (word == 0) {
+                continue;
+            }
+            int base = w << 6;
+            int count = Math.min(64, store.size - base);
+            long keep = 0;
+            for (int b = 0; b < count; b++) {
+                long s = shipped[base + b];
+                long r = required[base + b];
+                keep |= (s > r & r != none ? 1L : 0L) << b;
+            }
+            bits[w] = word & keep;
+        }
+        return this;
+    }
+
+    public OrderSelection and(OrderSelection other) {
+        checkSameStore(other);
+        for (int w = 0; w < bits.length; w++) {
+            bits[w] &= other.bits[w];
+        }
+        return this;
+    }
+
+    public OrderSelection or(OrderSelection other) {
+        checkSameStore(other);
+        for (int w = 0; w < bits.length; w++) {
+            bits[w] |= other.bits[w];
+        }
+        return this;
+    }
+
+    // ---------- aggregates ----------
+
+    public int count() {
+        int count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    public double sumFreight() {
+        long[] freight = store.freight;
+        long sum = 0;
+        for (int w = 0; w < bits.length; w++) {
+            long word = bits[w];
+            int base = w << 6;
+            if (word == -1L) {
+                for (int b = 0; b < 64; b++) {
+                    sum += freight[base + b];
+                }
+                continue;
+            }
+            while (word != 0) {
+                sum += freight[base + Long.numberOfTrailingZeros(word)];
+                word &= word - 1;
+            }
+        }
+        return (double) sum / OrderColumnStore.FREIGHT_SCALE;
+    }
+
+    // 0 when nothing is selected
+    public double averageFreight() {
+        int count = count();
+        return count == 0 ? 0 : sumFreight() / count;
+    }
+
+    // NaN when nothing is selected
+    public double maxFreight() {
+        long[] freight = store.freight;
+        long max = Long.MIN_VALUE;
+        for (int w = 0; w < bits.length; w++) {
+            long word = bits[w];
+            int base = w << 6;
+            while (word != 0) {
+                max = Math.max(max, freight[base + Long.numberOfTrailingZeros(word)]);
+                word &= word - 1;
+            }
+        }
+        return max == Long.MIN_VALUE ? Double.NaN : (double) max / OrderColumnStore.FREIGHT_SCALE;
+    }
+
+    // the selected order ids, in row (id) order
+    public int[] orderIds() {
+        int[] ids = new int[count()];
+        int next = 0;
+        for (int w = 0; w < bits.length; w++) {
+            long word = bits[w];
+            int base = w << 6;
+            while (word != 0) {
+                ids[next++] = store.orderId[base + Long.numberOfTrailingZeros(word)];
+                word &= word - 1;
+            }
+        }
+        return ids;
+    }
+
+    // selected rows, so callers can read any column through the store's getters
+    public int[] rows() {
+        int[] rows = new int[count()];
+        int next = 0;
+        for (int w = 0; w < bits.length; w++) {
+            long word = bits[w];
+            int base = w << 6;
+            while (word != 0) {
+                rows[next++] = base + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+            }
+        }
+        return rows;
+    }
+
+    // orders per ship country (null key = no country)
+    public Map<String, Integer> countByShipCountry() {
+        return countByCode(store.shipCountry, store.countries);
+    }
+
+    public Map<String, Integer> countByShipCity() {
+        return countByCode(store.shipCity, store.cities);
+    }
+
+    // freight per shipper id
+    public Map<Integer, Double> freightByShipVia() {
+        Map<Integer, long[]> sums = new HashMap<>();
+        int[] shipVia = store.shipVia;
+        long[] freight = store.freight;
+        for (int w = 0; w < bits.length; w++) {
+            long word = bits[w];
+            int base = w << 6;
+            while (word != 0) {
+                int row = base + Long.numberOfTrailingZeros(word);
+                sums.computeIfAbsent(shipVia[row], k -> new long[1])[0] += freight[row];
+                word &= word - 1;
+            }
+        }
+        Map<Integer, Double> totals = new HashMap<>();
+        sums.forEach((shipperId, sum) -> totals.put(shipperId, (double) sum[0] / OrderColumnStore.FREIGHT_SCALE));
+        return totals;
+    }
+
+    // ---------- scans ----------
+
+    // counts land in an array indexed by dictionary code (slot 0 for NULL), then become a map once
+    private Map<String, Integer> countByCode(int[] column, OrderColumnStore.Dictionary dictionary) {
+        int[] counts = new int[dictionary.size() + 1];
+        for (int w = 0; w < bits.length; w++) {
+            long word = bits[w];
+            int base = w << 6;
+            while (word != 0) {
+                counts[column[base + Long.numberOfTrailingZeros(word)] + 1]++;
+                word &= word - 1;
+            }
+        }
+        Map<String, Integer> result = new HashMap<>();
+        for (int code = -1; code < dictionary.size(); code++) {
+            if (counts[code + 1] > 0) {
+                result.put(dictionary.value(code), counts[code + 1]);
+            }
+        }
+        return result;
+    }
+
+    // value == null means no row can match (a string the dictionary has never seen)
+    private OrderSelection keepEqual(int[] column, Integer value) {
+        if (value == null) {
+            Arrays.fill(bits, 0);
+            return this;
+        }
+        int v = value;
+        for (int w = 0; w < bits.length; w++) {
+            long word = bits[w];
+            if (word == 0) {
+                continue;
+            }
+            int base = w << 6;
+            int count = Math.min(64, store.size - base);
+            long keep = 0;
+            for (int b = 0; b < count; b++) {
+                // d | -d is negative for every d except 0
+                int d = column[base + b] ^ v;
+                keep |= ((long) (~(d | -d) >>> 31)) << b;
+            }
+            bits[w] = word & keep;
+        }
+        return this;
+    }
+
+    // only for NO_DATE, the one value outside the bounds; this test is not branch-free
+    private OrderSelection keepEqual(long[] column, long value) {
+        for (int w = 0; w < bits.length; w++) {
+            long word = bits[w];
+            if (word == 0) {
+                continue;
+            }
+            int base = w << 6;
+            int count = Math.min(64, store.size - base);
+            long keep = 0;
+            for (int b = 0; b < count; b++) {
+                keep |= (column[base + b] == value ? 1L : 0L) << b;
+            }
+            bits[w] = word & keep;
+        }
+        return this;
+    }
+
+    private OrderSelection keepDates(long[] column, LocalDateTime from, LocalDateTime to) {
+        // NO_DATE is Long.MIN_VALUE, below MIN_BOUND, so undated rows drop out with no extra test
+        long lo = from == null ? MIN_BOUND : bound(OrderColumnStore.toEpochSecond(from));
+        long hi = to == null ? MAX_BOUND : bound(OrderColumnStore.toEpochSecond(to));
+        return keepBetween(column, lo, hi);
+    }
+
+    // lo <= value < hi, for bounds within [MIN_BOUND, MAX_BOUND] (so lo - 1 - v and v - hi cannot overflow
+    // for stored values, and NO_DATE still lands outside)
+    private OrderSelection keepBetween(long[] column, long lo, long hi) {
+        for (int w = 0; w < bits.length; w++) {
+            long word = bits[w];
+            if (word == 0) {
+                continue;
+            }
+            int base = w << 6;
+            int count = Math.min(64, store.size - base);
+            long keep = 0;
+            for (int b = 0; b < count; b++) {
+                // sign bits of (lo - 1 - v) and (v - hi) are both set exactly when lo <= v < hi
+                long v = column[base + b];
+                keep |= (((lo - 1 - v) & (v - hi)) >>> 63) << b;
+            }
+            bits[w] = word & keep;
+        }
+        return this;
+    }
+
+    private static long bound(long value) {
+        return Math.max(MIN_BOUND, Math.min(MAX_BOUND, value));
+    }
+
+    private void checkSameStore(OrderSelection other) {
+        if (other.store != store) {
+            throw new IllegalArgumentException("Selections are from different column stores");
+        }
+    }
+}
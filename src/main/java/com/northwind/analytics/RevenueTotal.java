@@ -0,0 +1,48 @@
+package com.northwind.analytics;
+
+import java.util.Locale;
+
+// Revenue (sum of line totals after discount) and number of orders for one rollup key.
+public final class RevenueTotal {
+    static final RevenueTotal ZERO = new RevenueTotal(0, 0);
+
+    // money is summed as whole 1/10000ths (the scale of the DECIMAL(10, 4) price columns),
+    // so adding and later subtracting the same order always lands back on the same total
+    static final long TICKS_PER_UNIT = 10_000;
+
+    private final long revenueTicks;
+    private final int orderCount;
+
+    RevenueTotal(long revenueTicks, int orderCount) {
+        this.revenueTicks = revenueTicks;
+        this.orderCount = orderCount;
+    }
+
+    public double getRevenue() {
+        return (double) revenueTicks / TICKS_PER_UNIT;
+    }
+
+    public int getOrderCount() {
+        return orderCount;
+    }
+
+    // revenue per order, 0 when there are no orders
+    public double getAverageOrderValue() {
+        return orderCount == 0 ? 0 : getRevenue() / orderCount;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof RevenueTotal other && other.revenueTicks == revenueTicks && other.orderCount == orderCount;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(revenueTicks) * 31 + orderCount;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "revenue=%.2f, orders=%d", getRevenue(), orderCount);
+    }
+}
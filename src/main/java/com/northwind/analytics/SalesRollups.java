@@ -0,0 +1,433 @@
+package com.northwind.analytics;
+
+import com.northwind.data.OrderChangeListener;
+import com.northwind.data.OrderDao;
+import com.northwind.model.Order;
+import com.northwind.model.OrderDetail;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+// Revenue per customer, per month (of the order date) and per shipper, held in memory so dashboards
+// never run a GROUP BY over the whole order history.
+// build() reads every order and line item once (two streamed queries, joined in id order), then rolls the
+// orders up on the fork/join pool. It registers itself as the DAO's OrderChangeListener first, so the totals
+// stay current from the moment the load starts: each saved or deleted order only moves its own contribution,
+// so upkeep costs O(changes), not O(history).
+//
+// Each order's contribution (its keys and revenue) is remembered, so an update can take the old one out
+// before putting the new one in. An update without line items (details == null) keeps the order's revenue.
+// Orders with no order date are left out of the monthly rollup; ShipVia 0 is "no shipper".
+// Writes made through other means than this OrderDao (another process, SQL by hand) are not seen
+// until the next rebuild(). Notifications come after commit, so two concurrent updates to the same order
+// can arrive in the opposite order to their commits; that order then keeps the stale contribution until
+// it is saved again or rebuild() runs.
+public class SalesRollups implements OrderChangeListener {
+    // below this many orders a fork/join task rolls its slice up itself
+    private static final int SPLIT_THRESHOLD = 16_384;
+    private static final int NO_MONTH = Integer.MIN_VALUE;
+
+    private final OrderDao orderDao;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Map<Integer, Contribution> orders = new HashMap<>();
+    private Rollup rollup = new Rollup();
+    // while a rebuild reads the database, saved/deleted orders are also noted here and replayed onto the
+    // new totals, so a write that lands mid-build is not lost (replaying is safe: each event replaces state)
+    private List<Contribution> replay;
+    private List<Integer> replayDeletes;
+
+    public SalesRollups(OrderDao orderDao) {
+        this.orderDao = orderDao;
+    }
+
+    // rollups over every order, kept current from then on by the DAO
+    public static SalesRollups build(OrderDao orderDao) {
+        SalesRollups rollups = new SalesRollups(orderDao);
+        // registered before the load so writes committed while it runs are replayed onto the result
+        orderDao.setChangeListener(rollups);
+        rollups.rebuild();
+        return rollups;
+    }
+
+    // re-reads the whole history and replaces the totals; reads keep seeing the old totals until it is done
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            replay = new ArrayList<>();
+            replayDeletes = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Map<Integer, Contribution> loadedOrders;
+        Rollup loaded;
+        try {
+            List<Contribution> contributions = load();
+            loaded = ForkJoinPool.commonPool().invoke(new RollupTask(contributions, 0, contributions.size()));
+            loadedOrders = new HashMap<>(contributions.size() * 4 / 3 + 1);
+            for (Contribution contribution : contributions) {
+                loadedOrders.put(contribution.orderId, contribution);
+            }
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                replay = null;
+                replayDeletes = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+
+        lock.writeLock().lock();
+        try {
+            Map<Integer, Contribution> previousOrders = orders;
+            Rollup previousRollup = rollup;
+            orders = loadedOrders;
+            rollup = loaded;
+            for (Contribution contribution : replay) {
+                apply(contribution);
+            }
+            for (Integer orderId : replayDeletes) {
+                remove(orderId);
+            }
+            replay = null;
+            replayDeletes = null;
+            previousOrders.clear();
+            previousRollup.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ---------- queries ----------
+
+    public RevenueTotal getTotal() {
+        lock.readLock().lock();
+        try {
+            return rollup.total.toTotal();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public RevenueTotal getCustomerTotal(String customerId) {
+        lock.readLock().lock();
+        try {
+            return totalOf(rollup.byCustomer.get(customerId));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public RevenueTotal getMonthTotal(YearMonth month) {
+        lock.readLock().lock();
+        try {
+            return totalOf(rollup.byMonth.get(monthKey(month)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public RevenueTotal getShipperTotal(int shipperId) {
+        lock.readLock().lock();
+        try {
+            return totalOf(rollup.byShipper.get(shipperId));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Map<String, RevenueTotal> getByCustomer() {
+        lock.readLock().lock();
+        try {
+            Map<String, RevenueTotal> totals = new HashMap<>(rollup.byCustomer.size() * 4 / 3 + 1);
+            rollup.byCustomer.forEach((customerId, sum) -> totals.put(customerId, sum.toTotal()));
+            return totals;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // months in calendar order
+    public SortedMap<YearMonth, RevenueTotal> getByMonth() {
+        return getByMonth(YearMonth.of(0, 1), YearMonth.of(9999, 12));
+    }
+
+    // months from first to last, both included
+    public SortedMap<YearMonth, RevenueTotal> getByMonth(YearMonth first, YearMonth last) {
+        SortedMap<YearMonth, RevenueTotal> totals = new TreeMap<>();
+        lock.readLock().lock();
+        try {
+            rollup.byMonth.subMap(monthKey(first), true, monthKey(last), true)
+                    .forEach((month, sum) -> totals.put(monthOf(month), sum.toTotal()));
+        } finally {
+            lock.readLock().unlock();
+        }
+        return totals;
+    }
+
+    public Map<Integer, RevenueTotal> getByShipper() {
+        lock.readLock().lock();
+        try {
+            Map<Integer, RevenueTotal> totals = new HashMap<>();
+            rollup.byShipper.forEach((shipperId, sum) -> totals.put(shipperId, sum.toTotal()));
+            return totals;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // the limit customers with the most revenue, highest first
+    public List<Map.Entry<String, RevenueTotal>> getTopCustomers(int limit) {
+        List<Map.Entry<String, RevenueTotal>> top = new ArrayList<>(getByCustomer().entrySet());
+        top.sort(Map.Entry.comparingByValue(Comparator.comparingDouble(RevenueTotal::getRevenue).reversed()));
+        return Collections.unmodifiableList(top.subList(0, Math.min(limit, top.size())));
+    }
+
+    public int getOrderCount() {
+        lock.readLock().lock();
+        try {
+            return orders.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ---------- upkeep (called by OrderDao) ----------
+
+    // the order was inserted or updated: its old contribution (if any) is replaced by this one
+    @Override
+    public void orderSaved(Order order) {
+        lock.writeLock().lock();
+        try {
+            Contribution previous = orders.get(order.getOrderId());
+            long revenue;
+            if (order.getDetails() != null) {
+                revenue = revenueOf(order.getDetails());
+            } else {
+                revenue = previous == null ? 0 : previous.revenueTicks;
+            }
+            Contribution contribution = new Contribution(order.getOrderId(), order.getCustomerId(),
+                    monthKey(order.getOrderDate()), order.getShipVia(), revenue);
+            apply(contribution);
+            if (replay != null) {
+                replay.add(contribution);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void orderDeleted(int orderId) {
+        lock.writeLock().lock();
+        try {
+            remove(orderId);
+            if (replayDeletes != null) {
+                replayDeletes.add(orderId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ---------- internals ----------
+
+    private void apply(Contribution contribution) {
+        Contribution previous = orders.put(contribution.orderId, contribution);
+        if (previous != null) {
+            rollup.add(previous, -1);
+        }
+        rollup.add(contribution, 1);
+    }
+
+    private void remove(int orderId) {
+        Contribution previous = orders.remove(orderId);
+        if (previous != null) {
+            rollup.add(previous, -1);
+        }
+    }
+
+    // one contribution per order, in id order, with its line items summed in
+    private List<Contribution> load() {
+        List<Contribution> contributions = new ArrayList<>();
+        try (Stream<Order> stream = orderDao.stream()) {
+            stream.forEach(order -> contributions.add(new Contribution(order.getOrderId(), order.getCustomerId(),
+                    monthKey(order.getOrderDate()), order.getShipVia(), 0)));
+        }
+
+        // both streams are in OrderID order, so one forward pass matches every line item to its order
+        int[] next = {0};
+        try (Stream<OrderDetail> stream = orderDao.streamDetails()) {
+            stream.forEach(detail -> {
+                int i = next[0];
+                while (i < contributions.size() && contributions.get(i).orderId < detail.getOrderId()) {
+                    i++;
+                }
+                next[0] = i;
+                if (i < contributions.size() && contributions.get(i).orderId == detail.getOrderId()) {
+                    contributions.get(i).revenueTicks += ticksOf(detail);
+                }
+            });
+        }
+        return contributions;
+    }
+
+    private static long revenueOf(List<OrderDetail> details) {
+        long revenue = 0;
+        for (OrderDetail detail : details) {
+            revenue += ticksOf(detail);
+        }
+        return revenue;
+    }
+
+    private static long ticksOf(OrderDetail detail) {
+        return Math.round(detail.getLineTotal() * RevenueTotal.TICKS_PER_UNIT);
+    }
+
+    private static RevenueTotal totalOf(Sum sum) {
+        return sum == null ? RevenueTotal.ZERO : sum.toTotal();
+    }
+
+    // months are kept as year * 12 + month - 1
+    private static int monthKey(LocalDateTime orderDate) {
+        return orderDate == null ? NO_MONTH : orderDate.getYear() * 12 + orderDate.getMonthValue() - 1;
+    }
+
+    private static int monthKey(YearMonth month) {
+        return month.getYear() * 12 + month.getMonthValue() - 1;
+    }
+
+    private static YearMonth monthOf(int key) {
+        return YearMonth.of(key / 12, key % 12 + 1);
+    }
+
+    // what one order adds to the rollups
+    private static final class Contribution {
+        final int orderId;
+        final String customerId;
+        final int month;
+        final int shipVia;
+        long revenueTicks;
+
+        Contribution(int orderId, String customerId, int month, int shipVia, long revenueTicks) {
+            this.orderId = orderId;
+            this.customerId = customerId;
+            this.month = month;
+            this.shipVia = shipVia;
+            this.revenueTicks = revenueTicks;
+        }
+    }
+
+    // a running total; sign is 1 to add an order and -1 to take it out again
+    private static final class Sum {
+        long revenueTicks;
+        int orderCount;
+
+        void add(long revenueTicks, int sign) {
+            this.revenueTicks += sign * revenueTicks;
+            this.orderCount += sign;
+        }
+
+        void add(Sum other) {
+            revenueTicks += other.revenueTicks;
+            orderCount += other.orderCount;
+        }
+
+        RevenueTotal toTotal() {
+            return new RevenueTotal(revenueTicks, orderCount);
+        }
+    }
+
+    // the three rollups and the grand total
+    private static final class Rollup {
+        final Sum total = new Sum();
+        final Map<String, Sum> byCustomer = new HashMap<>();
+        final TreeMap<Integer, Sum> byMonth = new TreeMap<>();
+        final Map<Integer, Sum> byShipper = new HashMap<>();
+
+        void add(Contribution order, int sign) {
+            total.add(order.revenueTicks, sign);
+            add(byCustomer, order.customerId, order.revenueTicks, sign);
+            if (order.month != NO_MONTH) {
+                add(byMonth, order.month, order.revenueTicks, sign);
+            }
+            add(byShipper, order.shipVia, order.revenueTicks, sign);
+        }
+
+        // keys whose last order went away are dropped, so the maps only hold keys with orders
+        private static <K> void add(Map<K, Sum> sums, K key, long revenueTicks, int sign) {
+            Sum sum = sums.computeIfAbsent(key, k -> new Sum());
+            sum.add(revenueTicks, sign);
+            if (sum.orderCount == 0) {
+                sums.remove(key);
+            }
+        }
+
+        void merge(Rollup other) {
+            total.add(other.total);
+            other.byCustomer.forEach((key, sum) -> byCustomer.merge(key, sum, Rollup::combine));
+            other.byMonth.forEach((key, sum) -> byMonth.merge(key, sum, Rollup::combine));
+            other.byShipper.forEach((key, sum) -> byShipper.merge(key, sum, Rollup::combine));
+        }
+
+        private static Sum combine(Sum a, Sum b) {
+            a.add(b);
+            return a;
+        }
+
+        void clear() {
+            byCustomer.clear();
+            byMonth.clear();
+            byShipper.clear();
+        }
+    }
+
+    // rolls up orders[from, to): splits in halves down to SPLIT_THRESHOLD, then merges the halves' rollups
+    private static final class RollupTask extends RecursiveTask<Rollup> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Contribution> orders;
+        private final int from;
+        private final int to;
+
+        RollupTask(List<Contribution> orders, int from, int to) {
+            this.orders = orders;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Rollup compute() {
+            if (to - from <= SPLIT_THRESHOLD) {
+                Rollup rollup = new Rollup();
+                for (int i = from; i < to; i++) {
+                    rollup.add(orders.get(i), 1);
+                }
+                return rollup;
+            }
+
+            int middle = (from + to) >>> 1;
+            RollupTask left = new RollupTask(orders, from, middle);
+            left.fork();
+            Rollup right = new RollupTask(orders, middle, to).compute();
+            Rollup merged = left.join();
+            merged.merge(right);
+            return merged;
+        }
+    }
+}
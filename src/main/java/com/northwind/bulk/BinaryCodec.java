@@ -0,0 +1,279 @@
+package com.northwind.bulk;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+// The compact binary format (all numbers big-endian):
+//
+//   header   "NWB1", table name, column count (varint), then per column: name, type (1 byte, ColumnType ordinal)
+//   row      body length (int), null bitmap (1 bit per column, ceil(columns / 8) bytes), then each non-null value:
+//              INT 4 bytes, DOUBLE 8 bytes, BOOLEAN 1 byte, TIMESTAMP epoch millis as 8 bytes (no time zone applied),
+//              STRING varint byte length + UTF-8
+//   trailer  -1 (int)
+//
+// The length prefix lets the reader tell a whole row from a cut-off one without parsing it.
+final class BinaryCodec extends BulkCodec {
+    private static final byte[] MAGIC = {'N', 'W', 'B', '1'};
+    private static final int END_OF_ROWS = -1;
+
+    private ByteBuffer row = ByteBuffer.allocate(4096);
+    private byte[] scratch = new byte[256];
+
+    @Override
+    void writeHeader(ChannelSink sink, TableSpec table) throws IOException {
+        sink.put(MAGIC);
+        writeString(sink, table.getTable());
+        sink.putVarInt(table.getColumnCount());
+        for (int i = 0; i < table.getColumnCount(); i++) {
+            writeString(sink, table.getColumnName(i));
+            sink.put((byte) table.getColumnType(i).ordinal());
+        }
+    }
+
+    @Override
+    void writeRow(ChannelSink sink, TableSpec table, ResultSet resultSet) throws IOException, SQLException {
+        int columns = table.getColumnCount();
+        int bitmapBytes = (columns + 7) / 8;
+        row.clear();
+        for (int i = 0; i < bitmapBytes; i++) {
+            row.put((byte) 0);
+        }
+
+        for (int i = 0; i < columns; i++) {
+            int column = i + 1;
+            switch (table.getColumnType(i)) {
+                case INT: {
+                    int value = resultSet.getInt(column);
+                    if (resultSet.wasNull()) {
+                        markNull(i);
+                    } else {
+                        ensureRow(Integer.BYTES).putInt(value);
+                    }
+                    break;
+                }
+                case DOUBLE: {
+                    double value = resultSet.getDouble(column);
+                    if (resultSet.wasNull()) {
+                        markNull(i);
+                    } else {
+                        ensureRow(Double.BYTES).putDouble(value);
+                    }
+                    break;
+                }
+                case BOOLEAN: {
+                    boolean value = resultSet.getBoolean(column);
+                    if (resultSet.wasNull()) {
+                        markNull(i);
+                    } else {
+                        ensureRow(1).put((byte) (value ? 1 : 0));
+                    }
+                    break;
+                }
+                case TIMESTAMP: {
+                    LocalDateTime value = resultSet.getObject(column, LocalDateTime.class);
+                    if (value == null) {
+                        markNull(i);
+                    } else {
+                        long millis = value.toEpochSecond(ZoneOffset.UTC) * 1000 + value.getNano() / 1_000_000;
+                        ensureRow(Long.BYTES).putLong(millis);
+                    }
+                    break;
+                }
+                default: {
+                    String value = resultSet.getString(column);
+                    if (value == null) {
+                        markNull(i);
+                    } else {
+                        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                        ensureRow(5 + bytes.length);
+                        putVarInt(row, bytes.length);
+                        row.put(bytes);
+                    }
+                }
+            }
+        }
+
+        sink.putInt(row.position());
+        sink.put(row.array(), 0, row.position());
+    }
+
+    @Override
+    void writeTrailer(ChannelSink sink) throws IOException {
+        sink.putInt(END_OF_ROWS);
+    }
+
+    @Override
+    Decoded readHeader(ByteBuffer buffer, TableSpec table, boolean atEnd) throws IOException {
+        int start = buffer.position();
+        try {
+            byte[] magic = new byte[MAGIC.length];
+            buffer.get(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("not a Northwind binary export (bad magic number)");
+            }
+            String fileTable = readString(buffer);
+            int columns = getVarInt(buffer);
+            if (columns != table.getColumnCount()) {
+                throw new IOException("file has " + columns + " columns of " + fileTable + ", "
+                        + table + " needs " + table.getColumnCount());
+            }
+            for (int i = 0; i < columns; i++) {
+                String name = readString(buffer);
+                int type = buffer.get();
+                if (!name.equalsIgnoreCase(table.getColumnName(i)) || type != table.getColumnType(i).ordinal()) {
+                    throw new IOException("column " + (i + 1) + " of the file is " + name + ", "
+                            + table + " expects " + table.getColumnName(i) + " " + table.getColumnType(i));
+                }
+            }
+            return Decoded.ROW;
+        } catch (BufferUnderflowException e) {
+            if (atEnd) {
+                throw new IOException("file ends inside the header");
+            }
+            buffer.position(start);
+            return Decoded.INCOMPLETE;
+        }
+    }
+
+    @Override
+    Decoded readRow(ByteBuffer buffer, TableSpec table, PreparedStatement statement, boolean atEnd)
+            throws IOException, SQLException {
+        int start = buffer.position();
+        if (buffer.remaining() < Integer.BYTES) {
+            return incomplete(buffer, start, atEnd);
+        }
+        int length = buffer.getInt();
+        if (length == END_OF_ROWS) {
+            return Decoded.END;
+        }
+        if (length < 0) {
+            throw new IOException("corrupt row length " + length + " at byte " + start);
+        }
+        if (buffer.remaining() < length) {
+            return incomplete(buffer, start, atEnd);
+        }
+
+        int end = start + Integer.BYTES + length;
+        int limit = buffer.limit();
+        // the values may not run past their own row, so a corrupt varint or string length underflows
+        // here instead of reading on into the next row
+        buffer.limit(end);
+        try {
+            readValues(buffer, table, statement);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("corrupt row at byte " + start + ": values run past its " + length + " bytes");
+        } finally {
+            buffer.limit(limit);
+        }
+
+        if (buffer.position() != end) {
+            throw new IOException("corrupt row at byte " + start + ": values do not fill its " + length + " bytes");
+        }
+        return Decoded.ROW;
+    }
+
+    // throws BufferUnderflowException when the values do not fit the row
+    // (IllegalArgumentException when the null bitmap alone does not)
+    private void readValues(ByteBuffer buffer, TableSpec table, PreparedStatement statement) throws SQLException {
+        int columns = table.getColumnCount();
+        int bitmap = buffer.position();
+        buffer.position(bitmap + (columns + 7) / 8);
+
+        for (int i = 0; i < columns; i++) {
+            int column = i + 1;
+            ColumnType type = table.getColumnType(i);
+            if ((buffer.get(bitmap + i / 8) & (1 << (i % 8))) != 0) {
+                statement.setNull(column, sqlType(type));
+                continue;
+            }
+            switch (type) {
+                case INT:
+                    statement.setInt(column, buffer.getInt());
+                    break;
+                case DOUBLE:
+                    statement.setDouble(column, buffer.getDouble());
+                    break;
+                case BOOLEAN:
+                    statement.setBoolean(column, buffer.get() != 0);
+                    break;
+                case TIMESTAMP: {
+                    long millis = buffer.getLong();
+                    statement.setObject(column, LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000),
+                            Math.floorMod(millis, 1000) * 1_000_000, ZoneOffset.UTC));
+                    break;
+                }
+                default:
+                    statement.setString(column, readString(buffer));
+            }
+        }
+    }
+
+    private static Decoded incomplete(ByteBuffer buffer, int start, boolean atEnd) throws IOException {
+        if (atEnd) {
+            throw new IOException("file ends part way through the row at byte " + start + " (no end-of-rows marker)");
+        }
+        buffer.position(start);
+        return Decoded.INCOMPLETE;
+    }
+
+    private void markNull(int column) {
+        row.put(column / 8, (byte) (row.get(column / 8) | (1 << (column % 8))));
+    }
+
+    // the row buffer, grown if it cannot take another bytes
+    private ByteBuffer ensureRow(int bytes) {
+        if (row.remaining() < bytes) {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(row.capacity() * 2, row.position() + bytes));
+            row.flip();
+            bigger.put(row);
+            row = bigger;
+        }
+        return row;
+    }
+
+    private String readString(ByteBuffer buffer) {
+        int length = getVarInt(buffer);
+        // a negative length is a varint that overflowed
+        if (length < 0 || length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        buffer.get(scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(ChannelSink sink, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        sink.putVarInt(bytes.length);
+        sink.put(bytes);
+    }
+
+    private static void putVarInt(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static int getVarInt(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.northwind.bulk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+// One file format: writes rows from a ResultSet into a ChannelSink, and reads them back out of a
+// (memory-mapped) ByteBuffer straight into the parameters of an INSERT, one row at a time.
+// Instances keep scratch buffers between rows, so use one per export or import.
+abstract class BulkCodec {
+
+    enum Decoded {
+        // a row (or the header) was read and the buffer moved past it
+        ROW,
+        // the buffer ends part way through a row; the buffer is left where the row starts
+        INCOMPLETE,
+        // no more rows
+        END
+    }
+
+    static BulkCodec of(BulkFormat format) {
+        return format == BulkFormat.CSV ? new CsvCodec() : new BinaryCodec();
+    }
+
+    abstract void writeHeader(ChannelSink sink, TableSpec table) throws IOException;
+
+    abstract void writeRow(ChannelSink sink, TableSpec table, ResultSet resultSet) throws IOException, SQLException;
+
+    abstract void writeTrailer(ChannelSink sink) throws IOException;
+
+    // atEnd says the buffer runs to the end of the file, so running out of bytes means the file is cut short
+    abstract Decoded readHeader(ByteBuffer buffer, TableSpec table, boolean atEnd) throws IOException;
+
+    abstract Decoded readRow(ByteBuffer buffer, TableSpec table, PreparedStatement statement, boolean atEnd)
+            throws IOException, SQLException;
+
+    static int sqlType(ColumnType type) {
+        switch (type) {
+            case INT:
+                return Types.INTEGER;
+            case DOUBLE:
+                return Types.DOUBLE;
+            case BOOLEAN:
+                return Types.BOOLEAN;
+            case TIMESTAMP:
+                return Types.TIMESTAMP;
+            default:
+                return Types.VARCHAR;
+        }
+    }
+}
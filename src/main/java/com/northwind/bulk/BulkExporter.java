@@ -0,0 +1,75 @@
+package com.northwind.bulk;
+
+import com.northwind.data.JdbcRunner;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+// Dumps a whole table to a file, streaming: each row goes from the ResultSet into a 1 MB direct buffer
+// and on to the file channel, so memory stays flat however big the table is.
+// The SELECT uses the runner's streaming statement (row by row on MySQL; set a positive stream fetch
+// size and useCursorFetch=true to fetch in chunks instead), on a read connection when the runner
+// routes reads to replicas.
+// An export runs as long as it needs (no query timeout or deadline). When the runner retries a transient
+// failure, the file is started over, so a retried export never duplicates rows.
+public class BulkExporter {
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final String OPERATION = "BulkExporter.export";
+
+    private final JdbcRunner runner;
+
+    public BulkExporter(DataSource dataSource) {
+        this(new JdbcRunner(dataSource));
+    }
+
+    public BulkExporter(JdbcRunner runner) {
+        this.runner = runner;
+        runner.setTimeouts(OPERATION, Duration.ZERO, Duration.ZERO);
+    }
+
+    // writes every row of table to file (replacing it); throws DataAccessException when the query failed
+    // and IOException when the file could not be written
+    public BulkResult export(TableSpec table, BulkFormat format, Path file) throws IOException {
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            ChannelSink[] sink = new ChannelSink[1];
+
+            long rows = runner.withReadConnection(OPERATION, connection -> {
+                try (PreparedStatement statement = runner.prepareStreaming(connection, table.selectQuery());
+                     ResultSet resultSet = statement.executeQuery()) {
+
+                    // a retried attempt starts the file over
+                    channel.truncate(0);
+                    channel.position(0);
+                    sink[0] = new ChannelSink(channel, BUFFER_SIZE);
+                    BulkCodec codec = BulkCodec.of(format);
+
+                    codec.writeHeader(sink[0], table);
+                    long count = 0;
+                    while (resultSet.next()) {
+                        codec.writeRow(sink[0], table, resultSet);
+                        count++;
+                    }
+                    codec.writeTrailer(sink[0]);
+                    sink[0].flush();
+                    return count;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+
+            return new BulkResult("export", table, format, rows, sink[0].getBytesWritten(), System.nanoTime() - start);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+}
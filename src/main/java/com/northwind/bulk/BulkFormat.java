@@ -0,0 +1,8 @@
+package com.northwind.bulk;
+
+public enum BulkFormat {
+    // RFC 4180 CSV with a header row; an empty unquoted field is NULL, "" is an empty string
+    CSV,
+    // length-prefixed rows with a null bitmap and fixed-width numbers; smaller and faster to parse
+    BINARY
+}
@@ -0,0 +1,154 @@
+package com.northwind.bulk;
+
+import com.northwind.data.JdbcRunner;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+
+// Loads a file written by BulkExporter back into its table.
+// The file is memory-mapped a window (64 MB by default) at a time and rows are decoded straight out of
+// the mapping into the INSERT's parameters, so neither the file nor its rows are ever held on the heap.
+// A row that runs past the end of a window is read again from the next window, which starts where that row starts.
+// Rows go in batchSize per executeBatch() and are committed every commitInterval rows, so the database's
+// undo log stays bounded too. When a statement fails the current chunk is rolled back and DataAccessException
+// is thrown (it is not retried); chunks committed before it stay in the table (getCommittedRows() says how many).
+// An import runs as long as it needs: no query timeout or deadline applies.
+// Keys are inserted as they are in the file, so load into an empty table (or one without those keys).
+public class BulkImporter {
+    private static final long DEFAULT_WINDOW = 64L << 20;
+    private static final String OPERATION = "BulkImporter.importFile";
+
+    private final JdbcRunner runner;
+    private int batchSize = 1000;
+    private int commitInterval = 50_000;
+    private long windowSize = DEFAULT_WINDOW;
+    private volatile long committedRows;
+
+    public BulkImporter(DataSource dataSource) {
+        this(new JdbcRunner(dataSource));
+    }
+
+    public BulkImporter(JdbcRunner runner) {
+        this.runner = runner;
+        runner.setTimeouts(OPERATION, Duration.ZERO, Duration.ZERO);
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    // rows per transaction
+    public void setCommitInterval(int commitInterval) {
+        this.commitInterval = commitInterval;
+    }
+
+    // bytes mapped at a time; grown automatically if a single row is bigger
+    public void setWindowSize(long windowSize) {
+        this.windowSize = windowSize;
+    }
+
+    // rows committed by the last (or running) import
+    public long getCommittedRows() {
+        return committedRows;
+    }
+
+    // inserts every row of file into table; throws DataAccessException when a statement failed
+    // and IOException when the file cannot be read or is not a valid export of table
+    public BulkResult importFile(TableSpec table, BulkFormat format, Path file) throws IOException {
+        long start = System.nanoTime();
+        committedRows = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            BulkCodec codec = BulkCodec.of(format);
+
+            long rows = runner.withConnection(OPERATION, connection -> {
+                boolean autoCommit = connection.getAutoCommit();
+                connection.setAutoCommit(false);
+                try (PreparedStatement statement = runner.prepare(connection, table.insertQuery())) {
+                    long count = load(channel, fileSize, codec, table, statement, connection);
+                    connection.commit();
+                    committedRows = count;
+                    return count;
+                } catch (SQLException | RuntimeException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(autoCommit);
+                }
+            });
+
+            return new BulkResult("import", table, format, rows, fileSize, System.nanoTime() - start);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private long load(FileChannel channel, long fileSize, BulkCodec codec, TableSpec table,
+                      PreparedStatement statement, Connection connection) throws SQLException {
+        long window = windowSize;
+        long windowStart = 0;
+        boolean header = true;
+        long rows = 0;
+        int batched = 0;
+
+        try {
+            while (true) {
+                long length = Math.min(window, fileSize - windowStart);
+                boolean atEnd = windowStart + length == fileSize;
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, length);
+
+                if (header) {
+                    BulkCodec.Decoded decoded = codec.readHeader(buffer, table, atEnd);
+                    if (decoded == BulkCodec.Decoded.INCOMPLETE) {
+                        window *= 2;
+                        continue;
+                    }
+                    header = false;
+                }
+
+                BulkCodec.Decoded decoded;
+                while ((decoded = codec.readRow(buffer, table, statement, atEnd)) == BulkCodec.Decoded.ROW) {
+                    statement.addBatch();
+                    rows++;
+                    if (++batched == batchSize) {
+                        statement.executeBatch();
+                        batched = 0;
+                    }
+                    if (rows % commitInterval == 0) {
+                        if (batched > 0) {
+                            statement.executeBatch();
+                            batched = 0;
+                        }
+                        connection.commit();
+                        committedRows = rows;
+                    }
+                }
+
+                if (decoded == BulkCodec.Decoded.END || atEnd) {
+                    break;
+                }
+                // the next window starts at the row that did not fit; a row bigger than a whole window grows it
+                if (buffer.position() == 0) {
+                    window *= 2;
+                }
+                windowStart += buffer.position();
+            }
+
+            if (batched > 0) {
+                statement.executeBatch();
+            }
+            return rows;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
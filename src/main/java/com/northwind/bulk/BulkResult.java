@@ -0,0 +1,56 @@
+package com.northwind.bulk;
+
+import java.util.Locale;
+
+// What one export or import moved, and how fast.
+public final class BulkResult {
+    private final String operation;
+    private final TableSpec table;
+    private final BulkFormat format;
+    private final long rows;
+    private final long bytes;
+    private final long nanos;
+
+    BulkResult(String operation, TableSpec table, BulkFormat format, long rows, long bytes, long nanos) {
+        this.operation = operation;
+        this.table = table;
+        this.format = format;
+        this.rows = rows;
+        this.bytes = bytes;
+        this.nanos = nanos;
+    }
+
+    public TableSpec getTable() {
+        return table;
+    }
+
+    public BulkFormat getFormat() {
+        return format;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getNanos() {
+        return nanos;
+    }
+
+    public double getRowsPerSecond() {
+        return nanos == 0 ? 0 : rows * 1_000_000_000.0 / nanos;
+    }
+
+    public double getMegabytesPerSecond() {
+        return nanos == 0 ? 0 : bytes * 1_000_000_000.0 / nanos / (1024 * 1024);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%s %s (%s): %,d rows, %,d bytes in %.2f s = %,.0f rows/sec, %.1f MB/sec",
+                operation, table, format, rows, bytes, nanos / 1e9, getRowsPerSecond(), getMegabytesPerSecond());
+    }
+}
@@ -0,0 +1,97 @@
+package com.northwind.bulk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+// A fixed direct buffer in front of a channel: rows are encoded straight into it and it is
+// written out whenever it fills, so an export never holds more than one buffer of output.
+final class ChannelSink {
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+    private long written;
+
+    ChannelSink(WritableByteChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    void put(byte b) throws IOException {
+        if (!buffer.hasRemaining()) {
+            drain();
+        }
+        buffer.put(b);
+    }
+
+    void put(byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+            int chunk = Math.min(length, buffer.remaining());
+            buffer.put(bytes, offset, chunk);
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    void put(byte[] bytes) throws IOException {
+        put(bytes, 0, bytes.length);
+    }
+
+    void putInt(int value) throws IOException {
+        ensure(Integer.BYTES);
+        buffer.putInt(value);
+    }
+
+    void putLong(long value) throws IOException {
+        ensure(Long.BYTES);
+        buffer.putLong(value);
+    }
+
+    void putDouble(double value) throws IOException {
+        ensure(Double.BYTES);
+        buffer.putDouble(value);
+    }
+
+    // unsigned LEB128, 1 byte for lengths under 128
+    void putVarInt(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        put((byte) value);
+    }
+
+    // for text known to be ASCII (numbers, dates): no encoder, no byte[] copy
+    void putAscii(CharSequence text) throws IOException {
+        int length = text.length();
+        ensure(Math.min(length, buffer.capacity()));
+        for (int i = 0; i < length; i++) {
+            put((byte) text.charAt(i));
+        }
+    }
+
+    // writes whatever is buffered; call once at the end
+    void flush() throws IOException {
+        drain();
+    }
+
+    long getBytesWritten() {
+        return written + buffer.position();
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            drain();
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
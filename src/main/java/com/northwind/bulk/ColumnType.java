@@ -0,0 +1,11 @@
+package com.northwind.bulk;
+
+// How a column is read from the ResultSet, written to a file and bound back into an INSERT.
+public enum ColumnType {
+    INT,
+    DOUBLE,
+    BOOLEAN,
+    STRING,
+    // DATETIME; epoch millis in the binary format, ISO-8601 (2024-05-01T10:15:30) in CSV
+    TIMESTAMP
+}
@@ -0,0 +1,366 @@
+package com.northwind.bulk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+
+// RFC 4180 CSV, UTF-8, with a header row of column names and \n line endings (\r\n is accepted when reading).
+// NULL is an empty unquoted field; an empty string is written "" so the two survive a round trip.
+// BOOLEAN is 1/0 (true/false also read), TIMESTAMP is ISO-8601 without a zone (2024-05-01T10:15:30).
+final class CsvCodec extends BulkCodec {
+    private static final byte COMMA = ',';
+    private static final byte QUOTE = '"';
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+
+    private enum Field { NEXT, LAST, INCOMPLETE }
+
+    // the current field's (unescaped) bytes and whether it was quoted
+    private byte[] field = new byte[256];
+    private int fieldLength;
+    private boolean quoted;
+    private int cursor;
+    private final byte[] digits = new byte[20];
+    private long line = 1;
+
+    @Override
+    void writeHeader(ChannelSink sink, TableSpec table) throws IOException {
+        for (int i = 0; i < table.getColumnCount(); i++) {
+            if (i > 0) {
+                sink.put(COMMA);
+            }
+            writeText(sink, table.getColumnName(i));
+        }
+        sink.put(LF);
+    }
+
+    @Override
+    void writeRow(ChannelSink sink, TableSpec table, ResultSet resultSet) throws IOException, SQLException {
+        for (int i = 0; i < table.getColumnCount(); i++) {
+            int column = i + 1;
+            if (i > 0) {
+                sink.put(COMMA);
+            }
+            switch (table.getColumnType(i)) {
+                case INT: {
+                    int value = resultSet.getInt(column);
+                    if (!resultSet.wasNull()) {
+                        writeLong(sink, value);
+                    }
+                    break;
+                }
+                case DOUBLE: {
+                    double value = resultSet.getDouble(column);
+                    if (!resultSet.wasNull()) {
+                        sink.putAscii(Double.toString(value));
+                    }
+                    break;
+                }
+                case BOOLEAN: {
+                    boolean value = resultSet.getBoolean(column);
+                    if (!resultSet.wasNull()) {
+                        sink.put((byte) (value ? '1' : '0'));
+                    }
+                    break;
+                }
+                case TIMESTAMP: {
+                    LocalDateTime value = resultSet.getObject(column, LocalDateTime.class);
+                    if (value != null) {
+                        sink.putAscii(value.toString());
+                    }
+                    break;
+                }
+                default: {
+                    String value = resultSet.getString(column);
+                    if (value != null) {
+                        writeText(sink, value);
+                    }
+                }
+            }
+        }
+        sink.put(LF);
+    }
+
+    @Override
+    void writeTrailer(ChannelSink sink) {
+        // CSV just ends
+    }
+
+    @Override
+    Decoded readHeader(ByteBuffer buffer, TableSpec table, boolean atEnd) throws IOException {
+        if (!buffer.hasRemaining()) {
+            if (atEnd) {
+                throw new IOException("file is empty (no header row)");
+            }
+            return Decoded.INCOMPLETE;
+        }
+
+        cursor = buffer.position();
+        for (int i = 0; i < table.getColumnCount(); i++) {
+            Field status = nextField(buffer, atEnd);
+            if (status == Field.INCOMPLETE) {
+                return Decoded.INCOMPLETE;
+            }
+            String name = new String(field, 0, fieldLength, StandardCharsets.UTF_8);
+            if (!name.equalsIgnoreCase(table.getColumnName(i))) {
+                throw new IOException("header column " + (i + 1) + " is " + name + ", "
+                        + table + " expects " + table.getColumnName(i));
+            }
+            checkFieldCount(status, i, table);
+        }
+        buffer.position(cursor);
+        line++;
+        return Decoded.ROW;
+    }
+
+    @Override
+    Decoded readRow(ByteBuffer buffer, TableSpec table, PreparedStatement statement, boolean atEnd)
+            throws IOException, SQLException {
+        // blank lines between rows (or at the end) are skipped
+        cursor = buffer.position();
+        while (cursor < buffer.limit() && (buffer.get(cursor) == LF || buffer.get(cursor) == CR)) {
+            if (buffer.get(cursor) == LF) {
+                line++;
+            }
+            cursor++;
+        }
+        buffer.position(cursor);
+        if (!buffer.hasRemaining()) {
+            return atEnd ? Decoded.END : Decoded.INCOMPLETE;
+        }
+
+        for (int i = 0; i < table.getColumnCount(); i++) {
+            Field status = nextField(buffer, atEnd);
+            if (status == Field.INCOMPLETE) {
+                return Decoded.INCOMPLETE;
+            }
+            bind(statement, i + 1, table.getColumnType(i));
+            checkFieldCount(status, i, table);
+        }
+        buffer.position(cursor);
+        line++;
+        return Decoded.ROW;
+    }
+
+    private void checkFieldCount(Field status, int index, TableSpec table) throws IOException {
+        boolean last = index == table.getColumnCount() - 1;
+        if (status == Field.LAST && !last) {
+            throw new IOException("line " + line + " has " + (index + 1) + " fields, " + table + " needs "
+                    + table.getColumnCount());
+        }
+        if (status == Field.NEXT && last) {
+            throw new IOException("line " + line + " has more than " + table.getColumnCount() + " fields");
+        }
+    }
+
+    // reads one field at cursor into field/fieldLength and moves cursor past its comma or line end.
+    // INCOMPLETE when the buffer ends first (and is not the end of the file); the buffer position is untouched
+    private Field nextField(ByteBuffer buffer, boolean atEnd) throws IOException {
+        int limit = buffer.limit();
+        int p = cursor;
+        fieldLength = 0;
+        quoted = p < limit && buffer.get(p) == QUOTE;
+
+        if (quoted) {
+            p++;
+            while (true) {
+                if (p == limit) {
+                    if (atEnd) {
+                        throw new IOException("line " + line + " has a quoted field that never ends");
+                    }
+                    return Field.INCOMPLETE;
+                }
+                byte b = buffer.get(p);
+                if (b == QUOTE) {
+                    if (p + 1 == limit && !atEnd) {
+                        return Field.INCOMPLETE;
+                    }
+                    if (p + 1 < limit && buffer.get(p + 1) == QUOTE) {
+                        append(QUOTE);
+                        p += 2;
+                        continue;
+                    }
+                    p++;
+                    break;
+                }
+                append(b);
+                p++;
+            }
+        } else {
+            while (p < limit) {
+                byte b = buffer.get(p);
+                if (b == COMMA || b == LF || b == CR) {
+                    break;
+                }
+                append(b);
+                p++;
+            }
+            if (p == limit && !atEnd) {
+                return Field.INCOMPLETE;
+            }
+        }
+
+        if (p == limit) {
+            cursor = p;
+            return Field.LAST;
+        }
+        byte terminator = buffer.get(p);
+        if (terminator == COMMA) {
+            cursor = p + 1;
+            return Field.NEXT;
+        }
+        if (terminator == LF) {
+            cursor = p + 1;
+            return Field.LAST;
+        }
+        if (terminator == CR) {
+            if (p + 1 == limit) {
+                if (!atEnd) {
+                    return Field.INCOMPLETE;
+                }
+                cursor = p + 1;
+            } else {
+                cursor = buffer.get(p + 1) == LF ? p + 2 : p + 1;
+            }
+            return Field.LAST;
+        }
+        throw new IOException("line " + line + " has text after a closing quote");
+    }
+
+    private void bind(PreparedStatement statement, int column, ColumnType type) throws IOException, SQLException {
+        if (fieldLength == 0 && !quoted) {
+            statement.setNull(column, sqlType(type));
+            return;
+        }
+        switch (type) {
+            case INT:
+                statement.setInt(column, parseInt(column));
+                break;
+            case DOUBLE:
+                try {
+                    statement.setDouble(column, Double.parseDouble(ascii()));
+                } catch (NumberFormatException e) {
+                    throw badValue(column, "a number");
+                }
+                break;
+            case BOOLEAN: {
+                String value = ascii();
+                if (value.equals("1") || value.equalsIgnoreCase("true")) {
+                    statement.setBoolean(column, true);
+                } else if (value.equals("0") || value.equalsIgnoreCase("false")) {
+                    statement.setBoolean(column, false);
+                } else {
+                    throw badValue(column, "1 or 0");
+                }
+                break;
+            }
+            case TIMESTAMP:
+                try {
+                    statement.setObject(column, LocalDateTime.parse(ascii()));
+                } catch (DateTimeParseException e) {
+                    throw badValue(column, "a date-time like 2024-05-01T10:15:30");
+                }
+                break;
+            default:
+                statement.setString(column, new String(field, 0, fieldLength, StandardCharsets.UTF_8));
+        }
+    }
+
+    // digits straight from the field bytes, no String in between
+    private int parseInt(int column) throws IOException {
+        // a quoted "" reaches here empty; field[0] would still hold a byte of an earlier field
+        if (fieldLength == 0) {
+            throw badValue(column, "a whole number");
+        }
+        int i = 0;
+        boolean negative = field[0] == '-';
+        if (negative || field[0] == '+') {
+            i++;
+        }
+        if (i == fieldLength) {
+            throw badValue(column, "a whole number");
+        }
+        long value = 0;
+        for (; i < fieldLength; i++) {
+            int digit = field[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw badValue(column, "a whole number");
+            }
+            value = value * 10 + digit;
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                throw badValue(column, "a whole number in int range");
+            }
+        }
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE) {
+            throw badValue(column, "a whole number in int range");
+        }
+        return (int) value;
+    }
+
+    private String ascii() {
+        return new String(field, 0, fieldLength, StandardCharsets.ISO_8859_1);
+    }
+
+    private IOException badValue(int column, String expected) {
+        return new IOException("line " + line + ", field " + column + ": '"
+                + new String(field, 0, fieldLength, StandardCharsets.UTF_8) + "' is not " + expected);
+    }
+
+    private void append(byte b) {
+        if (fieldLength == field.length) {
+            byte[] bigger = new byte[field.length * 2];
+            System.arraycopy(field, 0, bigger, 0, fieldLength);
+            field = bigger;
+        }
+        field[fieldLength++] = b;
+    }
+
+    private void writeLong(ChannelSink sink, long value) throws IOException {
+        if (value == 0) {
+            sink.put((byte) '0');
+            return;
+        }
+        boolean negative = value < 0;
+        int p = digits.length;
+        while (value != 0) {
+            digits[--p] = (byte) ('0' + Math.abs(value % 10));
+            value /= 10;
+        }
+        if (negative) {
+            digits[--p] = '-';
+        }
+        sink.put(digits, p, digits.length - p);
+    }
+
+    private static void writeText(ChannelSink sink, String value) throws IOException {
+        if (value.isEmpty()) {
+            sink.put(QUOTE);
+            sink.put(QUOTE);
+            return;
+        }
+        boolean needsQuotes = false;
+        for (int i = 0; i < value.length() && !needsQuotes; i++) {
+            char c = value.charAt(i);
+            needsQuotes = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (!needsQuotes) {
+            sink.put(bytes);
+            return;
+        }
+        sink.put(QUOTE);
+        for (byte b : bytes) {
+            if (b == QUOTE) {
+                sink.put(QUOTE);
+            }
+            sink.put(b);
+        }
+        sink.put(QUOTE);
+    }
+}
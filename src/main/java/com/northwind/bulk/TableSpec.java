@@ -0,0 +1,138 @@
+package com.northwind.bulk;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.StringJoiner;
+
+// The table and columns a bulk export or import works on, in file column order.
+// Rows are exported in key order and imported with their keys, so ids survive a round trip.
+public final class TableSpec {
+
+    public static final TableSpec CUSTOMERS = new Builder("Customers", "CustomerID")
+            .column("CustomerID", ColumnType.STRING)
+            .column("CompanyName", ColumnType.STRING)
+            .column("ContactName", ColumnType.STRING)
+            .column("ContactTitle", ColumnType.STRING)
+            .column("Address", ColumnType.STRING)
+            .column("City", ColumnType.STRING)
+            .column("Region", ColumnType.STRING)
+            .column("PostalCode", ColumnType.STRING)
+            .column("Country", ColumnType.STRING)
+            .column("Phone", ColumnType.STRING)
+            .column("Fax", ColumnType.STRING)
+            .build();
+
+    public static final TableSpec PRODUCTS = new Builder("products", "ProductID")
+            .column("ProductID", ColumnType.INT)
+            .column("ProductName", ColumnType.STRING)
+            .column("SupplierID", ColumnType.INT)
+            .column("CategoryID", ColumnType.INT)
+            .column("QuantityPerUnit", ColumnType.STRING)
+            .column("UnitPrice", ColumnType.DOUBLE)
+            .column("UnitsInStock", ColumnType.INT)
+            .column("UnitsOnOrder", ColumnType.INT)
+            .column("ReorderLevel", ColumnType.INT)
+            .column("Discontinued", ColumnType.BOOLEAN)
+            .build();
+
+    public static final TableSpec ORDERS = new Builder("orders", "OrderID")
+            .column("OrderID", ColumnType.INT)
+            .column("CustomerID", ColumnType.STRING)
+            .column("EmployeeID", ColumnType.INT)
+            .column("OrderDate", ColumnType.TIMESTAMP)
+            .column("RequiredDate", ColumnType.TIMESTAMP)
+            .column("ShippedDate", ColumnType.TIMESTAMP)
+            .column("ShipVia", ColumnType.INT)
+            .column("Freight", ColumnType.DOUBLE)
+            .column("ShipName", ColumnType.STRING)
+            .column("ShipAddress", ColumnType.STRING)
+            .column("ShipCity", ColumnType.STRING)
+            .column("ShipRegion", ColumnType.STRING)
+            .column("ShipPostalCode", ColumnType.STRING)
+            .column("ShipCountry", ColumnType.STRING)
+            .build();
+
+    public static final TableSpec ORDER_DETAILS = new Builder("`order details`", "OrderID, ProductID")
+            .column("OrderID", ColumnType.INT)
+            .column("ProductID", ColumnType.INT)
+            .column("UnitPrice", ColumnType.DOUBLE)
+            .column("Quantity", ColumnType.INT)
+            .column("Discount", ColumnType.DOUBLE)
+            .build();
+
+    private final String table;
+    private final String orderBy;
+    private final List<String> columnNames;
+    private final ColumnType[] columnTypes;
+
+    private TableSpec(String table, String orderBy, List<String> columnNames, List<ColumnType> columnTypes) {
+        this.table = table;
+        this.orderBy = orderBy;
+        this.columnNames = Collections.unmodifiableList(new ArrayList<>(columnNames));
+        this.columnTypes = columnTypes.toArray(new ColumnType[0]);
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public int getColumnCount() {
+        return columnTypes.length;
+    }
+
+    public List<String> getColumnNames() {
+        return columnNames;
+    }
+
+    public String getColumnName(int column) {
+        return columnNames.get(column);
+    }
+
+    public ColumnType getColumnType(int column) {
+        return columnTypes[column];
+    }
+
+    public String selectQuery() {
+        return "SELECT " + String.join(", ", columnNames) + "\nFROM " + table + "\nORDER BY " + orderBy + ";";
+    }
+
+    public String insertQuery() {
+        StringJoiner values = new StringJoiner(", ", "(", ")");
+        for (int i = 0; i < columnTypes.length; i++) {
+            values.add("?");
+        }
+        return "INSERT INTO " + table + " (" + String.join(", ", columnNames) + ")\nVALUES " + values + ";";
+    }
+
+    @Override
+    public String toString() {
+        return table;
+    }
+
+    // for tables other than the built-in ones
+    public static final class Builder {
+        private final String table;
+        private final String orderBy;
+        private final List<String> names = new ArrayList<>();
+        private final List<ColumnType> types = new ArrayList<>();
+
+        public Builder(String table, String orderBy) {
+            this.table = table;
+            this.orderBy = orderBy;
+        }
+
+        public Builder column(String name, ColumnType type) {
+            names.add(name);
+            types.add(type);
+            return this;
+        }
+
+        public TableSpec build() {
+            if (names.isEmpty()) {
+                throw new IllegalStateException("a table needs at least one column");
+            }
+            return new TableSpec(table, orderBy, names, types);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.northwind.changefeed;
+
+// One published delta: the key of the row, what happened to it, and (unless deleted) the row as it is now.
+// changeId is the last change_log entry folded into this delta.
+public final class Change<K, T> {
+    private final long changeId;
+    private final ChangeType type;
+    private final K key;
+    private final T row;
+
+    Change(long changeId, ChangeType type, K key, T row) {
+        this.changeId = changeId;
+        this.type = type;
+        this.key = key;
+        this.row = row;
+    }
+
+    public long getChangeId() {
+        return changeId;
+    }
+
+    public ChangeType getType() {
+        return type;
+    }
+
+    public K getKey() {
+        return key;
+    }
+
+    // the current row; null for DELETED
+    public T getRow() {
+        return row;
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + key + " (change " + changeId + ")";
+    }
+}
@@ -0,0 +1,281 @@
+package com.northwind.changefeed;
+
+import com.northwind.data.ChangeLogDao;
+import com.northwind.data.DataAccessException;
+import com.northwind.model.ChangeLogEntry;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Follows change_log (filled by the triggers in src/main/resources/change-log.sql) and publishes typed
+// deltas to listeners, so a consumer stays in sync by reading only what changed:
+//   ChangeFeed feed = new ChangeFeed("search-index", new ChangeLogDao(dataSource), new FileCheckpointStore(dir));
+//   feed.subscribe(FeedTable.products(productDao), changes -> ...);
+//   feed.start(Duration.ofSeconds(1));
+// Each poll reads up to batchSize entries after the checkpoint (a primary key range seek), folds repeated
+// changes of one row into one delta, loads the current rows with one findByIds per table, calls the
+// listeners, and only then saves the new checkpoint. A restart resumes from the saved checkpoint.
+// The log and the rows are read through ChangeLogDao.readConsistently(), so behind a ReadWriteRoutingDataSource
+// the rows are never older than the log entries; the tables' DAOs must use the change log's data source.
+//
+// Delivery is at least once: if a listener throws, or the process dies before the checkpoint is saved,
+// the batch comes again. Deltas carry the row as it is when loaded, which can already include later
+// changes; those changes arrive again as their own UPDATED. Consumers should treat INSERTED and UPDATED
+// as "upsert this row" and DELETED as "remove this key".
+// Within a table, deltas arrive in change order. A row inserted and deleted inside one batch is not published.
+//
+// ChangeIDs are handed out when a transaction writes, not when it commits, so a lower id can become
+// visible after a higher one. When the feed meets a gap in the ids it stops before it and waits up to
+// settleTime for the missing entries to commit; after that the gap is treated as a rolled-back write.
+public class ChangeFeed implements AutoCloseable {
+    private final String name;
+    private final ChangeLogDao changeLog;
+    private final CheckpointStore checkpoints;
+    private final Map<String, Subscription<?, ?>> subscriptions = new LinkedHashMap<>();
+
+    private int batchSize = 1000;
+    private long settleNanos = Duration.ofSeconds(2).toNanos();
+
+    // -1 until loaded from the checkpoint store
+    private long checkpoint = -1;
+    // the id just before the gap being waited on, and since when
+    private long gapAfter = -1;
+    private long gapSeenAt;
+    // the last entry of the batch being published
+    private long lastChangeId;
+
+    private volatile Thread poller;
+    private volatile boolean closed;
+
+    public ChangeFeed(String name, ChangeLogDao changeLog, CheckpointStore checkpoints) {
+        this.name = name;
+        this.changeLog = changeLog;
+        this.checkpoints = checkpoints;
+    }
+
+    // listeners of one table are called in the order they subscribed
+    @SuppressWarnings("unchecked")
+    public synchronized <K, T> void subscribe(FeedTable<K, T> table, ChangeListener<K, T> listener) {
+        Subscription<K, T> subscription = (Subscription<K, T>) subscriptions.computeIfAbsent(table.getTableName(),
+                tableName -> new Subscription<>(table));
+        subscription.listeners.add(listener);
+    }
+
+    // log entries read per poll
+    public synchronized void setBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+        this.batchSize = batchSize;
+    }
+
+    // how long a gap in the ChangeIDs may hold the feed back (ZERO skips gaps at once)
+    public synchronized void setSettleTime(Duration settleTime) {
+        this.settleNanos = settleTime.toNanos();
+    }
+
+    public synchronized long getCheckpoint() {
+        return loadCheckpoint();
+    }
+
+    // skips everything already in the log: call it before loading the initial state with getAll(),
+    // then follow the feed from here
+    public synchronized long seekToLatest() {
+        checkpoint = changeLog.getLastChangeId();
+        checkpoints.save(name, checkpoint);
+        gapAfter = -1;
+        return checkpoint;
+    }
+
+    // reads and publishes one batch; returns the number of log entries it got past.
+    // throws DataAccessException, or whatever a listener threw, leaving the checkpoint where it was
+    public synchronized int poll() {
+        long from = loadCheckpoint();
+        // the log and the rows it names are read as one view: on a routed data source a row read from a replica
+        // that is behind the log would look deleted (and an insert would be dropped), or show older values
+        List<Delivery<?, ?>> deliveries = new ArrayList<>();
+        int usable = changeLog.readConsistently(() -> read(from, deliveries));
+        if (usable == 0) {
+            return 0;
+        }
+
+        for (Delivery<?, ?> delivery : deliveries) {
+            delivery.deliver();
+        }
+
+        checkpoint = lastChangeId;
+        checkpoints.save(name, checkpoint);
+        return usable;
+    }
+
+    // reads the next batch and loads its rows into deliveries; returns the number of usable entries
+    private int read(long from, List<Delivery<?, ?>> deliveries) {
+        List<ChangeLogEntry> entries = changeLog.readAfter(from, batchSize);
+
+        int usable = entries.size();
+        long previous = from;
+        for (int i = 0; i < entries.size(); i++) {
+            long changeId = entries.get(i).getChangeId();
+            if (changeId != previous + 1 && !gapSettled(previous)) {
+                usable = i;
+                break;
+            }
+            previous = changeId;
+        }
+        if (usable == 0) {
+            return 0;
+        }
+
+        List<ChangeLogEntry> batch = entries.subList(0, usable);
+        for (Subscription<?, ?> subscription : subscriptions.values()) {
+            Delivery<?, ?> delivery = subscription.prepare(batch);
+            if (delivery != null) {
+                deliveries.add(delivery);
+            }
+        }
+        lastChangeId = batch.get(batch.size() - 1).getChangeId();
+        return usable;
+    }
+
+    // polls until the feed is caught up (or held back by a gap); returns the number of entries it got past
+    public synchronized int catchUp() {
+        int total = 0;
+        int read;
+        do {
+            read = poll();
+            total += read;
+        } while (read == batchSize);
+        return total;
+    }
+
+    // polls on a daemon thread: catches up, sleeps for interval, repeats
+    public synchronized void start(Duration interval) {
+        if (poller != null) {
+            throw new IllegalStateException("Already started");
+        }
+        long intervalMillis = interval.toMillis();
+        poller = new Thread(() -> run(intervalMillis), "northwind-change-feed-" + name);
+        poller.setDaemon(true);
+        poller.start();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        Thread thread = poller;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    private void run(long intervalMillis) {
+        while (!closed) {
+            try {
+                catchUp();
+            } catch (DataAccessException e) {
+                System.out.println("Change feed " + name + " could not read the change log; retrying. " + e.getMessage());
+            } catch (RuntimeException e) {
+                System.out.println("Change feed " + name + " listener failed; the batch will be delivered again. " + e);
+            }
+            try {
+                Thread.sleep(intervalMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private long loadCheckpoint() {
+        if (checkpoint < 0) {
+            checkpoint = checkpoints.load(name);
+        }
+        return checkpoint;
+    }
+
+    // true once the gap after this id has been waited on for settleTime
+    private boolean gapSettled(long after) {
+        long now = System.nanoTime();
+        if (gapAfter != after) {
+            gapAfter = after;
+            gapSeenAt = now;
+        }
+        return now - gapSeenAt >= settleNanos;
+    }
+
+    // one table's listeners, and how to turn its entries into deltas
+    private static final class Subscription<K, T> {
+        final FeedTable<K, T> table;
+        final List<ChangeListener<K, T>> listeners = new ArrayList<>();
+
+        Subscription(FeedTable<K, T> table) {
+            this.table = table;
+        }
+
+        // this table's deltas in the batch, with their rows loaded; null when there are none
+        Delivery<K, T> prepare(List<ChangeLogEntry> batch) {
+            // key -> first operation and last ChangeID in this batch
+            Map<K, Folded> folded = new LinkedHashMap<>();
+            for (ChangeLogEntry entry : batch) {
+                if (!entry.getTableName().equalsIgnoreCase(table.getTableName())) {
+                    continue;
+                }
+                Folded row = folded.computeIfAbsent(table.parseKey(entry.getRowKey()), k -> new Folded(entry.getOperation()));
+                row.lastChangeId = entry.getChangeId();
+            }
+            if (folded.isEmpty()) {
+                return null;
+            }
+
+            Map<K, T> rows = table.load(folded.keySet());
+
+            List<Change<K, T>> changes = new ArrayList<>(folded.size());
+            for (Map.Entry<K, Folded> entry : folded.entrySet()) {
+                K key = entry.getKey();
+                Folded row = entry.getValue();
+                T current = rows.get(key);
+                if (current != null) {
+                    ChangeType type = row.firstOperation == 'I' ? ChangeType.INSERTED : ChangeType.UPDATED;
+                    changes.add(new Change<>(row.lastChangeId, type, key, current));
+                } else if (row.firstOperation != 'I') {
+                    changes.add(new Change<>(row.lastChangeId, ChangeType.DELETED, key, null));
+                }
+            }
+            if (changes.isEmpty()) {
+                return null;
+            }
+            changes.sort(Comparator.comparingLong(Change::getChangeId));
+            return new Delivery<>(listeners, Collections.unmodifiableList(changes));
+        }
+    }
+
+    // one table's deltas from one poll, handed to its listeners once every table's rows are loaded
+    private static final class Delivery<K, T> {
+        final List<ChangeListener<K, T>> listeners;
+        final List<Change<K, T>> changes;
+
+        Delivery(List<ChangeListener<K, T>> listeners, List<Change<K, T>> changes) {
+            this.listeners = listeners;
+            this.changes = changes;
+        }
+
+        void deliver() {
+            for (ChangeListener<K, T> listener : listeners) {
+                listener.onChanges(changes);
+            }
+        }
+    }
+
+    private static final class Folded {
+        final char firstOperation;
+        long lastChangeId;
+
+        Folded(char firstOperation) {
+            this.firstOperation = firstOperation;
+        }
+    }
+}
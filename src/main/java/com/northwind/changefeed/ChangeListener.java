@@ -0,0 +1,10 @@
+package com.northwind.changefeed;
+
+import java.util.List;
+
+// Receives one table's deltas from one poll, in change order.
+// Throwing makes the feed keep its checkpoint, so the same batch is delivered again on the next poll.
+@FunctionalInterface
+public interface ChangeListener<K, T> {
+    void onChanges(List<Change<K, T>> changes);
+}
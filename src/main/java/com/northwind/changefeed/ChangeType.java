@@ -0,0 +1,7 @@
+package com.northwind.changefeed;
+
+public enum ChangeType {
+    INSERTED,
+    UPDATED,
+    DELETED
+}
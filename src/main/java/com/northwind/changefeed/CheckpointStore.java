@@ -0,0 +1,9 @@
+package com.northwind.changefeed;
+
+// Where a feed keeps the last ChangeID it delivered, so it resumes there after a restart
+public interface CheckpointStore {
+    // the saved checkpoint, or 0 when the feed has none yet
+    long load(String feedName);
+
+    void save(String feedName, long changeId);
+}
@@ -0,0 +1,59 @@
+package com.northwind.changefeed;
+
+import com.northwind.data.CustomerDao;
+import com.northwind.data.EntityCache;
+import com.northwind.data.ProductDao;
+import com.northwind.model.Customer;
+import com.northwind.model.Product;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.Function;
+
+// How the feed turns a table's change_log entries into typed rows: the table name the triggers log,
+// how to parse RowKey, and how to load the current rows for a batch of keys (one findByIds per poll)
+public final class FeedTable<K, T> {
+    private final String tableName;
+    private final Function<String, K> keyParser;
+    private final Function<Collection<K>, Map<K, T>> loader;
+
+    public FeedTable(String tableName, Function<String, K> keyParser, Function<Collection<K>, Map<K, T>> loader) {
+        this.tableName = tableName;
+        this.keyParser = keyParser;
+        this.loader = loader;
+    }
+
+    // the DAO's cache entries for changed rows are dropped first, so the feed reads (and the cache
+    // then holds) the new rows, even for writes made outside this application
+    public static FeedTable<Integer, Product> products(ProductDao productDao) {
+        return new FeedTable<>("products", Integer::valueOf, productIds -> {
+            invalidate(productDao.getCache(), productIds);
+            return productDao.findByIds(productIds);
+        });
+    }
+
+    public static FeedTable<String, Customer> customers(CustomerDao customerDao) {
+        return new FeedTable<>("customers", Function.identity(), customerIds -> {
+            invalidate(customerDao.getCache(), customerIds);
+            return customerDao.findByIds(customerIds);
+        });
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    K parseKey(String rowKey) {
+        return keyParser.apply(rowKey);
+    }
+
+    Map<K, T> load(Collection<K> keys) {
+        return loader.apply(keys);
+    }
+
+    private static <K> void invalidate(EntityCache<K, ?> cache, Collection<K> keys) {
+        if (cache != null) {
+            keys.forEach(cache::invalidate);
+        }
+    }
+}
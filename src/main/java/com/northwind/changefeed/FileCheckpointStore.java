@@ -0,0 +1,92 @@
+package com.northwind.changefeed;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+// One small text file per feed (<directory>/<feed name>.checkpoint) holding the ChangeID.
+// A save writes a temp file, forces it to disk and only then renames it over the old one, so a crash
+// (even a power cut) leaves either the old checkpoint or the new one, never an empty file or half a number.
+// Throws UncheckedIOException when the file cannot be used, including when it is empty or does not hold
+// a ChangeID: guessing would either replay the whole log or skip changes, so that is left to an operator
+// (delete the file to start from 0, or write the last ChangeID the consumer has applied into it).
+public class FileCheckpointStore implements CheckpointStore {
+    private final Path directory;
+
+    public FileCheckpointStore(Path directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public long load(String feedName) {
+        Path file = fileOf(feedName);
+        String text;
+        try {
+            text = Files.readString(file, StandardCharsets.US_ASCII).trim();
+        } catch (NoSuchFileException e) {
+            return 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        if (text.isEmpty()) {
+            throw new UncheckedIOException(new IOException("Checkpoint file " + file + " is empty"));
+        }
+        try {
+            long changeId = Long.parseLong(text);
+            if (changeId < 0) {
+                throw new NumberFormatException("negative");
+            }
+            return changeId;
+        } catch (NumberFormatException e) {
+            throw new UncheckedIOException(new IOException("Checkpoint file " + file + " does not hold a ChangeID: " + text, e));
+        }
+    }
+
+    @Override
+    public void save(String feedName, long changeId) {
+        Path file = fileOf(feedName);
+        Path temp = directory.resolve(feedName + ".checkpoint.tmp");
+        try {
+            Files.createDirectories(directory);
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer bytes = ByteBuffer.wrap(Long.toString(changeId).getBytes(StandardCharsets.US_ASCII));
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+                // the contents must be on disk before the rename can make them the checkpoint
+                channel.force(true);
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            forceDirectory();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // makes the rename itself durable; not every platform can open a directory, and there it is skipped
+    private void forceDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // the rename is still atomic, only its durability is left to the file system
+        }
+    }
+
+    private Path fileOf(String feedName) {
+        return directory.resolve(feedName + ".checkpoint");
+    }
+}
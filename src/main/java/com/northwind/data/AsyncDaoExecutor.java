@@ -0,0 +1,118 @@
+package com.northwind.data;
+
+import org.apache.commons.dbcp2.BasicDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// Runs blocking DAO calls off the caller's thread and hands back a CompletableFuture.
+// Uses a virtual thread per call when the runtime has them (Java 21+), otherwise a platform pool.
+// At most one call per pooled connection runs at a time; the rest wait on a semaphore
+// (cheap for a virtual thread) instead of queueing inside the connection pool.
+public final class AsyncDaoExecutor implements AutoCloseable {
+    private static final Map<DataSource, AsyncDaoExecutor> SHARED = Collections.synchronizedMap(new IdentityHashMap<>());
+    private static final int DEFAULT_PERMITS = 8;
+
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final boolean virtualThreads;
+
+    public AsyncDaoExecutor(int maxConcurrent) {
+        if (maxConcurrent <= 0) {
+            throw new IllegalArgumentException("maxConcurrent must be positive");
+        }
+        ExecutorService virtual = newVirtualThreadExecutor();
+        this.virtualThreads = virtual != null;
+        this.executor = virtual != null ? virtual : newPlatformExecutor(maxConcurrent);
+        this.permits = new Semaphore(maxConcurrent, true);
+    }
+
+    // one executor per data source, sized to the pool's maxTotal, shared by every DAO using it
+    public static AsyncDaoExecutor forDataSource(DataSource dataSource) {
+        return SHARED.computeIfAbsent(dataSource, ds -> new AsyncDaoExecutor(permitsFor(ds)));
+    }
+
+    public <T> CompletableFuture<T> submit(Supplier<T> work) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            }
+            try {
+                return work.get();
+            } finally {
+                permits.release();
+            }
+        }, executor);
+    }
+
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    // callers waiting for a free connection slot
+    public int getQueueLength() {
+        return permits.getQueueLength();
+    }
+
+    public int getAvailablePermits() {
+        return permits.availablePermits();
+    }
+
+    // true once close() ran; submit() then throws RejectedExecutionException
+    public boolean isClosed() {
+        return executor.isShutdown();
+    }
+
+    // shuts the executor down and takes it out of the shared ones; a JdbcRunner still holding it
+    // moves to a new shared executor on its next async call
+    @Override
+    public void close() {
+        SHARED.values().remove(this);
+        executor.shutdown();
+    }
+
+    private static int permitsFor(DataSource dataSource) {
+        if (dataSource instanceof ReadWriteRoutingDataSource routing) {
+            return permitsFor(routing.getPrimary());
+        }
+        if (dataSource instanceof BasicDataSource pool) {
+            // a negative maxTotal means unlimited; the semaphore still needs a number
+            return pool.getMaxTotal() > 0 ? pool.getMaxTotal() : Integer.MAX_VALUE;
+        }
+        return DEFAULT_PERMITS;
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() looked up by reflection so this still compiles and runs on 17
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    // the semaphore already caps concurrency, so the platform pool only needs as many threads as permits
+    private static ExecutorService newPlatformExecutor(int maxConcurrent) {
+        int threads = Math.min(maxConcurrent, Math.max(DEFAULT_PERMITS, Runtime.getRuntime().availableProcessors() * 4));
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "northwind-dao-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,74 @@
+package com.northwind.data;
+
+import com.northwind.model.ChangeLogEntry;
+
+import javax.sql.DataSource;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.function.Supplier;
+
+// Reads the trigger-maintained change_log table (DDL and triggers in src/main/resources/change-log.sql).
+// Every read is a range seek on the ChangeID primary key, so it costs the entries returned, not the log size.
+public class ChangeLogDao {
+    private final JdbcRunner runner;
+
+    public ChangeLogDao(DataSource dataSource) {
+        this(new JdbcRunner(dataSource));
+    }
+
+    public ChangeLogDao(JdbcRunner runner) {
+        this.runner = runner;
+    }
+
+    // up to limit entries with a ChangeID greater than afterChangeId, oldest first
+    public List<ChangeLogEntry> readAfter(long afterChangeId, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+
+        String query = """
+                SELECT ChangeID, TableName, RowKey, Operation, ChangedAt
+                FROM change_log
+                WHERE ChangeID > ?
+                ORDER BY ChangeID
+                LIMIT ?;
+                """;
+
+        return runner.queryList("ChangeLogDao.readAfter", query, statement -> {
+            statement.setLong(1, afterChangeId);
+            statement.setInt(2, limit);
+        }, RowMappers.CHANGE_LOG_ENTRY);
+    }
+
+    // runs a log read and the reads of the rows it names so the rows are at least as new as the log
+    // (see JdbcRunner.readConsistently); the DAOs reading those rows must share this data source
+    public <R> R readConsistently(Supplier<R> work) {
+        return runner.readConsistently(work);
+    }
+
+    // the newest ChangeID, or 0 when the log is empty
+    public long getLastChangeId() {
+        String query = """
+                SELECT COALESCE(MAX(ChangeID), 0) AS ChangeID
+                FROM change_log;
+                """;
+
+        return runner.withReadConnection("ChangeLogDao.getLastChangeId", connection -> {
+            try (PreparedStatement statement = runner.prepare(connection, query);
+                 ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getLong(1) : 0L;
+            }
+        });
+    }
+
+    // removes entries up to and including throughChangeId; only purge what every feed reading the log has passed
+    public int purgeThrough(long throughChangeId) {
+        String query = """
+                DELETE FROM change_log
+                WHERE ChangeID <= ?;
+                """;
+
+        return runner.update("ChangeLogDao.purgeThrough", query, statement -> statement.setLong(1, throughChangeId));
+    }
+}
@@ -0,0 +1,118 @@
+package com.northwind.data;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+// Fails calls fast while the database is unhealthy instead of letting every caller wait for its own timeout.
+//   CLOSED     calls go through; failureThreshold failed calls in a row (connection errors, statement timeouts) open it
+//   OPEN       every call throws CircuitOpenException at once, for openDuration
+//   HALF_OPEN  one trial call goes through (the rest are still refused); success closes the breaker, failure opens it again
+// Only failures that say the database is unreachable or slow count; a constraint violation is an answer, not an outage,
+// and a busy pool, a deadlock, a lock wait or the caller's own deadline neither count nor reset the count.
+// JdbcRunners share one breaker per data source, so every DAO sees the outage at the same time.
+public class CircuitBreaker {
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private static final Map<DataSource, CircuitBreaker> SHARED = Collections.synchronizedMap(new IdentityHashMap<>());
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openNanos;
+
+    private volatile State state = State.CLOSED;
+    private volatile int consecutiveFailures;
+    private long openedAt;
+    private boolean trialInFlight;
+    private long timesOpened;
+
+    public CircuitBreaker(String name, int failureThreshold, Duration openDuration) {
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("failureThreshold must be at least 1");
+        }
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openDuration.toNanos();
+    }
+
+    // the breaker every runner on this data source uses unless it is given another one
+    public static CircuitBreaker forDataSource(DataSource dataSource) {
+        return SHARED.computeIfAbsent(dataSource, ds -> new CircuitBreaker(
+                "northwind-" + Integer.toHexString(System.identityHashCode(ds)), 5, Duration.ofSeconds(10)));
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    public synchronized long getTimesOpened() {
+        return timesOpened;
+    }
+
+    // throws CircuitOpenException when the call may not go through; a caller let through must report
+    // its outcome with onSuccess() or onFailure()
+    void acquire(String operation) {
+        if (state == State.CLOSED) {
+            return;
+        }
+        synchronized (this) {
+            if (state == State.CLOSED) {
+                return;
+            }
+            long now = System.nanoTime();
+            if (state == State.OPEN && now - openedAt >= openNanos) {
+                state = State.HALF_OPEN;
+                trialInFlight = false;
+            }
+            if (state == State.HALF_OPEN && !trialInFlight) {
+                trialInFlight = true;
+                return;
+            }
+            long waitNanos = state == State.OPEN ? openNanos - (now - openedAt) : 0;
+            throw new CircuitOpenException(operation, Duration.ofNanos(Math.max(0, waitNanos)));
+        }
+    }
+
+    void onSuccess() {
+        if (state == State.CLOSED && consecutiveFailures == 0) {
+            return;
+        }
+        synchronized (this) {
+            consecutiveFailures = 0;
+            trialInFlight = false;
+            if (state != State.CLOSED) {
+                state = State.CLOSED;
+                System.out.println("Circuit breaker " + name + " closed: the database is answering again.");
+            }
+        }
+    }
+
+    // the call failed in a way that says nothing about the database's health (Ex. the pool was busy, or the
+    // caller's deadline ran out); the failure count stays as it is and a half-open trial goes to the next caller
+    void onNeutral() {
+        if (state != State.HALF_OPEN) {
+            return;
+        }
+        synchronized (this) {
+            trialInFlight = false;
+        }
+    }
+
+    synchronized void onFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            state = State.OPEN;
+            openedAt = System.nanoTime();
+            trialInFlight = false;
+            timesOpened++;
+            System.out.println("Circuit breaker " + name + " opened after " + consecutiveFailures
+                    + " failures in a row; calls fail fast for " + openNanos / 1_000_000 + " ms.");
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.northwind.data;
+
+import java.time.Duration;
+
+// The circuit breaker for the data source is open: recent calls kept failing, so this one was refused
+// without borrowing a connection.
+public class CircuitOpenException extends DataAccessException {
+    private static final long serialVersionUID = 1L;
+
+    private final Duration retryAfter;
+
+    public CircuitOpenException(String operation, Duration retryAfter) {
+        super(operation, "the database is unavailable (circuit open, next trial in " + retryAfter.toMillis() + " ms)", null);
+        this.retryAfter = retryAfter;
+    }
+
+    // how long until the breaker lets a trial call through
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -5,13 +5,24 @@ package com.northwind.data;
 // These are "import" statements - they're like telling Java "I need to use these tools"
 // Just like you might say "I need a hammer and screwdriver" before starting a project
 import com.northwind.model.Customer;  // This imports the Customer class (a blueprint for customer objects)
+import com.northwind.search.CustomerSearchIndex; // A fast in-memory index for "search as you type"
 import javax.sql.DataSource;           // This helps us connect to a database
 import java.sql.Connection;            // This represents an active connection to the database
 import java.sql.PreparedStatement;     // This helps us safely send commands to the database
-import java.sql.ResultSet;             // This holds the results we get back from the database
 import java.sql.SQLException;          // This helps us handle database errors
 import java.util.ArrayList;            // This is a flexible list that can grow and shrink
+import java.util.Arrays;               // Helpers for working with arrays
+import java.util.Collection;           // Any group of items (a List, a Set...)
+import java.util.HashMap;              // A lookup table: give it a key, get back a value
+import java.util.LinkedHashSet;        // A set (no duplicates) that remembers the order things were added
 import java.util.List;                 // This is the general concept of a list
+import java.util.Map;                  // The general concept of a lookup table
+import java.util.Objects;              // Null-safe helpers like Objects.equals()
+import java.util.StringJoiner;          // Glues strings together with a separator ("a = ?, b = ?")
+import java.util.concurrent.CompletableFuture; // A result that will be ready later (a "promise")
+import java.util.concurrent.atomic.AtomicReferenceArray; // An array that is safe to share between threads
+import java.util.function.Consumer;    // A piece of code that "consumes" (does something with) each item
+import java.util.stream.Stream;        // A sequence of items we can process one at a time
 
 // DAO stands for "Data Access Object"
 // This class is responsible for talking to the database and managing customer information
@@ -21,21 +32,92 @@ import java.util.List;                 // This is the general concept of a list
 // - Add a new book (add)
 // - Update book information (update)
 // - Remove a book (delete)
+//
+// The boring part of every trip to the database (open a connection, prepare the statement,
+// close everything, catch errors) lives in JdbcRunner, so each method here only has to say
+// WHAT to run: the SQL, how to fill in the ? placeholders, and how to turn a row into a Customer.
+//
+// When something goes wrong, every method throws a DataAccessException (it's unchecked, so you don't
+// have to catch it). That way "the database is down" can never be mistaken for "no such customer":
+// find() returning null really means the customer doesn't exist.
 public class CustomerDao {
 
+    // The most IDs we put in one "WHERE CustomerID IN (...)" list
+    // Huge lists are slow for the database to parse, so findByIds() splits them up
+    private static final int MAX_IN_LIST = 500;
+
+    // The columns update() can write, in the same order as the bits in Customer.getDirtyColumns()
+    private static final String[] COLUMNS = {"CompanyName", "ContactName", "ContactTitle", "Address", "City",
+            "Region", "PostalCode", "Country", "Phone", "Fax"};
+
+    // Building the SQL text for a set of changed columns only has to happen once - after that we reuse it
+    // (slot number = the dirty-column bits, so there is one slot for every possible combination)
+    private static final AtomicReferenceArray<String> UPDATE_QUERIES = new AtomicReferenceArray<>(Customer.ALL_COLUMNS + 1);
+
     // This is a "field" or "instance variable" - it's data that belongs to this object
-    // DataSource is like having the address and key to the database
+    // The runner knows the DataSource (the address and key to the database) and does the actual talking
     // The "private" keyword means only this class can directly access it (it's private!)
-    private DataSource dataSource;
+    private final JdbcRunner runner;
+
+    // An optional cache that remembers customers we already looked up
+    // It stays null (turned off) unless someone calls setCache()
+    private EntityCache<String, Customer> cache;
+
+    // An optional type-ahead search index (also null = turned off)
+    // Every customer we add, update or delete is passed on to it so searches never show old data
+    private CustomerSearchIndex searchIndex;
+
+    // How many customers addAll() sends to the database in one trip
+    private int batchSize = 500;
 
     // This is a "constructor" - it runs when you create a new CustomerDao object
     // It's like initializing/setting up the object when it's born
-    // The constructor takes a DataSource as input and stores it for later use
+    // The constructor takes a DataSource as input and builds a runner around it
     public CustomerDao(DataSource dataSource) {
-        // "this.dataSource" refers to the field above
-        // "dataSource" (without "this") refers to the parameter we received
-        // This line says: "Store the dataSource I received into my field for later"
-        this.dataSource = dataSource;
+        // "this(...)" calls the other constructor below
+        this(new JdbcRunner(dataSource));
+    }
+
+    // Use this one to share a runner (and its settings) between DAOs
+    public CustomerDao(JdbcRunner runner) {
+        this.runner = runner;
+    }
+
+    // Turn on the cache for find()
+    // add(), update() and delete() throw away the cached copy so readers never see old data
+    // The cache keeps its own copies and every caller gets a fresh copy of its own,
+    // so changing a customer you got back never changes what someone else sees
+    public void setCache(EntityCache<String, Customer> cache) {
+        this.cache = cache;
+    }
+
+    public EntityCache<String, Customer> getCache() {
+        return cache;
+    }
+
+    // Keep a search index up to date with every write this DAO makes
+    // Fill it first, Ex: customerDao.forEach(index::put)
+    public void setSearchIndex(CustomerSearchIndex searchIndex) {
+        this.searchIndex = searchIndex;
+    }
+
+    public CustomerSearchIndex getSearchIndex() {
+        return searchIndex;
+    }
+
+    // Change how many rows stream() asks the driver for at a time
+    // Integer.MIN_VALUE (the default) tells MySQL to hand us rows one by one instead of all at once
+    // A positive number fetches that many rows per trip, but only if the url has useCursorFetch=true
+    public void setFetchSize(int fetchSize) {
+        runner.setStreamFetchSize(fetchSize);
+    }
+
+    // Change the addAll() batch size
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+        this.batchSize = batchSize;
     }
 
     // METHOD 1: GET ALL CUSTOMERS
@@ -43,10 +125,6 @@ public class CustomerDao {
     // It's like asking "Show me everyone in your database table"
     public List<Customer> getAll() {
 
-        // Create an empty ArrayList to store all the customers we'll find
-        // It starts empty, but we'll add customers to it as we find them
-        List<Customer> customers = new ArrayList<>();
-
         // This is the SQL query - a command we'll send to the database
         // SQL is like asking the database: "Give me all this information from the Customers table"
         String query = """
@@ -54,46 +132,72 @@ public class CustomerDao {
                 FROM Customers;
                 """;
 
-        // Try-with-resources: automatically closes database connections when done
-        // Like borrowing a book and automatically returning it, even if you drop it!
-        try (Connection connection = dataSource.getConnection();  // Open the door to the database
-             PreparedStatement statement = connection.prepareStatement(query)) {  // Prepare our question
-
-            // Execute the query and get back a ResultSet (a table of results)
-            try (ResultSet resultSet = statement.executeQuery()) {
-
-                // Loop through each row in the results
-                // "while resultSet.next()" means "while there's another row, move to it"
-                while (resultSet.next()) {
-
-                    // Build a Customer object from the current row's data
-                    // It's like filling out a form with information from each column
-                    Customer customer = new Customer(
-                            resultSet.getString("CustomerID"),
-                            resultSet.getString("CompanyName"),
-                            resultSet.getString("ContactName"),
-                            resultSet.getString("ContactTitle"),
-                            resultSet.getString("Address"),
-                            resultSet.getString("City"),
-                            resultSet.getString("Region"),
-                            resultSet.getString("PostalCode"),
-                            resultSet.getString("Country"),
-                            resultSet.getString("Phone"),
-                            resultSet.getString("Fax"));
-
-                    // Add this customer to our list
-                    customers.add(customer);
-                }
-            }
+        // The runner opens a connection, runs the query, turns every row into a Customer
+        // (using RowMappers.CUSTOMER) and closes everything again - even if something goes wrong
+        // Binder.NONE means "this query has no ? placeholders to fill in"
+        // If the database call fails, this throws a DataAccessException (it never hides the error
+        // behind an empty list - an empty list really means there are no customers)
+        return runner.queryList("CustomerDao.getAll", query, JdbcRunner.Binder.NONE, RowMappers.CUSTOMER);
+    }
+
+    // METHOD 1c: GET ALL CUSTOMERS WITHOUT WAITING
+    // getAll() makes the calling thread sit and wait for the database
+    // getAllAsync() hands the work to the runner's async executor and returns right away
+    // The CompletableFuture is "a list of customers that will be ready later"
+    // Example: customerDao.getAllAsync().thenAccept(customers -> System.out.println(customers.size()));
+    public CompletableFuture<List<Customer>> getAllAsync() {
+        return runner.getAsyncExecutor().submit(this::getAll);
+    }
 
-        } catch (SQLException e) {
-            // If something goes wrong, print a friendly error message
-            System.out.println("There was an error retrieving the data. Please try again.");
-            e.printStackTrace();  // Print technical details for developers
+    // METHOD 1a: GET ONE PAGE OF CUSTOMERS
+    // Instead of everyone at once, get "limit" customers whose ID comes after afterCustomerId
+    // Pass null to start at the beginning, then pass page.getNextKey() to get the next page
+    // Seeking by the primary key (instead of OFFSET) means page 100 is just as fast as page 1
+    public Page<String, Customer> page(String afterCustomerId, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive");
         }
 
-        // Return the list (might be empty if no customers exist or an error occurred)
-        return customers;
+        // We ask for one extra row - if it comes back, we know there is another page
+        String query = """
+                SELECT CustomerID, CompanyName, ContactName, ContactTitle, Address, City, Region, PostalCode, Country, Phone, Fax
+                FROM Customers
+                WHERE CustomerID > ?
+                ORDER BY CustomerID
+                LIMIT ?;
+                """;
+
+        List<Customer> customers = runner.queryList("CustomerDao.page", query, statement -> {
+            // An empty string sorts before every real ID, so it means "start at the beginning"
+            statement.setString(1, afterCustomerId == null ? "" : afterCustomerId);
+            statement.setInt(2, limit + 1);
+        }, RowMappers.CUSTOMER);
+
+        return Page.of(customers, limit, Customer::getCustomerId);
+    }
+
+    // METHOD 1b: STREAM ALL CUSTOMERS
+    // Like getAll(), but customers are built one at a time as we read them instead of all at once
+    // This keeps memory flat no matter how big the table is
+    // The stream holds a database connection, so ALWAYS close it (try-with-resources works great)
+    public Stream<Customer> stream() {
+
+        String query = """
+                SELECT CustomerID, CompanyName, ContactName, ContactTitle, Address, City, Region, PostalCode, Country, Phone, Fax
+                FROM Customers;
+                """;
+
+        // If something goes wrong, this throws a DataAccessException - right away if the query
+        // can't start, or later while you read the stream if the database fails part way through
+        return runner.stream("CustomerDao.stream", query, JdbcRunner.Binder.NONE, RowMappers.CUSTOMER);
+    }
+
+    // Run some code for every customer, without keeping them all in memory
+    // Example: customerDao.forEach(customer -> System.out.println(customer.getCompanyName()));
+    public void forEach(Consumer<Customer> action) {
+        try (Stream<Customer> customers = stream()) {
+            customers.forEach(action);
+        }
     }
 
     // METHOD 2: FIND ONE CUSTOMER BY ID
@@ -101,9 +205,50 @@ public class CustomerDao {
     // It's like looking up a specific person in a phone book
     public Customer find(String customerId) {
 
-        // Start with null (nothing) - we'll replace this if we find the customer
-        // null is like an empty box - it represents "no value yet"
-        Customer customer = null;
+        // If the cache is turned off, every lookup goes to the database
+        EntityCache<String, Customer> current = cache;
+        if (current == null) {
+            return load(customerId);
+        }
+
+        // Otherwise ask the cache first - it only goes to the database on a miss
+        // A hit never goes through the runner, so we record it in the metrics ourselves
+        // (that way "CustomerDao.find" counts every call, not just the slow ones)
+        long start = System.nanoTime();
+        Customer cached = current.getIfPresent(customerId);
+        if (cached != null) {
+            runner.recordHit("CustomerDao.find", start);
+            return copyOf(cached);
+        }
+        return copyOf(current.load(customerId, this::load));
+    }
+
+    // METHOD 2a: FIND ONE CUSTOMER WITHOUT WAITING
+    // Same as find(), but the lookup runs on the async executor
+    // If the cache already has the customer, the answer is ready immediately - no thread needed
+    public CompletableFuture<Customer> findAsync(String customerId) {
+        EntityCache<String, Customer> current = cache;
+        if (current == null) {
+            return runner.getAsyncExecutor().submit(() -> load(customerId));
+        }
+        long start = System.nanoTime();
+        Customer cached = current.getIfPresent(customerId);
+        if (cached != null) {
+            runner.recordHit("CustomerDao.find", start);
+            return CompletableFuture.completedFuture(copyOf(cached));
+        }
+        // getIfPresent() already counted the miss, so load through the cache without asking it again
+        return runner.getAsyncExecutor().submit(() -> copyOf(current.load(customerId, this::load)));
+    }
+
+    // findByIds() without waiting (we copy the IDs first so the caller can change their list afterwards)
+    public CompletableFuture<Map<String, Customer>> findByIdsAsync(Collection<String> customerIds) {
+        List<String> ids = new ArrayList<>(customerIds);
+        return runner.getAsyncExecutor().submit(() -> findByIds(ids));
+    }
+
+    // This is the database lookup that find() (or the cache) runs when it needs a fresh copy
+    private Customer load(String customerId) {
 
         // SQL query with a ? placeholder - this is for security!
         // The ? is like a fill-in-the-blank that we'll safely fill in later
@@ -114,43 +259,65 @@ public class CustomerDao {
                 WHERE CustomerID = ?;
                 """;
 
-        try (Connection connection = dataSource.getConnection();
-             PreparedStatement statement = connection.prepareStatement(query)) {
-
-            // Fill in the ? placeholder with the actual customer ID
-            // The "1" means "the first placeholder" (in case there were multiple)
-            // This is safer than putting the ID directly in the query (prevents SQL injection attacks)
-            statement.setString(1, customerId);
-
-            try (ResultSet resultSet = statement.executeQuery()) {
-
-                // "if" instead of "while" because we expect at most ONE result
-                // Customer IDs are unique, so there should only be one match
-                if (resultSet.next()) {
-                    // We found them! Build the Customer object
-                    customer = new Customer(
-                            resultSet.getString("CustomerID"),
-                            resultSet.getString("CompanyName"),
-                            resultSet.getString("ContactName"),
-                            resultSet.getString("ContactTitle"),
-                            resultSet.getString("Address"),
-                            resultSet.getString("City"),
-                            resultSet.getString("Region"),
-                            resultSet.getString("PostalCode"),
-                            resultSet.getString("Country"),
-                            resultSet.getString("Phone"),
-                            resultSet.getString("Fax"));
-                }
-                // If resultSet.next() is false, customer stays null (customer not found)
-            }
+        // Fill in the ? placeholder with the actual customer ID
+        // The "1" means "the first placeholder" (in case there were multiple)
+        // This is safer than putting the ID directly in the query (prevents SQL injection attacks)
+        // queryOne() gives back the customer, or null if there is no customer with that ID
+        return runner.queryOne("CustomerDao.find", query, statement -> statement.setString(1, customerId), RowMappers.CUSTOMER);
+    }
 
-        } catch (SQLException e) {
-            System.out.println("There was an error retrieving the data. Please try again.");
-            e.printStackTrace();
+    // METHOD 2b: FIND MANY CUSTOMERS BY ID
+    // Calling find() once per order is slow (one trip per customer - the "N+1 problem")
+    // findByIds() gets them all in a few trips and hands back a Map: customer ID -> Customer
+    // IDs that don't exist simply aren't in the map
+    public Map<String, Customer> findByIds(Collection<String> customerIds) {
+        long startNanos = System.nanoTime();
+        Map<String, Customer> customers = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+
+        // First check the cache - only the ones it doesn't have go to the database
+        // (the LinkedHashSet throws away duplicate IDs)
+        for (String customerId : new LinkedHashSet<>(customerIds)) {
+            Customer cached = cache == null ? null : cache.getIfPresent(customerId);
+            if (cached != null) {
+                customers.put(customerId, copyOf(cached));
+            } else {
+                missing.add(customerId);
+            }
+        }
+        // All of them were cached: record the call, since it never reached the runner
+        if (missing.isEmpty()) {
+            runner.recordHit("CustomerDao.findByIds", startNanos);
+            return customers;
         }
 
-        // Return the customer (or null if not found)
-        return customer;
+        // One connection for all the chunks
+        return runner.withReadConnection("CustomerDao.findByIds", connection -> {
+            for (int start = 0; start < missing.size(); start += MAX_IN_LIST) {
+                List<String> chunk = missing.subList(start, Math.min(start + MAX_IN_LIST, missing.size()));
+
+                // One ? per ID in this chunk: WHERE CustomerID IN (?, ?, ?)
+                String query = """
+                        SELECT CustomerID, CompanyName, ContactName, ContactTitle, Address, City, Region, PostalCode, Country, Phone, Fax
+                        FROM Customers
+                        WHERE CustomerID IN (%s);
+                        """.formatted(JdbcRunner.placeholders(chunk.size()));
+
+                List<Customer> found = runner.queryList(connection, query, statement -> {
+                    for (int i = 0; i < chunk.size(); i++) {
+                        statement.setString(i + 1, chunk.get(i));
+                    }
+                }, RowMappers.CUSTOMER);
+
+                for (Customer customer : found) {
+                    customers.put(customer.getCustomerId(), customer);
+                    if (cache != null) {
+                        cache.put(customer.getCustomerId(), copyOf(customer));
+                    }
+                }
+            }
+            return customers;
+        });
     }
 
     // METHOD 3: ADD A NEW CUSTOMER
@@ -166,79 +333,224 @@ public class CustomerDao {
                 VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?);
                 """;
 
-        try (Connection connection = dataSource.getConnection();
-             PreparedStatement statement = connection.prepareStatement(query)) {
-
-            // Fill in each ? placeholder with data from the customer object
-            // Think of it like filling out a form, one field at a time
-            // The number (1, 2, 3...) corresponds to which ? we're filling in (left to right)
-            statement.setString(1, customer.getCustomerId());      // 1st ? gets the ID
-            statement.setString(2, customer.getCompanyName());     // 2nd ? gets the company name
-            statement.setString(3, customer.getContactName());     // 3rd ? gets the contact name
-            statement.setString(4, customer.getContactTitle());    // And so on...
-            statement.setString(5, customer.getAddress());
-            statement.setString(6, customer.getCity());
-            statement.setString(7, customer.getRegion());
-            statement.setString(8, customer.getPostalCode());
-            statement.setString(9, customer.getCountry());
-            statement.setString(10, customer.getPhone());
-            statement.setString(11, customer.getFax());            // 11th ? gets the fax
-
-            // executeUpdate() runs the INSERT command
-            // Unlike executeQuery() which retrieves data, executeUpdate() changes data
+        try {
+            // update() runs the INSERT command
+            // Unlike queries which retrieve data, updates change data
             // It's like pressing the "Save" button
-            statement.executeUpdate();
-
-        } catch (SQLException e) {
-            System.out.println("There was an error adding the customer. Please try again.");
-            e.printStackTrace();
+            // If the row went in, the object now matches the database (and the search index learns about it)
+            if (runner.update("CustomerDao.add", query, statement -> bindInsert(statement, customer)) > 0) {
+                saved(customer);
+            }
+        } finally {
+            // Whether it worked or not, forget any cached copy of this customer
+            invalidate(customer.getCustomerId());
         }
 
         // Return the customer object we just added
         return customer;
     }
 
+    // METHOD 3b: ADD MANY CUSTOMERS AT ONCE
+    // Calling add() in a loop costs one trip to the database per customer
+    // addAll() uses ONE connection and ONE transaction, and sends batchSize customers per trip
+    // If anything fails, the whole thing is rolled back (undone) - all or nothing!
+    public List<Customer> addAll(List<Customer> customers) {
+
+        String query = """
+                INSERT INTO Customers (CustomerID, CompanyName, ContactName, ContactTitle, Address, City, Region, PostalCode, Country, Phone, Fax)
+                VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?);
+                """;
+
+        try {
+            // inTransaction() turns off auto-commit, runs our code, and commits at the end
+            // (or rolls back if anything goes wrong, and throws a DataAccessException)
+            runner.inTransaction("CustomerDao.addAll", connection ->
+                    runner.executeBatch(connection, query, customers, CustomerDao::bindInsert, batchSize));
+
+            // We only get here if everything was committed
+            for (Customer customer : customers) {
+                saved(customer);
+            }
+        } finally {
+            for (Customer customer : customers) {
+                invalidate(customer.getCustomerId());
+            }
+        }
+
+        return customers;
+    }
+
     // METHOD 4: UPDATE AN EXISTING CUSTOMER
     // This modifies information for a customer that already exists in the database
     // It's like editing a contact in your phone
+    // Only the columns whose setters were called get written - if just the phone changed,
+    // the UPDATE only says "SET Phone = ?". If nothing changed, we don't talk to the database at all
     public void update(Customer customer) {
 
+        // Each bit says "this column was changed" (see Customer.getDirtyColumns())
+        int dirty = customer.getDirtyColumns();
+        if (dirty == 0) {
+            return;
+        }
+
         // UPDATE means "modify an existing row"
-        // SET specifies which columns to change and to what values
-        // WHERE specifies which customer to update (using their ID)
+        // SET lists only the changed columns, WHERE says which customer to update (using their ID)
         // Without WHERE, it would update EVERY customer - that would be bad!
-        String query = """
+        String query = updateQuery(dirty);
+
+        try {
+            // Fill in one ? per changed column, in the same order as the SET list
+            // CustomerID comes LAST because it's in the WHERE clause at the end
+            int updated = runner.update("CustomerDao.update", query, statement -> {
+                int index = 1;
+                for (int column = 0; column < COLUMNS.length; column++) {
+                    if ((dirty & (1 << column)) != 0) {
+                        statement.setString(index++, columnValue(customer, column));
+                    }
+                }
+                statement.setString(index, customer.getCustomerId());
+            });
+
+            // Saved! The object matches the database again (and the search index sees the new values)
+            if (updated > 0) {
+                saved(customer);
+            }
+        } finally {
+            // Whether it worked or not, forget any cached copy of this customer
+            invalidate(customer.getCustomerId());
+        }
+
+        // This method returns nothing (void) - it just does the update
+    }
+
+    // METHOD 4b: INSERT-OR-UPDATE MANY CUSTOMERS AT ONCE ("upsert")
+    // For each customer: add it if the ID is new, update it if something changed, skip it if nothing did
+    // The answer list lines up with the input list: outcomes.get(3) tells you what happened to customers.get(3)
+    public List<WriteOutcome> upsertAll(List<Customer> customers) {
+        return writeAll("CustomerDao.upsertAll", customers, true);
+    }
+
+    // METHOD 4c: UPDATE MANY CUSTOMERS AT ONCE
+    // Like upsertAll(), but customers that are not in the database are reported as NOT_FOUND instead of added
+    public List<WriteOutcome> updateAll(List<Customer> customers) {
+        return writeAll("CustomerDao.updateAll", customers, false);
+    }
+
+    // The shared work behind upsertAll() and updateAll()
+    // Everything happens in ONE transaction, batchSize customers at a time
+    private List<WriteOutcome> writeAll(String operation, List<Customer> customers, boolean insertMissing) {
+        WriteOutcome[] outcomes = new WriteOutcome[customers.size()];
+
+        try {
+            runner.inTransaction(operation, connection -> {
+                // Work through the list in chunks of batchSize
+                for (int start = 0; start < customers.size(); start += batchSize) {
+                    int end = Math.min(start + batchSize, customers.size());
+                    writeChunk(connection, customers.subList(start, end), insertMissing, outcomes, start);
+                }
+                return outcomes;
+            });
+        } finally {
+            // Whether it worked or not, forget any cached copies
+            for (Customer customer : customers) {
+                invalidate(customer.getCustomerId());
+            }
+        }
+
+        // Everything was committed: customers that were saved (or already matched) now match the database
+        for (int i = 0; i < customers.size(); i++) {
+            if (outcomes[i] != WriteOutcome.NOT_FOUND) {
+                saved(customers.get(i));
+            }
+        }
+
+        return Arrays.asList(outcomes);
+    }
+
+    // One chunk costs one trip to read (and lock) the current rows, plus at most one insert batch and one update batch
+    private void writeChunk(Connection connection, List<Customer> chunk, boolean insertMissing,
+                            WriteOutcome[] outcomes, int offset) throws SQLException {
+
+        // What the database has right now for these IDs
+        Map<String, Customer> current = lockExisting(connection, chunk);
+
+        List<Customer> inserts = new ArrayList<>();
+        List<Customer> updates = new ArrayList<>();
+
+        // Sort each customer into "insert", "update" or "nothing to do"
+        for (int i = 0; i < chunk.size(); i++) {
+            Customer customer = chunk.get(i);
+            Customer existing = current.get(customer.getCustomerId());
+
+            if (existing == null) {
+                if (insertMissing) {
+                    inserts.add(customer);
+                    current.put(customer.getCustomerId(), customer);
+                    outcomes[offset + i] = WriteOutcome.INSERTED;
+                } else {
+                    outcomes[offset + i] = WriteOutcome.NOT_FOUND;
+                }
+            } else if (sameValues(existing, customer)) {
+                outcomes[offset + i] = WriteOutcome.UNCHANGED;
+            } else {
+                updates.add(customer);
+                current.put(customer.getCustomerId(), customer);
+                outcomes[offset + i] = WriteOutcome.UPDATED;
+            }
+        }
+
+        String insertQuery = """
+                INSERT INTO Customers (CustomerID, CompanyName, ContactName, ContactTitle, Address, City, Region, PostalCode, Country, Phone, Fax)
+                VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?);
+                """;
+        runner.executeBatch(connection, insertQuery, inserts, CustomerDao::bindInsert, batchSize);
+
+        String updateQuery = """
                 UPDATE Customers
                 SET CompanyName = ?, ContactName = ?, ContactTitle = ?, Address = ?, City = ?, Region = ?, PostalCode = ?, Country = ?, Phone = ?, Fax = ?
                 WHERE CustomerID = ?;
                 """;
+        runner.executeBatch(connection, updateQuery, updates, CustomerDao::bindUpdate, batchSize);
+    }
+
+    // Read the current rows for a chunk of IDs
+    // FOR UPDATE locks them until we commit, so nobody else can change them in between
+    private Map<String, Customer> lockExisting(Connection connection, List<Customer> chunk) throws SQLException {
+        Map<String, Customer> existing = new HashMap<>();
 
-        try (Connection connection = dataSource.getConnection();
-             PreparedStatement statement = connection.prepareStatement(query)) {
-
-            // Fill in the placeholders with the customer's updated information
-            // Notice: CustomerID comes LAST (position 11) because it's in the WHERE clause at the end
-            statement.setString(1, customer.getCompanyName());     // Update company name
-            statement.setString(2, customer.getContactName());     // Update contact name
-            statement.setString(3, customer.getContactTitle());    // Update contact title
-            statement.setString(4, customer.getAddress());         // Update address
-            statement.setString(5, customer.getCity());            // Update city
-            statement.setString(6, customer.getRegion());          // Update region
-            statement.setString(7, customer.getPostalCode());      // Update postal code
-            statement.setString(8, customer.getCountry());         // Update country
-            statement.setString(9, customer.getPhone());           // Update phone
-            statement.setString(10, customer.getFax());            // Update fax
-            statement.setString(11, customer.getCustomerId());     // Which customer to update (WHERE clause)
-
-            // Execute the update - save the changes to the database
-            statement.executeUpdate();
-
-        } catch (SQLException e) {
-            System.out.println("There was an error updating the customer. Please try again.");
-            e.printStackTrace();
+        // One ? per customer: WHERE CustomerID IN (?, ?, ?)
+        String query = """
+                SELECT CustomerID, CompanyName, ContactName, ContactTitle, Address, City, Region, PostalCode, Country, Phone, Fax
+                FROM Customers
+                WHERE CustomerID IN (%s)
+                FOR UPDATE;
+                """.formatted(JdbcRunner.placeholders(chunk.size()));
+
+        List<Customer> rows = runner.queryList(connection, query, statement -> {
+            for (int i = 0; i < chunk.size(); i++) {
+                statement.setString(i + 1, chunk.get(i).getCustomerId());
+            }
+        }, RowMappers.CUSTOMER);
+
+        for (Customer customer : rows) {
+            existing.put(customer.getCustomerId(), customer);
         }
 
-        // This method returns nothing (void) - it just does the update
+        return existing;
+    }
+
+    // true when every column (other than the ID) has the same value
+    private static boolean sameValues(Customer a, Customer b) {
+        return Objects.equals(a.getCompanyName(), b.getCompanyName())
+                && Objects.equals(a.getContactName(), b.getContactName())
+                && Objects.equals(a.getContactTitle(), b.getContactTitle())
+                && Objects.equals(a.getAddress(), b.getAddress())
+                && Objects.equals(a.getCity(), b.getCity())
+                && Objects.equals(a.getRegion(), b.getRegion())
+                && Objects.equals(a.getPostalCode(), b.getPostalCode())
+                && Objects.equals(a.getCountry(), b.getCountry())
+                && Objects.equals(a.getPhone(), b.getPhone())
+                && Objects.equals(a.getFax(), b.getFax());
     }
 
     // METHOD 5: DELETE A CUSTOMER
@@ -254,21 +566,114 @@ public class CustomerDao {
                 WHERE CustomerID = ?;
                 """;
 
-        try (Connection connection = dataSource.getConnection();
-             PreparedStatement statement = connection.prepareStatement(query)) {
+        try {
+            // Fill in which customer to delete, then run it - the customer is now gone from the database
+            int deleted = runner.update("CustomerDao.delete", query, statement -> statement.setString(1, customerId));
 
-            // Fill in which customer to delete
-            statement.setString(1, customerId);
+            // Only drop it from the search index if it's really gone
+            if (deleted > 0 && searchIndex != null) {
+                searchIndex.remove(customerId);
+            }
+        } finally {
+            // Whether it worked or not, forget any cached copy of this customer
+            invalidate(customerId);
+        }
 
-            // Execute the deletion - the customer is now gone from the database
-            statement.executeUpdate();
+        // This method returns nothing (void) - it just performs the deletion
+    }
+
+    // Fill in the 11 placeholders of the INSERT statement
+    // Think of it like filling out a form, one field at a time
+    // The number (1, 2, 3...) corresponds to which ? we're filling in (left to right)
+    private static void bindInsert(PreparedStatement statement, Customer customer) throws SQLException {
+        statement.setString(1, customer.getCustomerId());      // 1st ? gets the ID
+        statement.setString(2, customer.getCompanyName());     // 2nd ? gets the company name
+        statement.setString(3, customer.getContactName());     // 3rd ? gets the contact name
+        statement.setString(4, customer.getContactTitle());    // And so on...
+        statement.setString(5, customer.getAddress());
+        statement.setString(6, customer.getCity());
+        statement.setString(7, customer.getRegion());
+        statement.setString(8, customer.getPostalCode());
+        statement.setString(9, customer.getCountry());
+        statement.setString(10, customer.getPhone());
+        statement.setString(11, customer.getFax());            // 11th ? gets the fax
+    }
+
+    // Fill in the 11 placeholders of the UPDATE statement - the ID goes last, in the WHERE clause
+    private static void bindUpdate(PreparedStatement statement, Customer customer) throws SQLException {
+        statement.setString(1, customer.getCompanyName());     // Update company name
+        statement.setString(2, customer.getContactName());     // Update contact name
+        statement.setString(3, customer.getContactTitle());    // Update contact title
+        statement.setString(4, customer.getAddress());         // Update address
+        statement.setString(5, customer.getCity());            // Update city
+        statement.setString(6, customer.getRegion());          // Update region
+        statement.setString(7, customer.getPostalCode());      // Update postal code
+        statement.setString(8, customer.getCountry());         // Update country
+        statement.setString(9, customer.getPhone());           // Update phone
+        statement.setString(10, customer.getFax());            // Update fax
+        statement.setString(11, customer.getCustomerId());     // Which customer to update (WHERE clause)
+    }
+
+    // The value of one column from the COLUMNS list
+    private static String columnValue(Customer customer, int column) {
+        return switch (column) {
+            case 0 -> customer.getCompanyName();
+            case 1 -> customer.getContactName();
+            case 2 -> customer.getContactTitle();
+            case 3 -> customer.getAddress();
+            case 4 -> customer.getCity();
+            case 5 -> customer.getRegion();
+            case 6 -> customer.getPostalCode();
+            case 7 -> customer.getCountry();
+            case 8 -> customer.getPhone();
+            case 9 -> customer.getFax();
+            default -> throw new IllegalArgumentException("no customer column " + column);
+        };
+    }
+
+    // The UPDATE statement for one combination of changed columns (built the first time, reused after that)
+    private static String updateQuery(int dirty) {
+        String query = UPDATE_QUERIES.get(dirty);
+        if (query == null) {
+            StringJoiner set = new StringJoiner(", ", "UPDATE Customers\nSET ", "\nWHERE CustomerID = ?;");
+            for (int column = 0; column < COLUMNS.length; column++) {
+                if ((dirty & (1 << column)) != 0) {
+                    set.add(COLUMNS[column] + " = ?");
+                }
+            }
+            query = set.toString();
+            UPDATE_QUERIES.set(dirty, query);
+        }
+        return query;
+    }
 
-        } catch (SQLException e) {
-            System.out.println("There was an error deleting the customer. Please try again.");
-            e.printStackTrace();
+    // Called once a customer has been written: it now matches the database,
+    // so clear its "changed" marks and hand the new values to the search index (if there is one)
+    private void saved(Customer customer) {
+        customer.markClean();
+        if (searchIndex != null) {
+            searchIndex.put(customer);
         }
+    }
 
-        // This method returns nothing (void) - it just performs the deletion
+    // Remove one customer from the cache (if the cache is turned on)
+    private void invalidate(String customerId) {
+        if (cache != null) {
+            cache.invalidate(customerId);
+        }
+    }
+
+    // Make a separate Customer with the same values (null stays null)
+    // The cache stores one copy and each caller gets another, so nobody shares an object
+    private static Customer copyOf(Customer customer) {
+        if (customer == null) {
+            return null;
+        }
+        Customer copy = new Customer(customer.getCustomerId(), customer.getCompanyName(), customer.getContactName(),
+                customer.getContactTitle(), customer.getAddress(), customer.getCity(), customer.getRegion(),
+                customer.getPostalCode(), customer.getCountry(), customer.getPhone(), customer.getFax());
+        copy.markClean();
+        return copy;
     }
 }
 
@@ -0,0 +1,115 @@
+package com.northwind.data;
+
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.SQLTransientException;
+import java.util.NoSuchElementException;
+
+// Thrown by JdbcRunner (and so by every DAO) when a database call fails, instead of returning null or an empty list.
+// The subclass says what the caller can do about it:
+//   TransientDataAccessException  the same call may work if tried again (lost connection, deadlock, pool exhausted)
+//   QueryTimeoutException         the statement or the operation's deadline ran out
+//   CircuitOpenException          the database is failing and the call was refused without trying it
+//   DataAccessException itself    retrying will not help (bad SQL, constraint violation...)
+public class DataAccessException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    // MySQL error codes worth retrying: lock wait timeout, deadlock
+    private static final int ER_LOCK_WAIT_TIMEOUT = 1205;
+    private static final int ER_LOCK_DEADLOCK = 1213;
+    // MySQL error codes for a statement stopped by its time limit: max_execution_time, KILL QUERY / cancel
+    private static final int ER_QUERY_TIMEOUT = 3024;
+    private static final int ER_QUERY_INTERRUPTED = 1317;
+
+    private final String operation;
+
+    public DataAccessException(String operation, String message, Throwable cause) {
+        super(operation + " failed: " + message, cause);
+        this.operation = operation;
+    }
+
+    // the DAO method that failed ("ProductDao.find")
+    public String getOperation() {
+        return operation;
+    }
+
+    // the SQLState of the driver's SQLException, or null
+    public String getSqlState() {
+        return getCause() instanceof SQLException e ? driverException(e).getSQLState() : null;
+    }
+
+    public int getErrorCode() {
+        return getCause() instanceof SQLException e ? driverException(e).getErrorCode() : 0;
+    }
+
+    // the exception type for a failed JDBC call
+    public static DataAccessException translate(String operation, SQLException e) {
+        // the pool wraps driver errors in its own SQLException ("Borrow prepareStatement from pool failed")
+        SQLException driver = driverException(e);
+        String message = driver.getMessage();
+        if (isTimeout(driver)) {
+            return new QueryTimeoutException(operation, message, e);
+        }
+        if (isTransient(e) || isTransient(driver)) {
+            return new TransientDataAccessException(operation, message, e);
+        }
+        return new DataAccessException(operation, message, e);
+    }
+
+    // whether a failed JDBC call says the database is down or slow, which is what the circuit breaker counts:
+    // it could not be reached (08xxx, a recoverable or connection exception, a pooled connection that failed
+    // validation) or a statement ran out of server time. Busy is not down: an exhausted pool, a deadlock or
+    // serialization failure (40xxx) and a lock wait timeout are all answers from a working database.
+    static boolean isOutage(SQLException e) {
+        if (ReadWriteRoutingDataSource.isPoolExhausted(e)) {
+            return false;
+        }
+        if (e.getCause() instanceof NoSuchElementException) {
+            return true;
+        }
+        SQLException driver = driverException(e);
+        return isTimeout(driver) || isConnectionError(e) || isConnectionError(driver);
+    }
+
+    private static boolean isConnectionError(SQLException e) {
+        if (e instanceof SQLRecoverableException || e instanceof SQLTransientConnectionException
+                || e instanceof SQLNonTransientConnectionException) {
+            return true;
+        }
+        String state = e.getSQLState();
+        return state != null && state.startsWith("08");
+    }
+
+    private static SQLException driverException(SQLException e) {
+        SQLException driver = e;
+        while (driver.getSQLState() == null && driver.getCause() instanceof SQLException cause) {
+            driver = cause;
+        }
+        return driver;
+    }
+
+    private static boolean isTimeout(SQLException e) {
+        return e instanceof SQLTimeoutException
+                || e.getErrorCode() == ER_QUERY_TIMEOUT
+                || e.getErrorCode() == ER_QUERY_INTERRUPTED;
+    }
+
+    private static boolean isTransient(SQLException e) {
+        if (e instanceof SQLTransientException || e instanceof SQLRecoverableException) {
+            return true;
+        }
+        // dbcp2 reports "pool exhausted" (maxWaitMillis ran out) as a plain SQLException
+        if (e.getCause() instanceof NoSuchElementException) {
+            return true;
+        }
+        String state = e.getSQLState();
+        // 08xxx: connection exceptions, 40xxx: transaction rolled back (deadlock, serialization failure)
+        if (state != null && (state.startsWith("08") || state.startsWith("40"))) {
+            return true;
+        }
+        return e.getErrorCode() == ER_LOCK_WAIT_TIMEOUT || e.getErrorCode() == ER_LOCK_DEADLOCK;
+    }
+}
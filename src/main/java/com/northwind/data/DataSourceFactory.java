@@ -0,0 +1,156 @@
+package com.northwind.data;
+
+import org.apache.commons.dbcp2.BasicDataSource;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+// Builds the pooled BasicDataSource from northwind.properties instead of hard-coding it in Program.
+// Settings are layered, later ones winning:
+//   1. northwind.properties on the classpath
+//   2. a file named by -Dnorthwind.config or the NORTHWIND_CONFIG environment variable
+//   3. environment variables (db.url -> NORTHWIND_DB_URL, pool.maxTotal -> NORTHWIND_POOL_MAXTOTAL)
+// createRouting() adds one pool per url in db.replicaUrls (same credentials and pool settings) behind
+// a ReadWriteRoutingDataSource; with no replicas configured it returns the plain primary pool.
+public final class DataSourceFactory {
+    private static final String RESOURCE = "northwind.properties";
+    private static final String DRIVER_PREFIX = "driver.";
+
+    private DataSourceFactory() {
+    }
+
+    public static BasicDataSource create() {
+        return create(loadSettings());
+    }
+
+    // username and password from the command line win over the configured ones
+    public static BasicDataSource create(String username, String password) {
+        Properties settings = loadSettings();
+        settings.setProperty("db.username", username);
+        settings.setProperty("db.password", password);
+        return create(settings);
+    }
+
+    public static BasicDataSource create(Properties settings) {
+        BasicDataSource dataSource = new BasicDataSource();
+        dataSource.setUrl(required(settings, "db.url"));
+        dataSource.setUsername(settings.getProperty("db.username"));
+        dataSource.setPassword(settings.getProperty("db.password"));
+
+        dataSource.setInitialSize(intSetting(settings, "pool.initialSize", 4));
+        dataSource.setMinIdle(intSetting(settings, "pool.minIdle", 4));
+        dataSource.setMaxIdle(intSetting(settings, "pool.maxIdle", 16));
+        dataSource.setMaxTotal(intSetting(settings, "pool.maxTotal", 32));
+        dataSource.setMaxWait(Duration.ofMillis(intSetting(settings, "pool.maxWaitMillis", 5000)));
+
+        dataSource.setTestOnBorrow(booleanSetting(settings, "pool.testOnBorrow", true));
+        dataSource.setTestWhileIdle(booleanSetting(settings, "pool.testWhileIdle", true));
+        dataSource.setValidationQueryTimeout(Duration.ofSeconds(intSetting(settings, "pool.validationTimeoutSeconds", 2)));
+        dataSource.setDurationBetweenEvictionRuns(Duration.ofMillis(intSetting(settings, "pool.evictionRunMillis", 30000)));
+        dataSource.setMinEvictableIdle(Duration.ofMillis(intSetting(settings, "pool.minEvictableIdleMillis", 300000)));
+
+        dataSource.setPoolPreparedStatements(booleanSetting(settings, "pool.poolPreparedStatements", true));
+        dataSource.setMaxOpenPreparedStatements(intSetting(settings, "pool.maxOpenPreparedStatements", 256));
+
+        for (String name : settings.stringPropertyNames()) {
+            if (name.startsWith(DRIVER_PREFIX)) {
+                dataSource.addConnectionProperty(name.substring(DRIVER_PREFIX.length()), settings.getProperty(name));
+            }
+        }
+
+        return dataSource;
+    }
+
+    public static DataSource createRouting() {
+        return createRouting(loadSettings());
+    }
+
+    public static DataSource createRouting(String username, String password) {
+        Properties settings = loadSettings();
+        settings.setProperty("db.username", username);
+        settings.setProperty("db.password", password);
+        return createRouting(settings);
+    }
+
+    public static DataSource createRouting(Properties settings) {
+        BasicDataSource primary = create(settings);
+
+        List<DataSource> replicas = new ArrayList<>();
+        for (String url : settings.getProperty("db.replicaUrls", "").split(",")) {
+            if (!url.isBlank()) {
+                Properties replicaSettings = new Properties();
+                replicaSettings.putAll(settings);
+                replicaSettings.setProperty("db.url", url.trim());
+                replicas.add(create(replicaSettings));
+            }
+        }
+        if (replicas.isEmpty()) {
+            return primary;
+        }
+
+        return new ReadWriteRoutingDataSource(primary, replicas,
+                Duration.ofMillis(intSetting(settings, "routing.readYourWritesMillis", 2000)),
+                Duration.ofMillis(intSetting(settings, "routing.healthCheckMillis", 5000)));
+    }
+
+    public static Properties loadSettings() {
+        Properties settings = new Properties();
+
+        try (InputStream defaults = DataSourceFactory.class.getClassLoader().getResourceAsStream(RESOURCE)) {
+            if (defaults != null) {
+                settings.load(defaults);
+            }
+        } catch (IOException e) {
+            System.out.println("There was an error reading " + RESOURCE + ". " + e.getMessage());
+        }
+
+        String configFile = System.getProperty("northwind.config", System.getenv("NORTHWIND_CONFIG"));
+        if (configFile != null && !configFile.isBlank()) {
+            try (Reader reader = Files.newBufferedReader(Path.of(configFile))) {
+                settings.load(reader);
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not read config file " + configFile, e);
+            }
+        }
+
+        for (String name : settings.stringPropertyNames()) {
+            String value = System.getenv(environmentName(name));
+            if (value != null) {
+                settings.setProperty(name, value);
+            }
+        }
+
+        return settings;
+    }
+
+    // db.url -> NORTHWIND_DB_URL
+    static String environmentName(String name) {
+        return "NORTHWIND_" + name.replace('.', '_').toUpperCase();
+    }
+
+    private static String required(Properties settings, String name) {
+        String value = settings.getProperty(name);
+        if (value == null || value.isBlank()) {
+            throw new IllegalStateException("Missing setting " + name);
+        }
+        return value.trim();
+    }
+
+    private static int intSetting(Properties settings, String name, int defaultValue) {
+        String value = settings.getProperty(name);
+        return value == null || value.isBlank() ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    private static boolean booleanSetting(Properties settings, String name, boolean defaultValue) {
+        String value = settings.getProperty(name);
+        return value == null || value.isBlank() ? defaultValue : Boolean.parseBoolean(value.trim());
+    }
+}
@@ -0,0 +1,538 @@
+package com.northwind.data;
+
+import com.northwind.metrics.DaoMetrics;
+import com.northwind.metrics.LatencyHistogram;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+// The connection/statement/try/catch code shared by every DAO.
+// Every call names its operation ("ProductDao.find") so errors can say where they came from
+// and so its latency and errors are recorded in DaoMetrics (exposed over JMX).
+// Statement setup (query timeout, fetch size) lives here so it is the same for every query.
+// Over a ReadWriteRoutingDataSource the read-only calls (queryList, queryOne, stream, withReadConnection)
+// borrow read connections; everything else goes to the primary.
+//
+// Failures are thrown as DataAccessException (see there for the subclasses); no call returns null or an
+// empty list because of an error. Each operation gets:
+//   - a query timeout per statement (setQueryTimeoutSeconds, or setTimeouts per operation)
+//   - a deadline for the whole operation, retries included; no new attempt or statement starts after it,
+//     and each statement's timeout is cut down to the time left
+//   - for the read-only calls, retries of transient failures with jittered backoff (setRetryPolicy);
+//     writes are never retried here, since they may not be safe to run twice
+//   - a circuit breaker shared by every runner on the data source, which refuses calls while the database is down
+public class JdbcRunner {
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    private final DataSource dataSource;
+    private final DaoMetrics metrics;
+    private final LatencyHistogram borrowWait;
+    // records a routed read's wait into the histogram of the pool that served it
+    private final ReadWriteRoutingDataSource.BorrowListener readBorrowListener;
+    private volatile Timeouts defaultTimeouts = new Timeouts(30, TimeUnit.SECONDS.toNanos(30));
+    private final Map<String, Timeouts> operationTimeouts = new ConcurrentHashMap<>();
+    private volatile RetryPolicy retryPolicy = RetryPolicy.defaults();
+    private volatile CircuitBreaker circuitBreaker;
+    private int fetchSize = 0;
+    private int streamFetchSize = Integer.MIN_VALUE;
+    private volatile AsyncDaoExecutor asyncExecutor;
+
+    // the operation running on this thread, so statements prepared inside a callback get its timeout
+    private final ThreadLocal<Call> currentCall = new ThreadLocal<>();
+
+    public JdbcRunner(DataSource dataSource) {
+        this(dataSource, DaoMetrics.getDefault());
+    }
+
+    public JdbcRunner(DataSource dataSource, DaoMetrics metrics) {
+        this.dataSource = dataSource;
+        this.metrics = metrics;
+        if (dataSource instanceof ReadWriteRoutingDataSource routing) {
+            // one histogram (and PoolStats MBean) per pool, so a slow replica shows up as itself
+            this.borrowWait = metrics.borrowWait(routing.getPrimary());
+            Map<DataSource, LatencyHistogram> waits = new IdentityHashMap<>();
+            waits.put(routing.getPrimary(), borrowWait);
+            for (DataSource replica : routing.getReplicas()) {
+                waits.put(replica, metrics.borrowWait(replica));
+            }
+            this.readBorrowListener = (pool, waitNanos) -> waits.get(pool).record(waitNanos);
+        } else {
+            this.borrowWait = metrics.borrowWait(dataSource);
+            this.readBorrowListener = ReadWriteRoutingDataSource.BorrowListener.NONE;
+        }
+        this.circuitBreaker = CircuitBreaker.forDataSource(dataSource);
+    }
+
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+    public DaoMetrics getMetrics() {
+        return metrics;
+    }
+
+    // default per-statement timeout; 0 means no timeout
+    public void setQueryTimeoutSeconds(int queryTimeoutSeconds) {
+        this.defaultTimeouts = new Timeouts(queryTimeoutSeconds, defaultTimeouts.deadlineNanos);
+    }
+
+    // default time budget for a whole operation, retries and backoff included; Duration.ZERO means none
+    public void setDeadline(Duration deadline) {
+        this.defaultTimeouts = new Timeouts(defaultTimeouts.queryTimeoutSeconds,
+                deadline.isZero() ? NO_DEADLINE : deadline.toNanos());
+    }
+
+    // overrides the query timeout and deadline for one operation ("ProductDao.getAll");
+    // Duration.ZERO means no limit (Ex. bulk jobs that run for minutes)
+    public void setTimeouts(String operation, Duration queryTimeout, Duration deadline) {
+        operationTimeouts.put(operation, new Timeouts(
+                (int) Math.min(Integer.MAX_VALUE, (queryTimeout.toMillis() + 999) / 1000),
+                deadline.isZero() ? NO_DEADLINE : deadline.toNanos()));
+    }
+
+    // how transient failures of read operations are retried; RetryPolicy.NONE turns retries off
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    // replaces the breaker shared with other runners on the data source (Ex. one with other thresholds)
+    public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    // fetch size for ordinary queries; 0 leaves the driver default
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    // fetch size for stream(); Integer.MIN_VALUE streams row by row,
+    // a positive value fetches that many rows per trip when the url has useCursorFetch=true
+    public void setStreamFetchSize(int streamFetchSize) {
+        this.streamFetchSize = streamFetchSize;
+    }
+
+    // runs the DAOs' *Async methods; shared per data source unless one is set, and re-resolved once closed
+    public AsyncDaoExecutor getAsyncExecutor() {
+        AsyncDaoExecutor executor = asyncExecutor;
+        // a closed one (Ex. the shared executor after close()) is replaced rather than left to reject every call
+        if (executor == null || executor.isClosed()) {
+            executor = AsyncDaoExecutor.forDataSource(dataSource);
+            asyncExecutor = executor;
+        }
+        return executor;
+    }
+
+    public void setAsyncExecutor(AsyncDaoExecutor asyncExecutor) {
+        this.asyncExecutor = asyncExecutor;
+    }
+
+    // ---------- one call, one pooled connection ----------
+
+    public <T> List<T> queryList(String operation, String query, Binder binder, RowMapper<T> mapper) {
+        return execute(operation, true, () -> {
+            try (Connection connection = connectForRead()) {
+                return queryList(connection, query, binder, mapper);
+            }
+        });
+    }
+
+    // the first row, or null when there is none
+    public <T> T queryOne(String operation, String query, Binder binder, RowMapper<T> mapper) {
+        return execute(operation, true, () -> {
+            try (Connection connection = connectForRead();
+                 PreparedStatement statement = prepare(connection, query)) {
+
+                binder.bind(statement);
+
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    if (resultSet.next()) {
+                        return mapper.bind(resultSet).map(resultSet);
+                    }
+                }
+            }
+            return null;
+        });
+    }
+
+    // maps rows lazily as the ResultSet advances; closing the stream releases the connection
+    // (the recorded latency, timeout and retries cover opening the stream, not consuming it;
+    // a failure while reading rows is thrown from the stream as a DataAccessException)
+    public <T> Stream<T> stream(String operation, String query, Binder binder, RowMapper<T> mapper) {
+        return execute(operation, true,
+                () -> ResultSetStream.open(operation, connectForRead(), query, this, streamFetchSize, binder, mapper));
+    }
+
+    // returns the update count
+    public int update(String operation, String query, Binder binder) {
+        return execute(operation, false, () -> {
+            try (Connection connection = connect();
+                 PreparedStatement statement = prepare(connection, query)) {
+
+                binder.bind(statement);
+                return statement.executeUpdate();
+            }
+        });
+    }
+
+    // runs an INSERT and returns the generated key, or 0 when there is none
+    public int insert(String operation, String query, Binder binder) {
+        return execute(operation, false, () -> {
+            try (Connection connection = connect();
+                 PreparedStatement statement = prepare(connection, query, Statement.RETURN_GENERATED_KEYS)) {
+
+                binder.bind(statement);
+                statement.executeUpdate();
+
+                try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
+                    if (generatedKeys.next()) {
+                        return generatedKeys.getInt(1);
+                    }
+                }
+            }
+            return 0;
+        });
+    }
+
+    // several statements on one connection
+    public <R> R withConnection(String operation, ConnectionCallback<R> work) {
+        return execute(operation, false, () -> {
+            try (Connection connection = connect()) {
+                return work.run(connection);
+            }
+        });
+    }
+
+    // several read-only statements on one read connection; a transient failure runs work again from the start,
+    // so it must be safe to repeat
+    public <R> R withReadConnection(String operation, ConnectionCallback<R> work) {
+        return execute(operation, true, () -> {
+            try (Connection connection = connectForRead()) {
+                return work.run(connection);
+            }
+        });
+    }
+
+    // records a call the DAO answered from memory (a cache or reference table hit) under its operation,
+    // so the operation's stats count every call and not only the ones that went to the database
+    public void recordHit(String operation, long startNanos) {
+        metrics.record(operation, System.nanoTime() - startNanos, false);
+    }
+
+    // runs work (any number of calls, through any runner on this data source) so that each read sees at least
+    // the state the previous one saw: over a ReadWriteRoutingDataSource they all stay on one pool, see there;
+    // on a single database every read already does
+    public <R> R readConsistently(Supplier<R> work) {
+        if (dataSource instanceof ReadWriteRoutingDataSource routing) {
+            return routing.readConsistently(work);
+        }
+        return work.get();
+    }
+
+    // several statements on one connection and one transaction; rolled back when anything fails
+    public <R> R inTransaction(String operation, ConnectionCallback<R> work) {
+        return execute(operation, false, () -> {
+            try (Connection connection = connect()) {
+                boolean autoCommit = connection.getAutoCommit();
+                connection.setAutoCommit(false);
+
+                try {
+                    R result = work.run(connection);
+                    connection.commit();
+                    return result;
+                } catch (SQLException | RuntimeException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(autoCommit);
+                }
+            }
+        });
+    }
+
+    // ---------- building blocks for use inside withConnection / inTransaction ----------
+
+    public PreparedStatement prepare(Connection connection, String query) throws SQLException {
+        return configure(connection.prepareStatement(query), fetchSize);
+    }
+
+    public PreparedStatement prepare(Connection connection, String query, int autoGeneratedKeys) throws SQLException {
+        return configure(connection.prepareStatement(query, autoGeneratedKeys), fetchSize);
+    }
+
+    // forward-only, read-only statement with the stream fetch size, for reading a large result row by row
+    public PreparedStatement prepareStreaming(Connection connection, String query) throws SQLException {
+        return prepareStreaming(connection, query, streamFetchSize);
+    }
+
+    PreparedStatement prepareStreaming(Connection connection, String query, int streamFetchSize) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        return configure(statement, streamFetchSize);
+    }
+
+    public <T> List<T> queryList(Connection connection, String query, Binder binder, RowMapper<T> mapper) throws SQLException {
+        List<T> rows = new ArrayList<>();
+
+        try (PreparedStatement statement = prepare(connection, query)) {
+            binder.bind(statement);
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                RowMapper.Bound<T> row = mapper.bind(resultSet);
+                while (resultSet.next()) {
+                    rows.add(row.map(resultSet));
+                }
+            }
+        }
+
+        return rows;
+    }
+
+    // sends items batchSize at a time and returns the update count of every item
+    public <T> int[] executeBatch(Connection connection, String query, List<T> items, BatchBinder<T> binder, int batchSize) throws SQLException {
+        int[] counts = new int[items.size()];
+        if (items.isEmpty()) {
+            return counts;
+        }
+
+        try (PreparedStatement statement = prepare(connection, query)) {
+            int batchStart = 0;
+
+            for (int i = 0; i < items.size(); i++) {
+                binder.bind(statement, items.get(i));
+                statement.addBatch();
+
+                if (i - batchStart + 1 == batchSize || i == items.size() - 1) {
+                    int[] batchCounts = statement.executeBatch();
+                    System.arraycopy(batchCounts, 0, counts, batchStart, batchCounts.length);
+                    batchStart = i + 1;
+                }
+            }
+        }
+
+        return counts;
+    }
+
+    // batched INSERT that hands every item its generated key, in order
+    public <T> void insertBatch(Connection connection, String query, List<T> items, BatchBinder<T> binder, int batchSize,
+                                ObjIntConsumer<T> keySetter) throws SQLException {
+        if (items.isEmpty()) {
+            return;
+        }
+
+        try (PreparedStatement statement = prepare(connection, query, Statement.RETURN_GENERATED_KEYS)) {
+            int batchStart = 0;
+
+            for (int i = 0; i < items.size(); i++) {
+                binder.bind(statement, items.get(i));
+                statement.addBatch();
+
+                if (i - batchStart + 1 == batchSize || i == items.size() - 1) {
+                    statement.executeBatch();
+
+                    try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
+                        int next = batchStart;
+                        while (next <= i && generatedKeys.next()) {
+                            keySetter.accept(items.get(next++), generatedKeys.getInt(1));
+                        }
+                    }
+                    batchStart = i + 1;
+                }
+            }
+        }
+    }
+
+    // "?, ?, ?" for an IN list of count values
+    public static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    // borrows a pooled connection, recording how long the caller waited for it
+    private Connection connect() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return dataSource.getConnection();
+        } finally {
+            borrowWait.record(System.nanoTime() - start);
+        }
+    }
+
+    private Connection connectForRead() throws SQLException {
+        if (!(dataSource instanceof ReadWriteRoutingDataSource routing)) {
+            return connect();
+        }
+        return routing.getReadConnection(readBorrowListener);
+    }
+
+    private PreparedStatement configure(PreparedStatement statement, int fetchSize) throws SQLException {
+        int timeout = statementTimeoutSeconds();
+        if (timeout > 0) {
+            statement.setQueryTimeout(timeout);
+        }
+        if (fetchSize != 0) {
+            statement.setFetchSize(fetchSize);
+        }
+        return statement;
+    }
+
+    // the operation's query timeout, cut down to what is left of its deadline;
+    // throws once the deadline has passed, so a long callback stops at its next statement
+    private int statementTimeoutSeconds() throws SQLException {
+        Call call = currentCall.get();
+        if (call == null) {
+            return defaultTimeouts.queryTimeoutSeconds;
+        }
+        int timeout = call.timeouts.queryTimeoutSeconds;
+        if (call.deadline != NO_DEADLINE) {
+            long remaining = call.deadline - System.nanoTime();
+            if (remaining <= 0) {
+                throw new DeadlinePassedException("deadline of " + TimeUnit.NANOSECONDS.toMillis(call.timeouts.deadlineNanos)
+                        + " ms passed");
+            }
+            int remainingSeconds = (int) Math.max(1, (remaining + 999_999_999) / 1_000_000_000);
+            timeout = timeout > 0 ? Math.min(timeout, remainingSeconds) : remainingSeconds;
+        }
+        return timeout;
+    }
+
+    private Timeouts timeoutsFor(String operation) {
+        Timeouts timeouts = operationTimeouts.get(operation);
+        return timeouts != null ? timeouts : defaultTimeouts;
+    }
+
+    // runs attempt under the operation's deadline and the circuit breaker, retrying transient failures when
+    // retryable, and records one latency sample for the whole call (failed if it ended in any exception).
+    // The breaker hears a failure only for an outage (DataAccessException.isOutage), a success when the database
+    // answered, and nothing for a busy pool, a deadlock, a lock wait or the deadline running out.
+    private <R> R execute(String operation, boolean retryable, Attempt<R> attempt) {
+        Timeouts timeouts = timeoutsFor(operation);
+        RetryPolicy retry = retryable ? retryPolicy : RetryPolicy.NONE;
+        CircuitBreaker breaker = circuitBreaker;
+
+        long start = System.nanoTime();
+        long deadline = timeouts.deadlineNanos == NO_DEADLINE ? NO_DEADLINE : start + timeouts.deadlineNanos;
+        Call previous = currentCall.get();
+        currentCall.set(new Call(timeouts, deadline));
+        boolean failed = true;
+        try {
+            for (int attempts = 1; ; attempts++) {
+                breaker.acquire(operation);
+                DataAccessException error;
+                boolean outage;
+                try {
+                    R result = attempt.run();
+                    breaker.onSuccess();
+                    failed = false;
+                    return result;
+                } catch (SQLException e) {
+                    error = DataAccessException.translate(operation, e);
+                    // the caller's own deadline running out says nothing about the database
+                    outage = !(e instanceof DeadlinePassedException) && DataAccessException.isOutage(e);
+                } catch (RuntimeException e) {
+                    // not the database's fault (a mapper or callback threw): the database answered
+                    breaker.onSuccess();
+                    throw e;
+                }
+
+                long backoff = retry.backoffNanos(attempts);
+                boolean last = !(error instanceof TransientDataAccessException) || attempts >= retry.getMaxAttempts()
+                        || (deadline != NO_DEADLINE && System.nanoTime() + backoff >= deadline);
+                // an outage counts once per call, not once per attempt, unless this attempt was a half-open trial
+                if (outage && (last || breaker.getState() == CircuitBreaker.State.HALF_OPEN)) {
+                    breaker.onFailure();
+                } else if (outage || error instanceof TransientDataAccessException || error instanceof QueryTimeoutException) {
+                    breaker.onNeutral();
+                } else {
+                    breaker.onSuccess();
+                }
+                if (last) {
+                    throw error;
+                }
+                try {
+                    TimeUnit.NANOSECONDS.sleep(backoff);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw error;
+                }
+            }
+        } finally {
+            if (previous == null) {
+                currentCall.remove();
+            } else {
+                currentCall.set(previous);
+            }
+            metrics.record(operation, System.nanoTime() - start, failed);
+        }
+    }
+
+    // one try at an operation: borrows its connection, runs its statements, gives the connection back
+    @FunctionalInterface
+    private interface Attempt<R> {
+        R run() throws SQLException;
+    }
+
+    private static final class Timeouts {
+        final int queryTimeoutSeconds;
+        final long deadlineNanos;
+
+        Timeouts(int queryTimeoutSeconds, long deadlineNanos) {
+            this.queryTimeoutSeconds = queryTimeoutSeconds;
+            this.deadlineNanos = deadlineNanos;
+        }
+    }
+
+    private static final class Call {
+        final Timeouts timeouts;
+        final long deadline;
+
+        Call(Timeouts timeouts, long deadline) {
+            this.timeouts = timeouts;
+            this.deadline = deadline;
+        }
+    }
+
+    // thrown before a statement once the operation's deadline has passed, told apart from a server-side timeout
+    private static final class DeadlinePassedException extends SQLTimeoutException {
+        private static final long serialVersionUID = 1L;
+
+        DeadlinePassedException(String message) {
+            super(message);
+        }
+    }
+
+    @FunctionalInterface
+    public interface Binder {
+        Binder NONE = statement -> {
+        };
+
+        void bind(PreparedStatement statement) throws SQLException;
+    }
+
+    @FunctionalInterface
+    public interface BatchBinder<T> {
+        void bind(PreparedStatement statement, T item) throws SQLException;
+    }
+
+    @FunctionalInterface
+    public interface ConnectionCallback<R> {
+        R run(Connection connection) throws SQLException;
+    }
+}
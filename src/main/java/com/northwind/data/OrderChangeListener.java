@@ -0,0 +1,13 @@
+package com.northwind.data;
+
+import com.northwind.model.Order;
+
+// told about each order OrderDao has committed (Ex. SalesRollups); called after the transaction, on the caller's thread.
+// Two transactions touching the same order can commit in one order and notify in the other, so a listener
+// may briefly hold an older version of that order; keep such listeners rebuildable from the database.
+public interface OrderChangeListener {
+    // the order was inserted or updated (details == null means the line items were not changed)
+    void orderSaved(Order order);
+
+    void orderDeleted(int orderId);
+}
@@ -1,5 +1,411 @@
 package com.northwind.data;
 
+import com.northwind.model.Order;
+import com.northwind.model.OrderDetail;
+import com.northwind.model.Shipper;
+
+import javax.sql.DataSource;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
 public class OrderDao {
+    private final JdbcRunner runner;
+    private volatile OrderChangeListener changeListener;
+
+    public OrderDao(DataSource dataSource) {
+        this(new JdbcRunner(dataSource));
+    }
+
+    public OrderDao(JdbcRunner runner) {
+        this.runner = runner;
+    }
+
+    // optional listener told about every committed add/update/delete (Ex. SalesRollups.build() registers itself)
+    public void setChangeListener(OrderChangeListener changeListener) {
+        this.changeListener = changeListener;
+    }
+
+    public OrderChangeListener getChangeListener() {
+        return changeListener;
+    }
+
+    public List<Order> getAll() {
+        String query = """
+                SELECT OrderID, CustomerID, EmployeeID, OrderDate, RequiredDate, ShippedDate, ShipVia, Freight,
+                       ShipName, ShipAddress, ShipCity, ShipRegion, ShipPostalCode, ShipCountry
+                FROM orders;
+                """;
+
+        return runner.queryList("OrderDao.getAll", query, JdbcRunner.Binder.NONE, RowMappers.ORDER);
+    }
+
+    // streams every order header in id order without loading the table into memory; close the stream when done
+    public Stream<Order> stream() {
+        String query = """
+                SELECT OrderID, CustomerID, EmployeeID, OrderDate, RequiredDate, ShippedDate, ShipVia, Freight,
+                       ShipName, ShipAddress, ShipCity, ShipRegion, ShipPostalCode, ShipCountry
+                FROM orders
+                ORDER BY OrderID;
+                """;
+
+        return runner.stream("OrderDao.stream", query, JdbcRunner.Binder.NONE, RowMappers.ORDER);
+    }
+
+    // streams every line item ordered by order id (primary key order); close the stream when done
+    public Stream<OrderDetail> streamDetails() {
+        String query = """
+                SELECT OrderID, ProductID, UnitPrice, Quantity, Discount
+                FROM `order details`
+                ORDER BY OrderID, ProductID;
+                """;
+
+        return runner.stream("OrderDao.streamDetails", query, JdbcRunner.Binder.NONE, RowMappers.ORDER_DETAIL);
+    }
+
+    // orders placed in [from, to), oldest first; close the stream when done.
+    // The bare column comparison lets the OrderDate index seek straight to from and stop at to, so
+    // "orders this week" (from = Monday 00:00, to = from.plusWeeks(1)) reads only that week's rows.
+    public Stream<Order> findByOrderDateBetween(LocalDateTime from, LocalDateTime to) {
+        checkRange(from, to);
+
+        String query = """
+                SELECT OrderID, CustomerID, EmployeeID, OrderDate, RequiredDate, ShippedDate, ShipVia, Freight,
+                       ShipName, ShipAddress, ShipCity, ShipRegion, ShipPostalCode, ShipCountry
+                FROM orders
+                WHERE OrderDate >= ? AND OrderDate < ?
+                ORDER BY OrderDate, OrderID;
+                """;
+
+        return runner.stream("OrderDao.findByOrderDateBetween", query, statement -> {
+            statement.setObject(1, from);
+            statement.setObject(2, to);
+        }, RowMappers.ORDER);
+    }
+
+    // orders shipped in [from, to) after their required date, in shipping order; close the stream when done.
+    // ShippedDate > RequiredDate compares two columns, which no index can seek on, so the range on
+    // ShippedDate does the seeking and the lateness test only runs on the rows inside it.
+    public Stream<Order> findLateShipments(LocalDateTime from, LocalDateTime to) {
+        checkRange(from, to);
+
+        String query = """
+                SELECT OrderID, CustomerID, EmployeeID, OrderDate, RequiredDate, ShippedDate, ShipVia, Freight,
+                       ShipName, ShipAddress, ShipCity, ShipRegion, ShipPostalCode, ShipCountry
+                FROM orders
+                WHERE ShippedDate >= ? AND ShippedDate < ?
+                  AND ShippedDate > RequiredDate
+                ORDER BY ShippedDate, OrderID;
+                """;
+
+        return runner.stream("OrderDao.findLateShipments", query, statement -> {
+            statement.setObject(1, from);
+            statement.setObject(2, to);
+        }, RowMappers.ORDER);
+    }
+
+    // keyset pagination: orders with an id greater than afterOrderId (use 0 for the first page)
+    public Page<Integer, Order> page(int afterOrderId, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+
+        String query = """
+                SELECT OrderID, CustomerID, EmployeeID, OrderDate, RequiredDate, ShippedDate, ShipVia, Freight,
+                       ShipName, ShipAddress, ShipCity, ShipRegion, ShipPostalCode, ShipCountry
+                FROM orders
+                WHERE OrderID > ?
+                ORDER BY OrderID
+                LIMIT ?;
+                """;
+
+        List<Order> orders = runner.queryList("OrderDao.page", query, statement -> {
+            statement.setInt(1, afterOrderId);
+            statement.setInt(2, limit + 1);
+        }, RowMappers.ORDER);
+
+        return Page.of(orders, limit, Order::getOrderId);
+    }
+
+    // order header only; use findWithDetails() for line items and shipper
+    public Order find(int orderId) {
+        String query = """
+                SELECT OrderID, CustomerID, EmployeeID, OrderDate, RequiredDate, ShippedDate, ShipVia, Freight,
+                       ShipName, ShipAddress, ShipCity, ShipRegion, ShipPostalCode, ShipCountry
+                FROM orders
+                WHERE OrderID = ?;
+                """;
+
+        return runner.queryOne("OrderDao.find", query, statement -> statement.setInt(1, orderId), RowMappers.ORDER);
+    }
+
+    // order, shipper and line items in one joined round trip (one row per line item)
+    public Order findWithDetails(int orderId) {
+        String query = """
+                SELECT o.OrderID, o.CustomerID, o.EmployeeID, o.OrderDate, o.RequiredDate, o.ShippedDate, o.ShipVia, o.Freight,
+                       o.ShipName, o.ShipAddress, o.ShipCity, o.ShipRegion, o.ShipPostalCode, o.ShipCountry,
+                       s.ShipperID, s.CompanyName, s.Phone,
+                       od.ProductID, od.UnitPrice, od.Quantity, od.Discount
+                FROM orders o
+                LEFT JOIN shippers s ON s.ShipperID = o.ShipVia
+                LEFT JOIN `order details` od ON od.OrderID = o.OrderID
+                WHERE o.OrderID = ?
+                ORDER BY od.ProductID;
+                """;
+
+        return runner.withReadConnection("OrderDao.findWithDetails", connection -> {
+            Order order = null;
+
+            try (PreparedStatement statement = runner.prepare(connection, query)) {
+                statement.setInt(1, orderId);
+
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    RowMapper.Bound<Order> orderRow = RowMappers.ORDER.bind(resultSet);
+                    RowMapper.Bound<Shipper> shipperRow = RowMappers.JOINED_SHIPPER.bind(resultSet);
+                    RowMapper.Bound<OrderDetail> detailRow = RowMappers.ORDER_DETAIL.bind(resultSet);
+
+                    while (resultSet.next()) {
+                        if (order == null) {
+                            order = orderRow.map(resultSet);
+                            order.setShipper(shipperRow.map(resultSet));
+                            order.setDetails(new ArrayList<>());
+                        }
+
+                        OrderDetail detail = detailRow.map(resultSet);
+                        if (detail != null) {
+                            order.getDetails().add(detail);
+                        }
+                    }
+                }
+            }
+            return order;
+        });
+    }
+
+    // every order for a customer with shipper and line items: two round trips no matter how many orders
+    public List<Order> findByCustomer(String customerId) {
+        String orderQuery = """
+                SELECT o.OrderID, o.CustomerID, o.EmployeeID, o.OrderDate, o.RequiredDate, o.ShippedDate, o.ShipVia, o.Freight,
+                       o.ShipName, o.ShipAddress, o.ShipCity, o.ShipRegion, o.ShipPostalCode, o.ShipCountry,
+                       s.ShipperID, s.CompanyName, s.Phone
+                FROM orders o
+                LEFT JOIN shippers s ON s.ShipperID = o.ShipVia
+                WHERE o.CustomerID = ?
+                ORDER BY o.OrderID;
+                """;
+
+        String detailQuery = """
+                SELECT od.OrderID, od.ProductID, od.UnitPrice, od.Quantity, od.Discount
+                FROM `order details` od
+                JOIN orders o ON o.OrderID = od.OrderID
+                WHERE o.CustomerID = ?
+                ORDER BY od.OrderID, od.ProductID;
+                """;
+
+        return runner.withReadConnection("OrderDao.findByCustomer", connection -> {
+            List<Order> orders = new ArrayList<>();
+            Map<Integer, Order> ordersById = new HashMap<>();
+
+            try (PreparedStatement statement = runner.prepare(connection, orderQuery)) {
+                statement.setString(1, customerId);
+
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    RowMapper.Bound<Order> orderRow = RowMappers.ORDER.bind(resultSet);
+                    RowMapper.Bound<Shipper> shipperRow = RowMappers.JOINED_SHIPPER.bind(resultSet);
+
+                    while (resultSet.next()) {
+                        Order order = orderRow.map(resultSet);
+                        order.setShipper(shipperRow.map(resultSet));
+                        order.setDetails(new ArrayList<>());
+
+                        orders.add(order);
+                        ordersById.put(order.getOrderId(), order);
+                    }
+                }
+            }
+
+            if (orders.isEmpty()) {
+                return orders;
+            }
+
+            List<OrderDetail> details = runner.queryList(connection, detailQuery,
+                    statement -> statement.setString(1, customerId), RowMappers.ORDER_DETAIL);
+
+            for (OrderDetail detail : details) {
+                Order order = ordersById.get(detail.getOrderId());
+                if (order != null) {
+                    order.getDetails().add(detail);
+                }
+            }
+            return orders;
+        });
+    }
+
+    // inserts the order and its line items (if any) in one transaction; the order gets its generated id
+    public Order add(Order order) {
+        String query = """
+                INSERT INTO orders (CustomerID, EmployeeID, OrderDate, RequiredDate, ShippedDate, ShipVia, Freight,
+                                    ShipName, ShipAddress, ShipCity, ShipRegion, ShipPostalCode, ShipCountry)
+                VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?);
+                """;
+
+        try {
+            runner.inTransaction("OrderDao.add", connection -> {
+                try (PreparedStatement statement = runner.prepare(connection, query, Statement.RETURN_GENERATED_KEYS)) {
+                    setOrderColumns(statement, order);
+                    statement.executeUpdate();
+
+                    try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
+                        if (generatedKeys.next()) {
+                            order.setOrderId(generatedKeys.getInt(1));
+                        }
+                    }
+                }
+
+                insertDetails(connection, order);
+                return order;
+            });
+        } catch (RuntimeException e) {
+            order.setOrderId(0);
+            throw e;
+        }
+
+        OrderChangeListener current = changeListener;
+        if (current != null) {
+            current.orderSaved(order);
+        }
+        return order;
+    }
+
+    // updates the order header; when details are set they replace the stored line items
+    public void update(Order order) {
+        String query = """
+                UPDATE orders
+                SET CustomerID = ?, EmployeeID = ?, OrderDate = ?, RequiredDate = ?, ShippedDate = ?, ShipVia = ?, Freight = ?,
+                    ShipName = ?, ShipAddress = ?, ShipCity = ?, ShipRegion = ?, ShipPostalCode = ?, ShipCountry = ?
+                WHERE OrderID = ?;
+                """;
+
+        int updated = runner.inTransaction("OrderDao.update", connection -> {
+            int count;
+            try (PreparedStatement statement = runner.prepare(connection, query)) {
+                setOrderColumns(statement, order);
+                statement.setInt(14, order.getOrderId());
+                count = statement.executeUpdate();
+            }
+
+            if (count > 0 && order.getDetails() != null) {
+                deleteDetails(connection, order.getOrderId());
+                insertDetails(connection, order);
+            }
+            return count;
+        });
+
+        OrderChangeListener current = changeListener;
+        if (updated > 0 && current != null) {
+            current.orderSaved(order);
+        }
+    }
+
+    // deletes the line items and the order together
+    public void delete(int orderId) {
+        String query = """
+                DELETE FROM orders
+                WHERE OrderID = ?;
+                """;
+
+        int deleted = runner.inTransaction("OrderDao.delete", connection -> {
+            deleteDetails(connection, orderId);
+
+            try (PreparedStatement statement = runner.prepare(connection, query)) {
+                statement.setInt(1, orderId);
+                return statement.executeUpdate();
+            }
+        });
+
+        OrderChangeListener current = changeListener;
+        if (deleted > 0 && current != null) {
+            current.orderDeleted(orderId);
+        }
+    }
+
+    private void insertDetails(Connection connection, Order order) throws SQLException {
+        if (order.getDetails() == null || order.getDetails().isEmpty()) {
+            return;
+        }
+
+        String query = """
+                INSERT INTO `order details` (OrderID, ProductID, UnitPrice, Quantity, Discount)
+                VALUES (?, ?, ?, ?, ?);
+                """;
+
+        for (OrderDetail detail : order.getDetails()) {
+            detail.setOrderId(order.getOrderId());
+        }
+
+        runner.executeBatch(connection, query, order.getDetails(), (statement, detail) -> {
+            statement.setInt(1, detail.getOrderId());
+            statement.setInt(2, detail.getProductId());
+            statement.setDouble(3, detail.getUnitPrice());
+            statement.setInt(4, detail.getQuantity());
+            statement.setDouble(5, detail.getDiscount());
+        }, Integer.MAX_VALUE);
+    }
+
+    private void deleteDetails(Connection connection, int orderId) throws SQLException {
+        String query = """
+                DELETE FROM `order details`
+                WHERE OrderID = ?;
+                """;
+
+        try (PreparedStatement statement = runner.prepare(connection, query)) {
+            statement.setInt(1, orderId);
+            statement.executeUpdate();
+        }
+    }
+
+    // binds parameters 1-13 in the column order shared by the insert and update statements
+    private static void setOrderColumns(PreparedStatement statement, Order order) throws SQLException {
+        statement.setString(1, order.getCustomerId());
+        setNullableId(statement, 2, order.getEmployeeId());
+        setDateTime(statement, 3, order.getOrderDate());
+        setDateTime(statement, 4, order.getRequiredDate());
+        setDateTime(statement, 5, order.getShippedDate());
+        setNullableId(statement, 6, order.getShipVia());
+        statement.setDouble(7, order.getFreight());
+        statement.setString(8, order.getShipName());
+        statement.setString(9, order.getShipAddress());
+        statement.setString(10, order.getShipCity());
+        statement.setString(11, order.getShipRegion());
+        statement.setString(12, order.getShipPostalCode());
+        statement.setString(13, order.getShipCountry());
+    }
+
+    // foreign keys are read back as 0 when NULL, so write 0 back as NULL
+    private static void setNullableId(PreparedStatement statement, int index, int id) throws SQLException {
+        if (id == 0) {
+            statement.setNull(index, Types.INTEGER);
+        } else {
+            statement.setInt(index, id);
+        }
+    }
+
+    private static void checkRange(LocalDateTime from, LocalDateTime to) {
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("from and to are required");
+        }
+    }
+
+    private static void setDateTime(PreparedStatement statement, int index, LocalDateTime dateTime) throws SQLException {
+        if (dateTime == null) {
+            statement.setNull(index, Types.TIMESTAMP);
+        } else {
+            statement.setObject(index, dateTime);
+        }
+    }
 
 }
@@ -0,0 +1,46 @@
+package com.northwind.data;
+
+import java.util.List;
+import java.util.function.Function;
+
+// One page of a keyset (seek) listing.
+// nextKey is the continuation token: pass it back as the "after" key to get the following page.
+// It is null once the last page has been returned.
+public class Page<K, T> {
+    private final List<T> items;
+    private final K nextKey;
+
+    public Page(List<T> items, K nextKey) {
+        this.items = List.copyOf(items);
+        this.nextKey = nextKey;
+    }
+
+    // build a page from a query that asked for limit + 1 rows; the extra row only tells us there is more
+    static <K, T> Page<K, T> of(List<T> rows, int limit, Function<T, K> keyOf) {
+        if (rows.size() > limit) {
+            List<T> items = rows.subList(0, limit);
+            return new Page<>(items, keyOf.apply(items.get(limit - 1)));
+        }
+        return new Page<>(rows, null);
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public K getNextKey() {
+        return nextKey;
+    }
+
+    public boolean hasMore() {
+        return nextKey != null;
+    }
+
+    @Override
+    public String toString() {
+        return "Page{" +
+                "items=" + items.size() +
+                ", nextKey=" + nextKey +
+                '}';
+    }
+}
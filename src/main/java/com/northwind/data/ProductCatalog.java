@@ -0,0 +1,194 @@
+package com.northwind.data;
+
+import com.northwind.model.Product;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+// Every product held in memory, indexed by ProductID in a plain array: find() is one array read,
+// with no locking, boxing or hashing. ProductIDs are auto-increment, so the array is dense.
+// A refresh builds a new snapshot on the side and swaps it in with one volatile write;
+// readers keep using whichever snapshot they started with.
+// The products handed out are shared by every reader: treat them as read-only.
+public class ProductCatalog {
+    // ids past this would make the array wasteful; refuse instead of allocating gigabytes
+    private static final int MAX_PRODUCT_ID = 1 << 24;
+
+    private final ProductDao productDao;
+    private volatile Snapshot snapshot = new Snapshot(new Product[0], new int[0], 0);
+
+    public ProductCatalog(ProductDao productDao) {
+        this.productDao = productDao;
+    }
+
+    // a catalog with every product loaded
+    public static ProductCatalog load(ProductDao productDao) {
+        ProductCatalog catalog = new ProductCatalog(productDao);
+        catalog.reload();
+        return catalog;
+    }
+
+    // the product with this id, or null when there is none
+    public Product find(int productId) {
+        Product[] products = snapshot.products;
+        return productId >= 0 && productId < products.length ? products[productId] : null;
+    }
+
+    public boolean contains(int productId) {
+        return find(productId) != null;
+    }
+
+    public int size() {
+        return snapshot.size;
+    }
+
+    // every product in id order
+    public List<Product> getAll() {
+        Snapshot current = snapshot;
+        List<Product> products = new ArrayList<>(current.size);
+        for (Product product : current.products) {
+            if (product != null) {
+                products.add(product);
+            }
+        }
+        return Collections.unmodifiableList(products);
+    }
+
+    // replaces the snapshot with a full read of the table;
+    // throws DataAccessException on failure, and the old snapshot stays in place
+    public synchronized void reload() {
+        // the checksums and the rows from one replica, so no row is older than the checksum kept for it
+        snapshot = productDao.readConsistently(this::readSnapshot);
+    }
+
+    private Snapshot readSnapshot() {
+        // checksums first: a row that changes between the two reads then has a stale checksum,
+        // so the next refresh() reloads it instead of keeping the stale row forever
+        long[] checksums = productDao.checksums();
+
+        int length = arrayLength(checksums);
+        Product[] products = new Product[length];
+        int[] crcs = new int[length];
+        int[] size = new int[1];
+        productDao.forEach(product -> {
+            if (product.getProductId() < length) {
+                products[product.getProductId()] = product;
+                size[0]++;
+            }
+        });
+        for (long checksum : checksums) {
+            crcs[idOf(checksum)] = crcOf(checksum);
+        }
+
+        return new Snapshot(products, crcs, size[0]);
+    }
+
+    // re-reads only the rows whose checksum changed, drops deleted rows and adds new ones;
+    // returns the number of products that changed; throws DataAccessException (keeping the old snapshot) on failure
+    public synchronized int refresh() {
+        // the checksums and the rows they flag from one replica: a row read from a replica behind the checksums'
+        // would be kept under the newer checksum, and so never re-read
+        return productDao.readConsistently(this::refreshSnapshot);
+    }
+
+    private int refreshSnapshot() {
+        long[] checksums = productDao.checksums();
+
+        Snapshot current = snapshot;
+        int length = arrayLength(checksums);
+        boolean[] seen = new boolean[length];
+        List<Integer> changed = new ArrayList<>();
+
+        for (long checksum : checksums) {
+            int productId = idOf(checksum);
+            seen[productId] = true;
+            if (productId >= current.products.length || current.products[productId] == null
+                    || current.checksums[productId] != crcOf(checksum)) {
+                changed.add(productId);
+            }
+        }
+
+        List<Integer> deleted = new ArrayList<>();
+        for (int productId = 0; productId < current.products.length; productId++) {
+            if (current.products[productId] != null && (productId >= length || !seen[productId])) {
+                deleted.add(productId);
+            }
+        }
+
+        if (changed.isEmpty() && deleted.isEmpty()) {
+            return 0;
+        }
+
+        // the DAO's cache may hold the old rows; make findByIds() go to the database
+        EntityCache<Integer, Product> cache = productDao.getCache();
+        if (cache != null) {
+            changed.forEach(cache::invalidate);
+        }
+        Map<Integer, Product> reloaded = productDao.findByIds(changed);
+
+        Product[] products = Arrays.copyOf(current.products, length);
+        int[] crcs = Arrays.copyOf(current.checksums, length);
+        int size = current.size;
+
+        for (int productId : deleted) {
+            if (productId < length) {
+                products[productId] = null;
+            }
+            size--;
+        }
+        for (long checksum : checksums) {
+            int productId = idOf(checksum);
+            Product product = reloaded.get(productId);
+            if (product == null) {
+                continue;
+            }
+            if (products[productId] == null) {
+                size++;
+            }
+            products[productId] = product;
+            crcs[productId] = crcOf(checksum);
+        }
+        // deleted between checksums() and findByIds(): drop it now rather than keep serving the old row
+        for (int productId : changed) {
+            if (!reloaded.containsKey(productId) && products[productId] != null) {
+                products[productId] = null;
+                crcs[productId] = 0;
+                size--;
+            }
+        }
+
+        snapshot = new Snapshot(products, crcs, size);
+        return changed.size() + deleted.size();
+    }
+
+    private static int arrayLength(long[] checksums) {
+        int maxId = checksums.length == 0 ? 0 : idOf(checksums[checksums.length - 1]);
+        if (maxId >= MAX_PRODUCT_ID) {
+            throw new IllegalStateException("ProductID " + maxId + " is too large for an array-indexed catalog");
+        }
+        return maxId + 1;
+    }
+
+    private static int idOf(long checksum) {
+        return (int) (checksum >>> 32);
+    }
+
+    private static int crcOf(long checksum) {
+        return (int) checksum;
+    }
+
+    private static final class Snapshot {
+        final Product[] products;
+        final int[] checksums;
+        final int size;
+
+        Snapshot(Product[] products, int[] checksums, int size) {
+            this.products = products;
+            this.checksums = checksums;
+            this.size = size;
+        }
+    }
+}
@@ -5,128 +5,411 @@ import com.northwind.model.Product;
 import javax.sql.DataSource;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 public class ProductDao {
-    private DataSource dataSource;
+    private static final int MAX_IN_LIST = 500;
+
+    // non-key columns in the bit order of Product.getDirtyColumns()
+    private static final String[] COLUMNS = {"ProductName", "SupplierID", "CategoryID", "QuantityPerUnit",
+            "UnitPrice", "UnitsInStock", "UnitsOnOrder", "ReorderLevel", "Discontinued"};
+
+    // UPDATE statement per dirty-column mask, built the first time that mask is written
+    private static final AtomicReferenceArray<String> UPDATE_QUERIES = new AtomicReferenceArray<>(Product.ALL_COLUMNS + 1);
+
+    private final JdbcRunner runner;
+    private EntityCache<Integer, Product> cache;
+    private int batchSize = 500;
 
     public ProductDao(DataSource dataSource) {
-        this.dataSource = dataSource;
+        this(new JdbcRunner(dataSource));
     }
 
-    public List<Product> getAll() {
-        List<Product> products = new ArrayList<>();
+    public ProductDao(JdbcRunner runner) {
+        this.runner = runner;
+    }
+
+    // optional read-through cache for find(), kept current by add/update/delete;
+    // it holds its own copies, and every caller gets a fresh copy it is free to change
+    public void setCache(EntityCache<Integer, Product> cache) {
+        this.cache = cache;
+    }
 
+    public EntityCache<Integer, Product> getCache() {
+        return cache;
+    }
+
+    // runs work with every read it makes through this DAO on one replica, so later reads never see an older
+    // state than earlier ones (Ex. checksums() and then the rows they flagged; see JdbcRunner.readConsistently)
+    public <R> R readConsistently(Supplier<R> work) {
+        return runner.readConsistently(work);
+    }
+
+    // fetch size used by stream(); Integer.MIN_VALUE streams row by row,
+    // a positive value fetches that many rows per trip when the url has useCursorFetch=true
+    public void setFetchSize(int fetchSize) {
+        runner.setStreamFetchSize(fetchSize);
+    }
+
+    // number of rows sent per executeBatch() round trip in addAll()
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+        this.batchSize = batchSize;
+    }
+
+    public List<Product> getAll() {
         String query = """
                 SELECT ProductID, ProductName, SupplierID, CategoryID, QuantityPerUnit, UnitPrice, UnitsInStock, UnitsOnOrder, ReorderLevel, Discontinued
                 FROM products;
                 """;
 
-        try (Connection connection = dataSource.getConnection();
-             PreparedStatement statement = connection.prepareStatement(query)) {
-
-            try (ResultSet resultSet = statement.executeQuery()) {
+        return runner.queryList("ProductDao.getAll", query, JdbcRunner.Binder.NONE, RowMappers.PRODUCT);
+    }
 
-                while (resultSet.next()) {
-                    Product product = new Product(
-                            resultSet.getInt("ProductID"),
-                            resultSet.getString("ProductName"),
-                            resultSet.getInt("SupplierID"),
-                            resultSet.getInt("CategoryID"),
-                            resultSet.getString("QuantityPerUnit"),
-                            resultSet.getDouble("UnitPrice"),
-                            resultSet.getInt("UnitsInStock"),
-                            resultSet.getInt("UnitsOnOrder"),
-                            resultSet.getInt("ReorderLevel"),
-                            resultSet.getBoolean("Discontinued"));
-
-                    products.add(product);
-                }
+    // getAll() on the runner's async executor; the calling thread is not blocked
+    public CompletableFuture<List<Product>> getAllAsync() {
+        return runner.getAsyncExecutor().submit(this::getAll);
+    }
 
-            }
-        } catch (SQLException e) {
-            System.out.println("There was an error retrieving the data. Please try again.");
-            e.printStackTrace();
+    // keyset pagination: products with an id greater than afterProductId (use 0 for the first page)
+    public Page<Integer, Product> page(int afterProductId, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive");
         }
 
-        return products;
+        String query = """
+                SELECT ProductID, ProductName, SupplierID, CategoryID, QuantityPerUnit, UnitPrice, UnitsInStock, UnitsOnOrder, ReorderLevel, Discontinued
+                FROM products
+                WHERE ProductID > ?
+                ORDER BY ProductID
+                LIMIT ?;
+                """;
+
+        List<Product> products = runner.queryList("ProductDao.page", query, statement -> {
+            statement.setInt(1, afterProductId);
+            statement.setInt(2, limit + 1);
+        }, RowMappers.PRODUCT);
+
+        return Page.of(products, limit, Product::getProductId);
+    }
+
+    // streams every product without loading the table into memory; close the stream when done
+    public Stream<Product> stream() {
+        String query = """
+                SELECT ProductID, ProductName, SupplierID, CategoryID, QuantityPerUnit, UnitPrice, UnitsInStock, UnitsOnOrder, ReorderLevel, Discontinued
+                FROM products;
+                """;
+
+        return runner.stream("ProductDao.stream", query, JdbcRunner.Binder.NONE, RowMappers.PRODUCT);
+    }
+
+    public void forEach(Consumer<Product> action) {
+        try (Stream<Product> products = stream()) {
+            products.forEach(action);
+        }
     }
 
     public Product find(int productId) {
+        EntityCache<Integer, Product> current = cache;
+        if (current == null) {
+            return load(productId);
+        }
+        long start = System.nanoTime();
+        Product cached = current.getIfPresent(productId);
+        if (cached != null) {
+            runner.recordHit("ProductDao.find", start);
+            return copyOf(cached);
+        }
+        return copyOf(current.load(productId, this::load));
+    }
 
-        Product product = null;
+    // find() on the runner's async executor; a cache hit completes without a database call
+    public CompletableFuture<Product> findAsync(int productId) {
+        EntityCache<Integer, Product> current = cache;
+        if (current == null) {
+            return runner.getAsyncExecutor().submit(() -> load(productId));
+        }
+        long start = System.nanoTime();
+        Product cached = current.getIfPresent(productId);
+        if (cached != null) {
+            runner.recordHit("ProductDao.find", start);
+            return CompletableFuture.completedFuture(copyOf(cached));
+        }
+        // the miss is already counted, so load through the cache without a second lookup
+        return runner.getAsyncExecutor().submit(() -> copyOf(current.load(productId, this::load)));
+    }
 
+    public CompletableFuture<Map<Integer, Product>> findByIdsAsync(Collection<Integer> productIds) {
+        List<Integer> ids = new ArrayList<>(productIds);
+        return runner.getAsyncExecutor().submit(() -> findByIds(ids));
+    }
+
+    private Product load(int productId) {
         String query = """
                 SELECT ProductID, ProductName, SupplierID, CategoryID, QuantityPerUnit, UnitPrice, UnitsInStock, UnitsOnOrder, ReorderLevel, Discontinued
                 FROM products
                 WHERE ProductID = ?;
                 """;
 
-        try (Connection connection = dataSource.getConnection();
-             PreparedStatement statement = connection.prepareStatement(query)) {
-
-            statement.setInt(1, productId);
-
-            try (ResultSet resultSet = statement.executeQuery()) {
-
-                if (resultSet.next()) {
-                    product = new Product(
-                            resultSet.getInt("ProductID"),
-                            resultSet.getString("ProductName"),
-                            resultSet.getInt("SupplierID"),
-                            resultSet.getInt("CategoryID"),
-                            resultSet.getString("QuantityPerUnit"),
-                            resultSet.getDouble("UnitPrice"),
-                            resultSet.getInt("UnitsInStock"),
-                            resultSet.getInt("UnitsOnOrder"),
-                            resultSet.getInt("ReorderLevel"),
-                            resultSet.getBoolean("Discontinued"));
-                }
+        return runner.queryOne("ProductDao.find", query, statement -> statement.setInt(1, productId), RowMappers.PRODUCT);
+    }
+
+    // look up many products at once instead of one find() per id; chunks of MAX_IN_LIST ids share one connection
+    public Map<Integer, Product> findByIds(Collection<Integer> productIds) {
+        long startNanos = System.nanoTime();
+        Map<Integer, Product> products = new HashMap<>();
+        List<Integer> missing = new ArrayList<>();
+
+        for (Integer productId : new LinkedHashSet<>(productIds)) {
+            Product cached = cache == null ? null : cache.getIfPresent(productId);
+            if (cached != null) {
+                products.put(productId, copyOf(cached));
+            } else {
+                missing.add(productId);
             }
-        } catch (SQLException e) {
-            System.out.println("There was an error retrieving the data. Please try again.");
-            e.printStackTrace();
         }
-        return product;
+        if (missing.isEmpty()) {
+            runner.recordHit("ProductDao.findByIds", startNanos);
+            return products;
+        }
+
+        return runner.withReadConnection("ProductDao.findByIds", connection -> {
+            for (int start = 0; start < missing.size(); start += MAX_IN_LIST) {
+                List<Integer> chunk = missing.subList(start, Math.min(start + MAX_IN_LIST, missing.size()));
+
+                String query = """
+                        SELECT ProductID, ProductName, SupplierID, CategoryID, QuantityPerUnit, UnitPrice, UnitsInStock, UnitsOnOrder, ReorderLevel, Discontinued
+                        FROM products
+                        WHERE ProductID IN (%s);
+                        """.formatted(JdbcRunner.placeholders(chunk.size()));
+
+                List<Product> found = runner.queryList(connection, query, statement -> {
+                    for (int i = 0; i < chunk.size(); i++) {
+                        statement.setInt(i + 1, chunk.get(i));
+                    }
+                }, RowMappers.PRODUCT);
+
+                for (Product product : found) {
+                    products.put(product.getProductId(), product);
+                    if (cache != null) {
+                        cache.put(product.getProductId(), copyOf(product));
+                    }
+                }
+            }
+            return products;
+        });
+    }
+
+    // one entry per product: (ProductID << 32) | CRC32 of its other columns, ordered by id;
+    // lets a snapshot spot changed rows without reading them.
+    // CONCAT_WS skips NULLs (so NULL, 5 and 5, NULL would hash alike): nullable columns become '\0' first
+    public long[] checksums() {
+        String query = """
+                SELECT ProductID,
+                       CRC32(CONCAT_WS('|', ProductName,
+                                       COALESCE(CAST(SupplierID AS CHAR(64)), '\\0'),
+                                       COALESCE(CAST(CategoryID AS CHAR(64)), '\\0'),
+                                       COALESCE(QuantityPerUnit, '\\0'),
+                                       COALESCE(CAST(UnitPrice AS CHAR(64)), '\\0'),
+                                       COALESCE(CAST(UnitsInStock AS CHAR(64)), '\\0'),
+                                       COALESCE(CAST(UnitsOnOrder AS CHAR(64)), '\\0'),
+                                       COALESCE(CAST(ReorderLevel AS CHAR(64)), '\\0'),
+                                       Discontinued)) AS RowChecksum
+                FROM products
+                ORDER BY ProductID;
+                """;
+
+        return runner.withReadConnection("ProductDao.checksums", connection -> {
+            long[] checksums = new long[256];
+            int count = 0;
+
+            try (PreparedStatement statement = runner.prepare(connection, query);
+                 ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    if (count == checksums.length) {
+                        checksums = Arrays.copyOf(checksums, count * 2);
+                    }
+                    checksums[count++] = ((long) resultSet.getInt(1) << 32) | (resultSet.getLong(2) & 0xFFFFFFFFL);
+                }
+            }
+            return Arrays.copyOf(checksums, count);
+        });
     }
 
     // update method to update an existing product
+    // writes only the columns whose setters were called since the product was loaded or saved;
+    // a product with no changes costs no round trip
     public void update(Product product) {
+        int dirty = product.getDirtyColumns();
+        if (dirty == 0) {
+            return;
+        }
+
+        try {
+            int updated = runner.update("ProductDao.update", updateQuery(dirty), statement -> {
+                int index = 1;
+                for (int column = 0; column < COLUMNS.length; column++) {
+                    if ((dirty & (1 << column)) != 0) {
+                        bindColumn(statement, index++, product, column);
+                    }
+                }
+                statement.setInt(index, product.getProductId());
+            });
+            if (updated > 0) {
+                product.markClean();
+            }
+        } finally {
+            invalidate(product.getProductId());
+        }
+    }
 
+    // adds delta (negative to take stock out) in one conditional UPDATE, so concurrent callers cannot lose updates;
+    // returns false without changing anything when the product is missing or the stock would go below zero
+    public boolean adjustStock(int productId, int delta) {
         String query = """
                 UPDATE products
-                SET ProductID = ?,
-                    ProductName = ?,
-                    SupplierID = ?,
-                    CategoryID = ?,
-                    QuantityPerUnit = ?,
-                    UnitPrice = ?,
-                    UnitsInStock = ?,
-                    UnitsOnOrder = ?,
-                    ReorderLevel = ?,
-                    Discontinued = ?
-                WHERE ProductID = ?;
+                SET UnitsInStock = UnitsInStock + ?
+                WHERE ProductID = ?
+                  AND UnitsInStock >= ?;
                 """;
 
-        try(Connection connection = dataSource.getConnection();
-            PreparedStatement statement = connection.prepareStatement(query)) {
+        try {
+            int updated = runner.update("ProductDao.adjustStock", query, statement -> {
+                statement.setInt(1, delta);
+                statement.setInt(2, productId);
+                statement.setInt(3, Math.max(0, -delta));
+            });
+            return updated > 0;
+        } finally {
+            invalidate(productId);
+        }
+    }
 
-            statement.setInt(1, product.getProductId());
-            statement.setString(2, product.getProductName());
-            statement.setInt(3,product.getSupplierId());
-            statement.setInt(4, product.getCategoryId());
-            statement.setString(5, product.getQuantityPerUnit());
-            statement.setDouble(6,product.getUnitPrice());
-            statement.setInt(7,product.getUnitsInStock());
-            statement.setInt(8, product.getUnitsOnOrder());
-            statement.setInt(9,product.getReorderLevel());
-            statement.setBoolean(10, product.isDiscontinued());
-            statement.setInt(11,product.getProductId());
+    // applies every stock delta on its own (no all-or-nothing), batched in one round trip, in id order;
+    // a line that would take stock below zero is REJECTED and a missing product NOT_FOUND;
+    // throws DataAccessException (and nothing is applied) when the statement failed
+    public Map<Integer, WriteOutcome> adjustStockAll(Map<Integer, Integer> deltas) {
+        Map<Integer, WriteOutcome> outcomes = new TreeMap<>();
+        if (deltas.isEmpty()) {
+            return outcomes;
+        }
+        List<Map.Entry<Integer, Integer>> lines = new ArrayList<>(new TreeMap<>(deltas).entrySet());
+
+        String query = """
+                UPDATE products
+                SET UnitsInStock = UnitsInStock + ?
+                WHERE ProductID = ?
+                  AND UnitsInStock >= ?;
+                """;
+
+        String existsQuery = """
+                SELECT ProductID
+                FROM products
+                WHERE ProductID IN (%s);
+                """;
 
-            statement.executeUpdate();
-        } catch (SQLException e) {
-            System.out.println("There was an error updating the product. Please try again. " + e.getMessage());
-            e.printStackTrace();
+        try {
+            runner.inTransaction("ProductDao.adjustStockAll", connection -> {
+                int[] counts = runner.executeBatch(connection, query, lines, (statement, line) -> {
+                    statement.setInt(1, line.getValue());
+                    statement.setInt(2, line.getKey());
+                    statement.setInt(3, Math.max(0, -line.getValue()));
+                }, batchSize);
+
+                List<Integer> missed = new ArrayList<>();
+                for (int i = 0; i < counts.length; i++) {
+                    boolean applied = counts[i] != 0 && counts[i] != Statement.EXECUTE_FAILED;
+                    outcomes.put(lines.get(i).getKey(), applied ? WriteOutcome.UPDATED : WriteOutcome.NOT_FOUND);
+                    if (!applied) {
+                        missed.add(lines.get(i).getKey());
+                    }
+                }
+
+                // a missed line either has no row or was short on stock; one lookup tells them apart
+                for (int start = 0; start < missed.size(); start += MAX_IN_LIST) {
+                    List<Integer> chunk = missed.subList(start, Math.min(start + MAX_IN_LIST, missed.size()));
+                    try (PreparedStatement statement = runner.prepare(connection, existsQuery.formatted(JdbcRunner.placeholders(chunk.size())))) {
+                        for (int i = 0; i < chunk.size(); i++) {
+                            statement.setInt(i + 1, chunk.get(i));
+                        }
+                        try (ResultSet resultSet = statement.executeQuery()) {
+                            while (resultSet.next()) {
+                                outcomes.put(resultSet.getInt(1), WriteOutcome.REJECTED);
+                            }
+                        }
+                    }
+                }
+                return outcomes;
+            });
+            return outcomes;
+        } finally {
+            for (Integer productId : deltas.keySet()) {
+                invalidate(productId);
+            }
+        }
+    }
+
+    // takes quantity units out of stock for every product id in the map, all or nothing, in one batched round trip;
+    // returns the ids whose stock was short (or that do not exist); an empty list means everything was reserved
+    public List<Integer> reserve(Map<Integer, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        // sorted by id so two overlapping reservations lock their rows in the same order and cannot deadlock
+        List<Map.Entry<Integer, Integer>> lines = new ArrayList<>(new TreeMap<>(quantities).entrySet());
+        for (Map.Entry<Integer, Integer> line : lines) {
+            if (line.getValue() <= 0) {
+                throw new IllegalArgumentException("quantity for product " + line.getKey() + " must be positive");
+            }
+        }
+
+        String query = """
+                UPDATE products
+                SET UnitsInStock = UnitsInStock - ?
+                WHERE ProductID = ?
+                  AND UnitsInStock >= ?;
+                """;
+
+        try {
+            return runner.inTransaction("ProductDao.reserve", connection -> {
+                int[] counts = runner.executeBatch(connection, query, lines, (statement, line) -> {
+                    statement.setInt(1, line.getValue());
+                    statement.setInt(2, line.getKey());
+                    statement.setInt(3, line.getValue());
+                }, lines.size());
+
+                List<Integer> failed = new ArrayList<>();
+                for (int i = 0; i < counts.length; i++) {
+                    // SUCCESS_NO_INFO only comes back for rows the driver did update
+                    if (counts[i] == 0 || counts[i] == Statement.EXECUTE_FAILED) {
+                        failed.add(lines.get(i).getKey());
+                    }
+                }
+                if (!failed.isEmpty()) {
+                    connection.rollback();
+                }
+                return failed;
+            });
+        } finally {
+            for (Integer productId : quantities.keySet()) {
+                invalidate(productId);
+            }
         }
     }
 
@@ -138,22 +421,236 @@ public class ProductDao {
                 WHERE ProductID = ?;
                 """;
 
-        try (Connection connection = dataSource.getConnection();
-             PreparedStatement statement = connection.prepareStatement(query)) {
+        try {
+            runner.update("ProductDao.delete", query, statement -> statement.setInt(1, productId));
+        } finally {
+            invalidate(productId);
+        }
+    }
 
-            statement.setInt(1, productId);
+    // add method to add a product
+    public Product add(Product product) {
+        String query = """
+                        INSERT INTO products (ProductName,
+                                                SupplierID,
+                                                CategoryID,
+                                                QuantityPerUnit,
+                                                UnitPrice,
+                                                UnitsInStock,
+                                                UnitsOnOrder,
+                                                ReorderLevel,
+                                                Discontinued)
+                        VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?);
+                        """;
+
+        int generatedId = runner.insert("ProductDao.add", query, statement -> bindInsert(statement, product));
+        if (generatedId != 0) {
+            product.setProductId(generatedId);
+            product.markClean();
+        }
+        invalidate(product.getProductId());
+
+        return product;
+    }
 
-            statement.executeUpdate();
+    // add many products on one connection and one transaction, batchSize rows per round trip;
+    // every product gets its generated id, or none do if the insert is rolled back (and DataAccessException is thrown)
+    public List<Product> addAll(List<Product> products) {
+        try {
+            runner.inTransaction("ProductDao.addAll", connection -> {
+                insertBatch(connection, products);
+                return products;
+            });
+        } catch (RuntimeException e) {
+            for (Product product : products) {
+                product.setProductId(0);
+            }
+            throw e;
+        }
 
-        } catch (SQLException e) {
-            System.out.println("There was an error deleting the product. Please try again.");
-            e.printStackTrace();
+        for (Product product : products) {
+            product.markClean();
         }
 
+        return products;
     }
 
-    // add method to add a product
-    public Product add(Product product) {
+    // insert-or-update in chunks of batchSize: products with id 0 are inserted with a generated id,
+    // the rest are inserted with their id if missing, updated if different and skipped if identical
+    public List<WriteOutcome> upsertAll(List<Product> products) {
+        return writeAll("ProductDao.upsertAll", products, true, false);
+    }
+
+    // batched update; rows that do not exist are reported as NOT_FOUND instead of being inserted
+    public List<WriteOutcome> updateAll(List<Product> products) {
+        return writeAll("ProductDao.updateAll", products, false, false);
+    }
+
+    // updateAll that leaves UnitsInStock as the database has it, for stock changed only through adjustStock;
+    // each product's UnitsInStock is set to the stored value, read under the same row lock as the write
+    public List<WriteOutcome> updateAllKeepingStock(List<Product> products) {
+        return writeAll("ProductDao.updateAllKeepingStock", products, false, true);
+    }
+
+    private List<WriteOutcome> writeAll(String operation, List<Product> products, boolean insertMissing, boolean keepStock) {
+        WriteOutcome[] outcomes = new WriteOutcome[products.size()];
+
+        List<Product> newProducts = new ArrayList<>();
+        for (Product product : products) {
+            if (product.getProductId() == 0) {
+                newProducts.add(product);
+            }
+        }
+
+        try {
+            runner.inTransaction(operation, connection -> {
+                for (int start = 0; start < products.size(); start += batchSize) {
+                    int end = Math.min(start + batchSize, products.size());
+                    writeChunk(connection, products.subList(start, end), insertMissing, keepStock, outcomes, start);
+                }
+                return outcomes;
+            });
+        } catch (RuntimeException e) {
+            // rolled back: ids handed out inside the transaction were never committed
+            for (Product product : newProducts) {
+                product.setProductId(0);
+            }
+            for (Product product : products) {
+                invalidate(product.getProductId());
+            }
+            throw e;
+        }
+
+        for (int i = 0; i < products.size(); i++) {
+            if (outcomes[i] != WriteOutcome.NOT_FOUND) {
+                products.get(i).markClean();
+            }
+            invalidate(products.get(i).getProductId());
+        }
+
+        return Arrays.asList(outcomes);
+    }
+
+    // one round trip to lock and read the current rows, then at most three batches for the changes
+    private void writeChunk(Connection connection, List<Product> chunk, boolean insertMissing, boolean keepStock,
+                            WriteOutcome[] outcomes, int offset) throws SQLException {
+        Map<Integer, Product> current = lockExisting(connection, chunk);
+        if (keepStock) {
+            for (Product product : chunk) {
+                Product existing = current.get(product.getProductId());
+                if (existing != null) {
+                    product.setUnitsInStock(existing.getUnitsInStock());
+                }
+            }
+        }
+
+        List<Product> generated = new ArrayList<>();
+        List<Product> inserts = new ArrayList<>();
+        List<Product> updates = new ArrayList<>();
+
+        for (int i = 0; i < chunk.size(); i++) {
+            Product product = chunk.get(i);
+            Product existing = current.get(product.getProductId());
+
+            if (product.getProductId() == 0) {
+                if (insertMissing) {
+                    generated.add(product);
+                    outcomes[offset + i] = WriteOutcome.INSERTED;
+                } else {
+                    outcomes[offset + i] = WriteOutcome.NOT_FOUND;
+                }
+            } else if (existing == null) {
+                if (insertMissing) {
+                    inserts.add(product);
+                    current.put(product.getProductId(), product);
+                    outcomes[offset + i] = WriteOutcome.INSERTED;
+                } else {
+                    outcomes[offset + i] = WriteOutcome.NOT_FOUND;
+                }
+            } else if (sameValues(existing, product)) {
+                outcomes[offset + i] = WriteOutcome.UNCHANGED;
+            } else {
+                updates.add(product);
+                current.put(product.getProductId(), product);
+                outcomes[offset + i] = WriteOutcome.UPDATED;
+            }
+        }
+
+        insertBatch(connection, generated);
+
+        String insertQuery = """
+                INSERT INTO products (ProductID, ProductName, SupplierID, CategoryID, QuantityPerUnit, UnitPrice, UnitsInStock, UnitsOnOrder, ReorderLevel, Discontinued)
+                VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?);
+                """;
+
+        runner.executeBatch(connection, insertQuery, inserts, (statement, product) -> {
+            statement.setInt(1, product.getProductId());
+            statement.setString(2, product.getProductName());
+            statement.setInt(3, product.getSupplierId());
+            statement.setInt(4, product.getCategoryId());
+            statement.setString(5, product.getQuantityPerUnit());
+            statement.setDouble(6, product.getUnitPrice());
+            statement.setInt(7, product.getUnitsInStock());
+            statement.setInt(8, product.getUnitsOnOrder());
+            statement.setInt(9, product.getReorderLevel());
+            statement.setBoolean(10, product.isDiscontinued());
+        }, batchSize);
+
+        String updateQuery = """
+                UPDATE products
+                SET ProductName = ?,
+                    SupplierID = ?,
+                    CategoryID = ?,
+                    QuantityPerUnit = ?,
+                    UnitPrice = ?,
+                    UnitsInStock = ?,
+                    UnitsOnOrder = ?,
+                    ReorderLevel = ?,
+                    Discontinued = ?
+                WHERE ProductID = ?;
+                """;
+
+        runner.executeBatch(connection, updateQuery, updates, (statement, product) -> {
+            bindInsert(statement, product);
+            statement.setInt(10, product.getProductId());
+        }, batchSize);
+    }
+
+    private Map<Integer, Product> lockExisting(Connection connection, List<Product> chunk) throws SQLException {
+        Map<Integer, Product> existing = new HashMap<>();
+
+        List<Integer> ids = new ArrayList<>();
+        for (Product product : chunk) {
+            if (product.getProductId() != 0) {
+                ids.add(product.getProductId());
+            }
+        }
+        if (ids.isEmpty()) {
+            return existing;
+        }
+
+        String query = """
+                SELECT ProductID, ProductName, SupplierID, CategoryID, QuantityPerUnit, UnitPrice, UnitsInStock, UnitsOnOrder, ReorderLevel, Discontinued
+                FROM products
+                WHERE ProductID IN (%s)
+                FOR UPDATE;
+                """.formatted(JdbcRunner.placeholders(ids.size()));
+
+        List<Product> rows = runner.queryList(connection, query, statement -> {
+            for (int i = 0; i < ids.size(); i++) {
+                statement.setInt(i + 1, ids.get(i));
+            }
+        }, RowMappers.PRODUCT);
+
+        for (Product product : rows) {
+            existing.put(product.getProductId(), product);
+        }
+
+        return existing;
+    }
+
+    // batched insert with generated keys on the caller's connection and transaction
+    private void insertBatch(Connection connection, List<Product> products) throws SQLException {
         String query = """
                         INSERT INTO products (ProductName,
                                                 SupplierID,
@@ -167,34 +664,76 @@ public class ProductDao {
                         VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?);
                         """;
 
-        try(Connection connection = dataSource.getConnection();
-            PreparedStatement statement = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
-
-            statement.setString(1,product.getProductName());
-            statement.setInt(2,product.getSupplierId());
-            statement.setInt(3, product.getCategoryId());
-            statement.setString(4, product.getQuantityPerUnit());
-            statement.setDouble(5,product.getUnitPrice());
-            statement.setInt(6,product.getUnitsInStock());
-            statement.setInt(7, product.getUnitsOnOrder());
-            statement.setInt(8,product.getReorderLevel());
-            statement.setBoolean(9, product.isDiscontinued());
-
-            statement.executeUpdate();
-
-            try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
-                if (generatedKeys.next()) {
-                    int generatedId = generatedKeys.getInt(1);
-                    product.setProductId(generatedId);
+        runner.insertBatch(connection, query, products, ProductDao::bindInsert, batchSize, Product::setProductId);
+    }
+
+    // binds parameters 1-9 in the column order shared by the insert and update statements
+    private static void bindInsert(PreparedStatement statement, Product product) throws SQLException {
+        for (int column = 0; column < COLUMNS.length; column++) {
+            bindColumn(statement, column + 1, product, column);
+        }
+    }
+
+    // column is an index into COLUMNS
+    private static void bindColumn(PreparedStatement statement, int index, Product product, int column) throws SQLException {
+        switch (column) {
+            case 0 -> statement.setString(index, product.getProductName());
+            case 1 -> statement.setInt(index, product.getSupplierId());
+            case 2 -> statement.setInt(index, product.getCategoryId());
+            case 3 -> statement.setString(index, product.getQuantityPerUnit());
+            case 4 -> statement.setDouble(index, product.getUnitPrice());
+            case 5 -> statement.setInt(index, product.getUnitsInStock());
+            case 6 -> statement.setInt(index, product.getUnitsOnOrder());
+            case 7 -> statement.setInt(index, product.getReorderLevel());
+            case 8 -> statement.setBoolean(index, product.isDiscontinued());
+            default -> throw new IllegalArgumentException("no product column " + column);
+        }
+    }
+
+    private static String updateQuery(int dirty) {
+        String query = UPDATE_QUERIES.get(dirty);
+        if (query == null) {
+            StringJoiner set = new StringJoiner(", ", "UPDATE products\nSET ", "\nWHERE ProductID = ?;");
+            for (int column = 0; column < COLUMNS.length; column++) {
+                if ((dirty & (1 << column)) != 0) {
+                    set.add(COLUMNS[column] + " = ?");
                 }
             }
+            query = set.toString();
+            UPDATE_QUERIES.set(dirty, query);
+        }
+        return query;
+    }
+
+    private static boolean sameValues(Product a, Product b) {
+        return Objects.equals(a.getProductName(), b.getProductName())
+                && a.getSupplierId() == b.getSupplierId()
+                && a.getCategoryId() == b.getCategoryId()
+                && Objects.equals(a.getQuantityPerUnit(), b.getQuantityPerUnit())
+                && Double.compare(a.getUnitPrice(), b.getUnitPrice()) == 0
+                && a.getUnitsInStock() == b.getUnitsInStock()
+                && a.getUnitsOnOrder() == b.getUnitsOnOrder()
+                && a.getReorderLevel() == b.getReorderLevel()
+                && a.isDiscontinued() == b.isDiscontinued();
+    }
 
-        } catch (SQLException e) {
-            System.out.println("Error adding product." + e.getMessage());
-            e.printStackTrace();
+    private void invalidate(int productId) {
+        if (cache != null) {
+            cache.invalidate(productId);
         }
+    }
 
-        return product;
+    // what goes into and comes out of the cache, so no two callers share one mutable product
+    private static Product copyOf(Product product) {
+        if (product == null) {
+            return null;
+        }
+        Product copy = new Product(product.getProductId(), product.getProductName(), product.getSupplierId(),
+                product.getCategoryId(), product.getQuantityPerUnit(), product.getUnitPrice(),
+                product.getUnitsInStock(), product.getUnitsOnOrder(), product.getReorderLevel(),
+                product.isDiscontinued());
+        copy.markClean();
+        return copy;
     }
 
 }
@@ -0,0 +1,409 @@
+package com.northwind.data;
+
+import com.northwind.model.Product;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Opt-in write-behind buffer in front of ProductDao for very frequent writes to the same products.
+// update() and adjustStock() only record the write; a background thread flushes every pending product
+// once flushSize products are waiting or the oldest write is flushInterval old, as updateAll() batches
+// followed by one adjustStockAll() batch.
+//
+// Coalescing, per ProductID:
+//   - update() replaces any earlier pending write for the product (last write wins)
+//   - adjustStock() deltas are summed; a delta queued after an update() stays a delta. That row is written with
+//     updateAllKeepingStock(), so its UnitsInStock gives way to the stored stock, and the delta is then applied
+//     by adjustStockAll() like any other: floor-checked, and added to whatever stock other writers left
+//
+// Guarantees (and what can be lost):
+//   - a write is durable only once a flush containing it has committed; until then it lives only in memory.
+//     A crash or kill -9 loses at most the pending writes: up to maxPending products, no older than
+//     flushInterval unless the database is failing.
+//   - close() (or the shutdown hook from registerShutdownHook()) flushes everything still pending before returning.
+//     If that flush fails it is retried CLOSE_ATTEMPTS times with growing pauses; whatever still could not be
+//     written is then reported to DroppedWriteListener.unwritten() (and counted as dropped) before close() returns
+//   - while the buffer is open, a batch that fails as a whole (DataAccessException, including an open circuit breaker)
+//     puts its writes back in the buffer, merged under any newer ones, and they are retried on the next flush;
+//     nothing is dropped while the database is unreachable
+//   - writes the database refuses are dropped and reported to the DroppedWriteListener:
+//     an update for a missing product (NOT_FOUND), or a delta that would take stock below zero (REJECTED).
+//     Deltas are checked as the coalesced sum, so one large decrement can take smaller deltas queued with it down too
+//   - readers going through ProductDao do not see pending writes until they are flushed
+//   - when maxPending products are waiting, update()/adjustStock() for a new product block until a flush makes room
+public class ProductWriteBehind implements AutoCloseable {
+    // flushes tried by close() before the writes still pending are reported as unwritten
+    private static final int CLOSE_ATTEMPTS = 5;
+    private static final long MAX_CLOSE_PAUSE_MILLIS = 5_000;
+
+    private final ProductDao productDao;
+    private final int maxPending;
+    private final int flushSize;
+    private final long flushIntervalNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition flushDue = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    // only one flush writes at a time, so two writes to one product reach the database in order
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private LinkedHashMap<Integer, PendingWrite> pending = new LinkedHashMap<>();
+    private long oldestPendingNanos;
+    private boolean flushRequested;
+    private volatile boolean closed;
+    private volatile DataAccessException lastFailure;
+
+    private final Thread flusher;
+    private volatile DroppedWriteListener droppedWriteListener = (productId, outcome) ->
+            System.out.println("Write-behind dropped the write for product " + productId + ": " + outcome);
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    public ProductWriteBehind(ProductDao productDao, int maxPending, int flushSize, Duration flushInterval) {
+        if (maxPending <= 0 || flushSize <= 0 || flushSize > maxPending) {
+            throw new IllegalArgumentException("need 0 < flushSize <= maxPending");
+        }
+        this.productDao = productDao;
+        this.maxPending = maxPending;
+        this.flushSize = flushSize;
+        this.flushIntervalNanos = flushInterval.toNanos();
+
+        this.flusher = new Thread(this::runFlusher, "northwind-write-behind");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    public void setDroppedWriteListener(DroppedWriteListener droppedWriteListener) {
+        this.droppedWriteListener = droppedWriteListener;
+    }
+
+    // flush pending writes when the JVM shuts down normally (not on kill -9 or a crash)
+    public void registerShutdownHook() {
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "northwind-write-behind-shutdown"));
+    }
+
+    // queues a full-row update; the product is copied, so later changes to it are not picked up
+    public void update(Product product) throws InterruptedException {
+        PendingWrite write = new PendingWrite();
+        write.product = copyOf(product);
+        enqueue(product.getProductId(), write);
+    }
+
+    // queues a stock change; deltas for the same product add up until the next flush
+    public void adjustStock(int productId, int delta) throws InterruptedException {
+        PendingWrite write = new PendingWrite();
+        write.stockDelta = delta;
+        enqueue(productId, write);
+    }
+
+    // writes everything pending now, on the calling thread
+    public void flush() {
+        flushOnce();
+    }
+
+    // stops the background thread and flushes what is left; writes after close() are refused
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            flushDue.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // no flusher is left to retry, so a failed final flush is retried here before anything is given up
+        long pauseMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(flushIntervalNanos));
+        for (int attempt = 1; attempt <= CLOSE_ATTEMPTS; attempt++) {
+            if (flushOnce()) {
+                return;
+            }
+            if (attempt == CLOSE_ATTEMPTS || Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            try {
+                TimeUnit.MILLISECONDS.sleep(pauseMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            pauseMillis = Math.min(pauseMillis * 2, MAX_CLOSE_PAUSE_MILLIS);
+        }
+
+        DataAccessException cause = lastFailure;
+        for (Integer productId : drain().keySet()) {
+            dropped.increment();
+            droppedWriteListener.unwritten(productId, cause);
+        }
+    }
+
+    public int getPendingCount() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getAcceptedCount() {
+        return accepted.sum();
+    }
+
+    // writes that were merged into an already pending write for the same product
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    public long getFlushCount() {
+        return flushes.sum();
+    }
+
+    public long getRetriedCount() {
+        return retried.sum();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    private void enqueue(int productId, PendingWrite write) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (!closed && pending.size() >= maxPending && !pending.containsKey(productId)) {
+                // full: make sure a flush is on its way, then wait for the room it frees
+                flushRequested = true;
+                flushDue.signal();
+                notFull.await();
+            }
+            if (closed) {
+                throw new IllegalStateException("write-behind buffer is closed");
+            }
+
+            accepted.increment();
+            if (pending.isEmpty()) {
+                // wakes the flusher so it starts timing flushInterval from this write
+                oldestPendingNanos = System.nanoTime();
+                flushDue.signal();
+            }
+            PendingWrite previous = pending.get(productId);
+            if (previous == null) {
+                pending.put(productId, write);
+            } else {
+                coalesced.increment();
+                pending.put(productId, merge(previous, write));
+            }
+
+            if (pending.size() >= flushSize) {
+                flushDue.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void runFlusher() {
+        while (true) {
+            lock.lock();
+            try {
+                while (!closed && !flushRequested && pending.size() < flushSize) {
+                    if (pending.isEmpty()) {
+                        flushDue.await();
+                    } else {
+                        long wait = oldestPendingNanos + flushIntervalNanos - System.nanoTime();
+                        if (wait <= 0) {
+                            break;
+                        }
+                        flushDue.awaitNanos(wait);
+                    }
+                }
+                if (closed) {
+                    return;
+                }
+                flushRequested = false;
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            // a flush that failed as a whole put its writes back; wait a beat instead of spinning on a dead database
+            if (!flushOnce()) {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(Math.max(1, TimeUnit.NANOSECONDS.toMillis(flushIntervalNanos)));
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // returns false when some writes failed and went back into the buffer
+    private boolean flushOnce() {
+        flushLock.lock();
+        try {
+            Map<Integer, PendingWrite> batch = drain();
+            return batch.isEmpty() || write(batch);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private Map<Integer, PendingWrite> drain() {
+        lock.lock();
+        try {
+            Map<Integer, PendingWrite> batch = pending;
+            pending = new LinkedHashMap<>();
+            notFull.signalAll();
+            return batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean write(Map<Integer, PendingWrite> batch) {
+        flushes.increment();
+
+        List<Product> updates = new ArrayList<>();
+        List<Product> updatesKeepingStock = new ArrayList<>();
+        Map<Integer, Integer> deltas = new LinkedHashMap<>();
+        for (Map.Entry<Integer, PendingWrite> entry : batch.entrySet()) {
+            PendingWrite write = entry.getValue();
+            if (write.product != null) {
+                (write.stockDelta != 0 ? updatesKeepingStock : updates).add(write.product);
+            }
+            if (write.stockDelta != 0) {
+                deltas.put(entry.getKey(), write.stockDelta);
+            }
+        }
+
+        Map<Integer, PendingWrite> failed = new LinkedHashMap<>();
+        writeRows(updates, false, batch, deltas, failed);
+        writeRows(updatesKeepingStock, true, batch, deltas, failed);
+
+        try {
+            for (Map.Entry<Integer, WriteOutcome> outcome : productDao.adjustStockAll(deltas).entrySet()) {
+                handle(outcome.getKey(), outcome.getValue());
+            }
+        } catch (DataAccessException e) {
+            lastFailure = e;
+            for (Map.Entry<Integer, Integer> delta : deltas.entrySet()) {
+                // a row written above is not written again; only its delta goes back
+                PendingWrite write = new PendingWrite();
+                write.stockDelta = delta.getValue();
+                failed.put(delta.getKey(), write);
+            }
+            System.out.println("Write-behind could not write " + deltas.size() + " stock changes, will retry. " + e.getMessage());
+        }
+
+        if (!failed.isEmpty()) {
+            requeue(failed);
+            return false;
+        }
+        return true;
+    }
+
+    // one updateAll() batch; a row that failed goes back whole (with its delta, which is then not applied now)
+    // and a delta whose row is missing is dropped with it
+    private void writeRows(List<Product> rows, boolean keepStock, Map<Integer, PendingWrite> batch,
+                           Map<Integer, Integer> deltas, Map<Integer, PendingWrite> failed) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        try {
+            List<WriteOutcome> outcomes = keepStock ? productDao.updateAllKeepingStock(rows) : productDao.updateAll(rows);
+            for (int i = 0; i < rows.size(); i++) {
+                int productId = rows.get(i).getProductId();
+                handle(productId, outcomes.get(i));
+                if (outcomes.get(i) == WriteOutcome.NOT_FOUND) {
+                    deltas.remove(productId);
+                }
+            }
+        } catch (DataAccessException e) {
+            lastFailure = e;
+            for (Product product : rows) {
+                failed.put(product.getProductId(), batch.get(product.getProductId()));
+                deltas.remove(product.getProductId());
+            }
+            System.out.println("Write-behind could not write " + rows.size() + " products, will retry. " + e.getMessage());
+        }
+    }
+
+    private void handle(int productId, WriteOutcome outcome) {
+        if (outcome == WriteOutcome.NOT_FOUND || outcome == WriteOutcome.REJECTED) {
+            dropped.increment();
+            droppedWriteListener.dropped(productId, outcome);
+        }
+    }
+
+    // failed writes are older than anything queued since, so they go underneath the newer writes;
+    // they may push the buffer past maxPending for a moment rather than be lost
+    private void requeue(Map<Integer, PendingWrite> failed) {
+        lock.lock();
+        try {
+            retried.add(failed.size());
+            LinkedHashMap<Integer, PendingWrite> merged = new LinkedHashMap<>(failed);
+            for (Map.Entry<Integer, PendingWrite> newer : pending.entrySet()) {
+                merged.merge(newer.getKey(), newer.getValue(), ProductWriteBehind::merge);
+            }
+            pending = merged;
+            oldestPendingNanos = System.nanoTime();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // the write that results from applying older and then newer
+    private static PendingWrite merge(PendingWrite older, PendingWrite newer) {
+        if (newer.product != null) {
+            return newer;
+        }
+        older.stockDelta += newer.stockDelta;
+        return older;
+    }
+
+    private static Product copyOf(Product product) {
+        return new Product(product.getProductId(), product.getProductName(), product.getSupplierId(),
+                product.getCategoryId(), product.getQuantityPerUnit(), product.getUnitPrice(),
+                product.getUnitsInStock(), product.getUnitsOnOrder(), product.getReorderLevel(),
+                product.isDiscontinued());
+    }
+
+    // a pending full-row update (product set), a pending stock delta, or an update with a delta queued after it
+    private static final class PendingWrite {
+        Product product;
+        int stockDelta;
+    }
+
+    @FunctionalInterface
+    public interface DroppedWriteListener {
+        void dropped(int productId, WriteOutcome outcome);
+
+        // close() gave up on this product's pending write because the database kept failing
+        default void unwritten(int productId, DataAccessException cause) {
+            System.out.println("Write-behind closed without writing product " + productId + ". "
+                    + (cause == null ? "" : cause.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.northwind.data;
+
+// A statement ran longer than its query timeout, or the operation ran past its deadline.
+// Not retried: during a slowdown another attempt would only add load and wait just as long.
+public class QueryTimeoutException extends DataAccessException {
+    private static final long serialVersionUID = 1L;
+
+    public QueryTimeoutException(String operation, String message, Throwable cause) {
+        super(operation, message, cause);
+    }
+}
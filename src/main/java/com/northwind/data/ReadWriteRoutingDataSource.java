@@ -0,0 +1,304 @@
+package com.northwind.data;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.time.Duration;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+// Sends reads to replica pools and everything else to the primary.
+// getConnection() is the write path, so existing code keeps working unchanged; JdbcRunner asks for
+// getReadConnection() on its read-only paths (queryList, queryOne, stream, withReadConnection).
+// Read-your-writes: after a thread borrows a primary connection, its reads also go to the primary
+// for readYourWritesWindow, so it does not read a replica that has not caught up with its own write.
+// (The window is per thread: work handed to another thread, Ex. the async executor, is not pinned,
+// and an EntityCache filled by another thread can pick up a lagging replica's copy until its ttl runs out.)
+// A replica that fails to hand out a valid connection is taken out of rotation until the background
+// health check sees it answer again; with no healthy replica, reads fall back to the primary.
+// (A health check that finds the pool exhausted leaves the replica as it was.)
+// A replica whose pool is merely exhausted (every connection busy for maxWait) stays in rotation: the read
+// moves on to the next replica, and if none had a connection free the pool-exhausted error is thrown
+// (a TransientDataAccessException, which read operations retry) rather than moving the load to the primary.
+// Separate reads may land on different replicas, each behind by a different amount; readConsistently() keeps
+// a thread's reads on the pool its first read used (or moves them to the primary, which is never behind),
+// so a later read never sees an older state than an earlier one (Ex. a change log and the rows it names).
+public class ReadWriteRoutingDataSource implements DataSource, AutoCloseable {
+    private final DataSource primary;
+    private final List<DataSource> replicas;
+    private final long readYourWritesNanos;
+    private final int validationTimeoutSeconds = 2;
+
+    private final ThreadLocal<long[]> lastWrite = ThreadLocal.withInitial(() -> new long[]{Long.MIN_VALUE});
+    // inside readConsistently(): {nesting depth, replica index the reads stick to, or UNCHOSEN / PRIMARY}
+    private final ThreadLocal<int[]> consistentReads = ThreadLocal.withInitial(() -> new int[]{0, UNCHOSEN});
+    private static final int UNCHOSEN = -1;
+    private static final int PRIMARY = -2;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    // 1 = healthy, 0 = out of rotation
+    private final AtomicIntegerArray healthy;
+    private final Thread healthChecker;
+    private volatile boolean closed;
+
+    public ReadWriteRoutingDataSource(DataSource primary, List<DataSource> replicas,
+                                      Duration readYourWritesWindow, Duration healthCheckInterval) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        this.readYourWritesNanos = readYourWritesWindow.toNanos();
+        this.healthy = new AtomicIntegerArray(this.replicas.size());
+        for (int i = 0; i < this.replicas.size(); i++) {
+            healthy.set(i, 1);
+        }
+
+        long intervalMillis = healthCheckInterval.toMillis();
+        this.healthChecker = new Thread(() -> checkHealth(intervalMillis), "northwind-replica-health");
+        this.healthChecker.setDaemon(true);
+        if (!this.replicas.isEmpty()) {
+            this.healthChecker.start();
+        }
+    }
+
+    public DataSource getPrimary() {
+        return primary;
+    }
+
+    public List<DataSource> getReplicas() {
+        return replicas;
+    }
+
+    public int getHealthyReplicaCount() {
+        int count = 0;
+        for (int i = 0; i < healthy.length(); i++) {
+            count += healthy.get(i);
+        }
+        return count;
+    }
+
+    // the write path: a primary connection, which also pins this thread's reads to the primary for the window
+    @Override
+    public Connection getConnection() throws SQLException {
+        markWrite();
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        markWrite();
+        return primary.getConnection(username, password);
+    }
+
+    // a replica connection, or a primary one when this thread wrote recently or no replica is healthy
+    public Connection getReadConnection() throws SQLException {
+        return getReadConnection(BorrowListener.NONE);
+    }
+
+    // the same, telling the listener how long each pool it asked took to answer (Ex. for per-pool wait metrics)
+    public Connection getReadConnection(BorrowListener listener) throws SQLException {
+        int[] scope = consistentReads.get();
+        if (scope[0] > 0) {
+            return consistentConnection(scope, listener);
+        }
+        if (replicas.isEmpty() || wroteRecently()) {
+            return borrow(primary, listener);
+        }
+        return anyReplica(listener, scope);
+    }
+
+    // runs work with this thread's reads on one pool: the replica the first read picks, or the primary from the
+    // moment that replica fails (moving to the primary never goes back in time; moving to another replica could)
+    public <R> R readConsistently(Supplier<R> work) {
+        int[] scope = consistentReads.get();
+        scope[0]++;
+        try {
+            return work.get();
+        } finally {
+            if (--scope[0] == 0) {
+                scope[1] = UNCHOSEN;
+            }
+        }
+    }
+
+    private Connection consistentConnection(int[] scope, BorrowListener listener) throws SQLException {
+        if (scope[1] == UNCHOSEN) {
+            if (replicas.isEmpty() || wroteRecently()) {
+                scope[1] = PRIMARY;
+            } else {
+                return anyReplica(listener, scope);
+            }
+        }
+        int replica = scope[1];
+        if (replica != PRIMARY && healthy.get(replica) == 1) {
+            try {
+                return borrow(replicas.get(replica), listener);
+            } catch (SQLException e) {
+                if (isPoolExhausted(e)) {
+                    // any other replica might be further behind, so wait for this one (the read is retried)
+                    throw e;
+                }
+                healthy.set(replica, 0);
+                System.out.println("Replica " + replica + " taken out of rotation. " + e.getMessage());
+            }
+        }
+        scope[1] = PRIMARY;
+        return borrow(primary, listener);
+    }
+
+    // the next healthy replica in turn, or the primary when none is; notes the choice in a consistent-read scope
+    private Connection anyReplica(BorrowListener listener, int[] scope) throws SQLException {
+        SQLException exhausted = null;
+        int start = Math.floorMod(nextReplica.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            int replica = (start + i) % replicas.size();
+            if (healthy.get(replica) == 0) {
+                continue;
+            }
+            try {
+                Connection connection = borrow(replicas.get(replica), listener);
+                if (scope[0] > 0) {
+                    scope[1] = replica;
+                }
+                return connection;
+            } catch (SQLException e) {
+                if (isPoolExhausted(e)) {
+                    // busy, not broken: try the next replica but keep this one in rotation
+                    if (exhausted == null) {
+                        exhausted = e;
+                    } else {
+                        exhausted.addSuppressed(e);
+                    }
+                    continue;
+                }
+                healthy.set(replica, 0);
+                System.out.println("Replica " + replica + " taken out of rotation. " + e.getMessage());
+            }
+        }
+        if (exhausted != null) {
+            throw exhausted;
+        }
+        if (scope[0] > 0) {
+            scope[1] = PRIMARY;
+        }
+        return borrow(primary, listener);
+    }
+
+    // pin this thread's reads to the primary for the window without borrowing a connection
+    public void markWrite() {
+        if (readYourWritesNanos > 0) {
+            lastWrite.get()[0] = System.nanoTime();
+        }
+    }
+
+    private static Connection borrow(DataSource pool, BorrowListener listener) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return pool.getConnection();
+        } finally {
+            listener.borrowed(pool, System.nanoTime() - start);
+        }
+    }
+
+    // dbcp2 wraps commons-pool's NoSuchElementException: "Timeout waiting for idle object" when maxWait ran out,
+    // "Pool exhausted" when it does not block. The same exception type also reports a connection that failed
+    // validation or activation, which is a real failure, so the message decides.
+    static boolean isPoolExhausted(SQLException e) {
+        if (!(e.getCause() instanceof NoSuchElementException cause) || cause.getMessage() == null) {
+            return false;
+        }
+        return cause.getMessage().startsWith("Timeout waiting for idle object") || cause.getMessage().startsWith("Pool exhausted");
+    }
+
+    private boolean wroteRecently() {
+        long writtenAt = lastWrite.get()[0];
+        return writtenAt != Long.MIN_VALUE && System.nanoTime() - writtenAt < readYourWritesNanos;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        healthChecker.interrupt();
+    }
+
+    private void checkHealth(long intervalMillis) {
+        while (!closed) {
+            try {
+                Thread.sleep(intervalMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            for (int i = 0; i < replicas.size(); i++) {
+                boolean up;
+                try (Connection connection = replicas.get(i).getConnection()) {
+                    up = connection.isValid(validationTimeoutSeconds);
+                } catch (SQLException e) {
+                    if (isPoolExhausted(e)) {
+                        // every connection busy says nothing either way; the replica keeps the state it had
+                        continue;
+                    }
+                    up = false;
+                }
+
+                int was = healthy.getAndSet(i, up ? 1 : 0);
+                if (was == 1 && !up) {
+                    System.out.println("Replica " + i + " failed its health check and was taken out of rotation.");
+                } else if (was == 0 && up) {
+                    System.out.println("Replica " + i + " is healthy again.");
+                }
+            }
+        }
+    }
+
+    // told how long one pool's getConnection() took, whether it succeeded or not
+    @FunctionalInterface
+    public interface BorrowListener {
+        BorrowListener NONE = (pool, waitNanos) -> { };
+
+        void borrowed(DataSource pool, long waitNanos);
+    }
+
+    // ---------- the rest of DataSource goes to the primary ----------
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return primary.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        primary.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        primary.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return primary.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return primary.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> type) throws SQLException {
+        if (type.isInstance(this)) {
+            return type.cast(this);
+        }
+        return primary.unwrap(type);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> type) throws SQLException {
+        return type.isInstance(this) || primary.isWrapperFor(type);
+    }
+}
@@ -0,0 +1,79 @@
+package com.northwind.data;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// The registry of preloaded lookup tables, one ReferenceTable per model class:
+//   referenceData.register(Shipper.class, shipperDao.preload());
+//   Shipper shipper = referenceData.get(Shipper.class).find(shipVia);
+// startPolling() runs one daemon thread that refreshes every table on an interval; each poll costs one
+// fingerprint query per table and re-reads only the tables that changed.
+// A table whose refresh fails keeps serving its last rows and is tried again on the next poll.
+public class ReferenceData implements AutoCloseable {
+    private final Map<Class<?>, ReferenceTable<?>> tables = new ConcurrentHashMap<>();
+    private Thread poller;
+    private volatile boolean closed;
+
+    public <T> ReferenceTable<T> register(Class<T> type, ReferenceTable<T> table) {
+        tables.put(type, table);
+        return table;
+    }
+
+    // the table for this model class, or null when none is registered
+    @SuppressWarnings("unchecked")
+    public <T> ReferenceTable<T> get(Class<T> type) {
+        return (ReferenceTable<T>) tables.get(type);
+    }
+
+    public List<ReferenceTable<?>> getAll() {
+        return new ArrayList<>(tables.values());
+    }
+
+    // refreshes every table; returns how many reloaded
+    public int refreshAll() {
+        int reloaded = 0;
+        for (ReferenceTable<?> table : tables.values()) {
+            try {
+                if (table.refresh()) {
+                    reloaded++;
+                }
+            } catch (DataAccessException e) {
+                System.out.println("Reference table " + table.getName() + " could not refresh; keeping its last rows. "
+                        + e.getMessage());
+            }
+        }
+        return reloaded;
+    }
+
+    public synchronized void startPolling(Duration interval) {
+        if (poller != null) {
+            throw new IllegalStateException("Already polling");
+        }
+        long intervalMillis = interval.toMillis();
+        poller = new Thread(() -> poll(intervalMillis), "northwind-reference-data");
+        poller.setDaemon(true);
+        poller.start();
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (poller != null) {
+            poller.interrupt();
+        }
+    }
+
+    private void poll(long intervalMillis) {
+        while (!closed) {
+            try {
+                Thread.sleep(intervalMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            refreshAll();
+        }
+    }
+}
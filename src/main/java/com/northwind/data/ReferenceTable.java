@@ -0,0 +1,147 @@
+package com.northwind.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+// A small lookup table (Ex. shippers) held completely in memory, in an array indexed by id:
+// find() is one array read and never borrows a connection.
+// refresh() first asks the source for a fingerprint (row count and a checksum of every row, one tiny
+// aggregate query) and re-reads the table only when that changed; a reload swaps in a new snapshot
+// with one volatile write, so readers never lock or see a half-loaded table.
+// The rows handed out are shared by every reader: treat them as read-only.
+public class ReferenceTable<T> {
+    // ids past this would make the array wasteful; refuse instead of allocating for a sparse table
+    private static final int MAX_ID = 1 << 20;
+    // no fingerprint can match this one, so the next refresh() reloads
+    private static final long STALE = Long.MIN_VALUE;
+
+    // how to read the whole table, and how to tell cheaply whether it changed
+    public interface Source<T> {
+        List<T> loadAll();
+
+        // changes whenever a row is added, removed or changed
+        long fingerprint();
+
+        // runs work so that its fingerprint() and loadAll() see the same state of the table
+        // (Ex. JdbcRunner.readConsistently, so both reads use one replica)
+        default <R> R readConsistently(Supplier<R> work) {
+            return work.get();
+        }
+    }
+
+    private final String name;
+    private final Source<T> source;
+    private final ToIntFunction<T> idOf;
+    private volatile Snapshot<T> snapshot = new Snapshot<>(new Object[0], List.of(), STALE);
+
+    public ReferenceTable(String name, Source<T> source, ToIntFunction<T> idOf) {
+        this.name = name;
+        this.source = source;
+        this.idOf = idOf;
+    }
+
+    // a table with every row loaded
+    public static <T> ReferenceTable<T> load(String name, Source<T> source, ToIntFunction<T> idOf) {
+        ReferenceTable<T> table = new ReferenceTable<>(name, source, idOf);
+        table.reload();
+        return table;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    // the row with this id, or null when there is none
+    @SuppressWarnings("unchecked")
+    public T find(int id) {
+        Object[] rows = snapshot.rows;
+        return id >= 0 && id < rows.length ? (T) rows[id] : null;
+    }
+
+    // every row in id order
+    public List<T> getAll() {
+        return snapshot.all;
+    }
+
+    public int size() {
+        return snapshot.all.size();
+    }
+
+    // reads the whole table and swaps it in; throws DataAccessException on failure, keeping the old rows
+    public synchronized void reload() {
+        // both reads on one replica: rows from a replica behind the fingerprint's would be kept until the next write
+        snapshot = source.readConsistently(this::readSnapshot);
+    }
+
+    private Snapshot<T> readSnapshot() {
+        // fingerprint first: a write landing between the two reads leaves a stale fingerprint,
+        // so the next refresh() reloads again instead of keeping the old row
+        long fingerprint = source.fingerprint();
+        List<T> rows = source.loadAll();
+
+        int length = 0;
+        for (T row : rows) {
+            int id = idOf.applyAsInt(row);
+            if (id < 0 || id >= MAX_ID) {
+                throw new IllegalStateException("Id " + id + " in " + name + " is out of range for an array-indexed table");
+            }
+            length = Math.max(length, id + 1);
+        }
+
+        Object[] byId = new Object[length];
+        for (T row : rows) {
+            byId[idOf.applyAsInt(row)] = row;
+        }
+        List<T> all = new ArrayList<>(rows.size());
+        for (Object row : byId) {
+            if (row != null) {
+                all.add(uncheckedCast(row));
+            }
+        }
+        return new Snapshot<>(byId, Collections.unmodifiableList(all), fingerprint);
+    }
+
+    // reloads only when the fingerprint moved; returns true when it reloaded.
+    // throws DataAccessException on failure, keeping the old rows
+    public synchronized boolean refresh() {
+        if (source.fingerprint() == snapshot.fingerprint) {
+            return false;
+        }
+        reload();
+        return true;
+    }
+
+    // called after a write through the DAO: reloads now, or, if that fails, makes sure the next refresh() does
+    public void invalidate() {
+        try {
+            reload();
+        } catch (DataAccessException e) {
+            synchronized (this) {
+                Snapshot<T> current = snapshot;
+                snapshot = new Snapshot<>(current.rows, current.all, STALE);
+            }
+            System.out.println("Reference table " + name + " could not reload after a write; it retries on the next refresh. "
+                    + e.getMessage());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T uncheckedCast(Object row) {
+        return (T) row;
+    }
+
+    private static final class Snapshot<T> {
+        final Object[] rows;
+        final List<T> all;
+        final long fingerprint;
+
+        Snapshot(Object[] rows, List<T> all, long fingerprint) {
+            this.rows = rows;
+            this.all = all;
+            this.fingerprint = fingerprint;
+        }
+    }
+}
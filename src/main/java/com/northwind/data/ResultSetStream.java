@@ -0,0 +1,69 @@
+package com.northwind.data;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// Wraps an open query in a Stream that maps one row at a time as the ResultSet advances.
+// Closing the stream closes the ResultSet, statement and connection (use try-with-resources).
+final class ResultSetStream {
+
+    private ResultSetStream() {
+    }
+
+    // With MySQL, Integer.MIN_VALUE streams rows one by one; a positive fetch size needs useCursorFetch=true on the url.
+    static <T> Stream<T> open(String operation, Connection connection, String query, JdbcRunner runner, int fetchSize,
+                              JdbcRunner.Binder binder, RowMapper<T> mapper) throws SQLException {
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+        RowMapper.Bound<T> bound;
+        try {
+            statement = runner.prepareStreaming(connection, query, fetchSize);
+            binder.bind(statement);
+            resultSet = statement.executeQuery();
+            bound = mapper.bind(resultSet);
+        } catch (SQLException | RuntimeException e) {
+            closeQuietly(resultSet, statement, connection);
+            throw e;
+        }
+
+        ResultSet rows = resultSet;
+        PreparedStatement openStatement = statement;
+        Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                try {
+                    if (!rows.next()) {
+                        return false;
+                    }
+                    action.accept(bound.map(rows));
+                    return true;
+                } catch (SQLException e) {
+                    throw DataAccessException.translate(operation, e);
+                }
+            }
+        };
+
+        return StreamSupport.stream(spliterator, false)
+                .onClose(() -> closeQuietly(rows, openStatement, connection));
+    }
+
+    private static void closeQuietly(ResultSet resultSet, PreparedStatement statement, Connection connection) {
+        for (AutoCloseable closeable : new AutoCloseable[]{resultSet, statement, connection}) {
+            if (closeable == null) {
+                continue;
+            }
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.northwind.data;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+// How JdbcRunner retries read operations that failed with a TransientDataAccessException.
+// The wait before attempt n + 1 is a random time between 0 and min(maxDelay, baseDelay * 2^(n-1)) ("full jitter"),
+// so callers that failed together do not all come back at the same moment.
+// Retries also stop when the next attempt would start after the operation's deadline.
+public final class RetryPolicy {
+    // no retries at all
+    public static final RetryPolicy NONE = new RetryPolicy(1, Duration.ZERO, Duration.ZERO);
+
+    private final int maxAttempts;
+    private final long baseDelayNanos;
+    private final long maxDelayNanos;
+
+    // maxAttempts counts the first try: 3 means up to two retries
+    public RetryPolicy(int maxAttempts, Duration baseDelay, Duration maxDelay) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be at least 1");
+        }
+        this.maxAttempts = maxAttempts;
+        this.baseDelayNanos = baseDelay.toNanos();
+        this.maxDelayNanos = maxDelay.toNanos();
+    }
+
+    public static RetryPolicy defaults() {
+        return new RetryPolicy(3, Duration.ofMillis(50), Duration.ofSeconds(1));
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    // the wait before the attempt after failed attempt number attempt (1-based)
+    long backoffNanos(int attempt) {
+        long ceiling = baseDelayNanos << Math.min(attempt - 1, 30);
+        if (ceiling <= 0 || ceiling > maxDelayNanos) {
+            ceiling = maxDelayNanos;
+        }
+        return ceiling <= 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+}
@@ -0,0 +1,32 @@
+package com.northwind.data;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+// Turns the current row of a ResultSet into a model object.
+// The column labels are resolved to ordinals once per ResultSet (bind), and every row is then read by index,
+// so the driver does not have to look up a column name for every value of every row.
+public abstract class RowMapper<T> {
+    private final String[] columns;
+
+    protected RowMapper(String... columns) {
+        this.columns = columns;
+    }
+
+    // ordinals[i] is the ResultSet index of the i-th column label passed to the constructor
+    protected abstract T mapRow(ResultSet resultSet, int[] ordinals) throws SQLException;
+
+    public final Bound<T> bind(ResultSet resultSet) throws SQLException {
+        int[] ordinals = new int[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            ordinals[i] = resultSet.findColumn(columns[i]);
+        }
+        return row -> mapRow(row, ordinals);
+    }
+
+    // a mapper whose ordinals have been resolved for one ResultSet
+    @FunctionalInterface
+    public interface Bound<T> {
+        T map(ResultSet resultSet) throws SQLException;
+    }
+}
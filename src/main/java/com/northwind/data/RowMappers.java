@@ -0,0 +1,145 @@
+package com.northwind.data;
+
+import com.northwind.model.ChangeLogEntry;
+import com.northwind.model.Customer;
+import com.northwind.model.Order;
+import com.northwind.model.OrderDetail;
+import com.northwind.model.Product;
+import com.northwind.model.Shipper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+
+// the row mappers shared by the DAOs
+public final class RowMappers {
+
+    private RowMappers() {
+    }
+
+    public static final RowMapper<Customer> CUSTOMER = new RowMapper<>(
+            "CustomerID", "CompanyName", "ContactName", "ContactTitle", "Address", "City",
+            "Region", "PostalCode", "Country", "Phone", "Fax") {
+        @Override
+        protected Customer mapRow(ResultSet resultSet, int[] c) throws SQLException {
+            Customer customer = new Customer(
+                    resultSet.getString(c[0]),
+                    resultSet.getString(c[1]),
+                    resultSet.getString(c[2]),
+                    resultSet.getString(c[3]),
+                    resultSet.getString(c[4]),
+                    resultSet.getString(c[5]),
+                    resultSet.getString(c[6]),
+                    resultSet.getString(c[7]),
+                    resultSet.getString(c[8]),
+                    resultSet.getString(c[9]),
+                    resultSet.getString(c[10]));
+            customer.markClean();
+            return customer;
+        }
+    };
+
+    public static final RowMapper<Product> PRODUCT = new RowMapper<>(
+            "ProductID", "ProductName", "SupplierID", "CategoryID", "QuantityPerUnit", "UnitPrice",
+            "UnitsInStock", "UnitsOnOrder", "ReorderLevel", "Discontinued") {
+        @Override
+        protected Product mapRow(ResultSet resultSet, int[] c) throws SQLException {
+            Product product = new Product(
+                    resultSet.getInt(c[0]),
+                    resultSet.getString(c[1]),
+                    resultSet.getInt(c[2]),
+                    resultSet.getInt(c[3]),
+                    resultSet.getString(c[4]),
+                    resultSet.getDouble(c[5]),
+                    resultSet.getInt(c[6]),
+                    resultSet.getInt(c[7]),
+                    resultSet.getInt(c[8]),
+                    resultSet.getBoolean(c[9]));
+            product.markClean();
+            return product;
+        }
+    };
+
+    public static final RowMapper<Shipper> SHIPPER = new RowMapper<>(
+            "ShipperID", "CompanyName", "Phone") {
+        @Override
+        protected Shipper mapRow(ResultSet resultSet, int[] c) throws SQLException {
+            return new Shipper(
+                    resultSet.getInt(c[0]),
+                    resultSet.getString(c[1]),
+                    resultSet.getString(c[2]));
+        }
+    };
+
+    // null when the shipper side of a LEFT JOIN is empty
+    public static final RowMapper<Shipper> JOINED_SHIPPER = new RowMapper<>(
+            "ShipperID", "CompanyName", "Phone") {
+        @Override
+        protected Shipper mapRow(ResultSet resultSet, int[] c) throws SQLException {
+            int shipperId = resultSet.getInt(c[0]);
+            if (resultSet.wasNull()) {
+                return null;
+            }
+            return new Shipper(
+                    shipperId,
+                    resultSet.getString(c[1]),
+                    resultSet.getString(c[2]));
+        }
+    };
+
+    // dates are read with getObject(column, LocalDateTime.class): the driver decodes the DATETIME straight
+    // into a LocalDateTime, with no String or java.sql.Timestamp in between and no time zone shift
+    public static final RowMapper<Order> ORDER = new RowMapper<>(
+            "OrderID", "CustomerID", "EmployeeID", "OrderDate", "RequiredDate", "ShippedDate", "ShipVia", "Freight",
+            "ShipName", "ShipAddress", "ShipCity", "ShipRegion", "ShipPostalCode", "ShipCountry") {
+        @Override
+        protected Order mapRow(ResultSet resultSet, int[] c) throws SQLException {
+            return new Order(
+                    resultSet.getInt(c[0]),
+                    resultSet.getString(c[1]),
+                    resultSet.getInt(c[2]),
+                    resultSet.getObject(c[3], LocalDateTime.class),
+                    resultSet.getObject(c[4], LocalDateTime.class),
+                    resultSet.getObject(c[5], LocalDateTime.class),
+                    resultSet.getInt(c[6]),
+                    resultSet.getDouble(c[7]),
+                    resultSet.getString(c[8]),
+                    resultSet.getString(c[9]),
+                    resultSet.getString(c[10]),
+                    resultSet.getString(c[11]),
+                    resultSet.getString(c[12]),
+                    resultSet.getString(c[13]));
+        }
+    };
+
+    // null when the line item side of a LEFT JOIN is empty
+    public static final RowMapper<OrderDetail> ORDER_DETAIL = new RowMapper<>(
+            "OrderID", "ProductID", "UnitPrice", "Quantity", "Discount") {
+        @Override
+        protected OrderDetail mapRow(ResultSet resultSet, int[] c) throws SQLException {
+            int productId = resultSet.getInt(c[1]);
+            if (resultSet.wasNull()) {
+                return null;
+            }
+            return new OrderDetail(
+                    resultSet.getInt(c[0]),
+                    productId,
+                    resultSet.getDouble(c[2]),
+                    resultSet.getInt(c[3]),
+                    resultSet.getDouble(c[4]));
+        }
+    };
+
+    public static final RowMapper<ChangeLogEntry> CHANGE_LOG_ENTRY = new RowMapper<>(
+            "ChangeID", "TableName", "RowKey", "Operation", "ChangedAt") {
+        @Override
+        protected ChangeLogEntry mapRow(ResultSet resultSet, int[] c) throws SQLException {
+            return new ChangeLogEntry(
+                    resultSet.getLong(c[0]),
+                    resultSet.getString(c[1]),
+                    resultSet.getString(c[2]),
+                    resultSet.getString(c[3]).charAt(0),
+                    resultSet.getObject(c[4], LocalDateTime.class));
+        }
+    };
+}
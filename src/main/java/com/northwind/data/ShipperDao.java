@@ -3,80 +3,235 @@ package com.northwind.data;
 import com.northwind.model.Shipper;
 
 import javax.sql.DataSource;
-import java.sql.*;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
 
 public class ShipperDao{
-    private DataSource dataSource;
+    private static final int MAX_IN_LIST = 500;
+
+    private final JdbcRunner runner;
+    private EntityCache<Integer, Shipper> cache;
+    private volatile ReferenceTable<Shipper> referenceTable;
+    private int batchSize = 500;
 
     public ShipperDao(DataSource dataSource) {
-        this.dataSource = dataSource;
+        this(new JdbcRunner(dataSource));
+    }
+
+    public ShipperDao(JdbcRunner runner) {
+        this.runner = runner;
+    }
+
+    // optional read-through cache for find(), kept current by add/update/delete;
+    // it holds its own copies, and every caller gets a fresh copy it is free to change
+    public void setCache(EntityCache<Integer, Shipper> cache) {
+        this.cache = cache;
+    }
+
+    public EntityCache<Integer, Shipper> getCache() {
+        return cache;
+    }
+
+    // optional preloaded copy of the whole table: find(), findByIds() and getAll() read it instead of the
+    // database (handing out copies of its shared rows), and add/update/delete reload it after they write
+    public void setReferenceTable(ReferenceTable<Shipper> referenceTable) {
+        this.referenceTable = referenceTable;
+    }
+
+    public ReferenceTable<Shipper> getReferenceTable() {
+        return referenceTable;
+    }
+
+    // loads every shipper into a new reference table and serves reads from it from now on
+    public ReferenceTable<Shipper> preload() {
+        ReferenceTable<Shipper> table = ReferenceTable.load("shippers", new ReferenceTable.Source<>() {
+            @Override
+            public List<Shipper> loadAll() {
+                return queryAll();
+            }
+
+            @Override
+            public long fingerprint() {
+                return ShipperDao.this.fingerprint();
+            }
+
+            @Override
+            public <R> R readConsistently(Supplier<R> work) {
+                return runner.readConsistently(work);
+            }
+        }, Shipper::getShipperId);
+
+        setReferenceTable(table);
+        return table;
+    }
+
+    // number of rows sent per executeBatch() round trip in addAll()
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+        this.batchSize = batchSize;
     }
 
     public List<Shipper> getAll() {
-        List<Shipper> shippers = new ArrayList<>();
+        ReferenceTable<Shipper> table = referenceTable;
+        if (table != null) {
+            long start = System.nanoTime();
+            List<Shipper> shippers = new ArrayList<>();
+            for (Shipper shipper : table.getAll()) {
+                shippers.add(copyOf(shipper));
+            }
+            runner.recordHit("ShipperDao.getAll", start);
+            return shippers;
+        }
+        return queryAll();
+    }
 
-        //call the database and get back products
-        //create Customer objects and fill them with the data from the database ResultSet
+    private List<Shipper> queryAll() {
+        //call the database and get back shippers
+        //create Shipper objects and fill them with the data from the database ResultSet
         String query = """
                 SELECT ShipperID, CompanyName, Phone
                 FROM shippers;
                 """;
 
-        try (Connection connection = dataSource.getConnection();
-             PreparedStatement statement = connection.prepareStatement(query)) {
-
-            try (ResultSet resultSet = statement.executeQuery()) {
-
-                while (resultSet.next()) {
-                    Shipper shipper = new Shipper(
-                            resultSet.getInt("ShipperID"),
-                            resultSet.getString("CompanyName"),
-                            resultSet.getString("Phone"));
+        return runner.queryList("ShipperDao.getAll", query, JdbcRunner.Binder.NONE, RowMappers.SHIPPER);
+    }
 
-                    shippers.add(shipper);
-                }
+    // row count and the sum of every row's CRC32 folded into one number, from one aggregate query;
+    // it moves whenever a shipper is added, removed or changed (lets a ReferenceTable skip needless reloads).
+    // CONCAT_WS skips NULLs, so a NULL Phone becomes '\0' first (else 'A|B' with no phone hashes like 'A' and 'B')
+    public long fingerprint() {
+        String query = """
+                SELECT COUNT(*) AS RowCount,
+                       COALESCE(SUM(CRC32(CONCAT_WS('|', ShipperID, CompanyName, COALESCE(Phone, '\\0')))), 0) AS RowChecksum
+                FROM shippers;
+                """;
 
+        return runner.withReadConnection("ShipperDao.fingerprint", connection -> {
+            try (PreparedStatement statement = runner.prepare(connection, query);
+                 ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                return resultSet.getLong(1) * 31 + resultSet.getLong(2);
             }
-        } catch (SQLException e) {
-            System.out.println("There was an error retrieving the data. Please try again.");
-            e.printStackTrace();
+        });
+    }
+
+    // keyset pagination: shippers with an id greater than afterShipperId (use 0 for the first page)
+    public Page<Integer, Shipper> page(int afterShipperId, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive");
         }
 
-        return shippers;
+        String query = """
+                SELECT ShipperID, CompanyName, Phone
+                FROM shippers
+                WHERE ShipperID > ?
+                ORDER BY ShipperID
+                LIMIT ?;
+                """;
+
+        List<Shipper> shippers = runner.queryList("ShipperDao.page", query, statement -> {
+            statement.setInt(1, afterShipperId);
+            statement.setInt(2, limit + 1);
+        }, RowMappers.SHIPPER);
+
+        return Page.of(shippers, limit, Shipper::getShipperId);
     }
 
     public Shipper find(int shipperId) {
-        Shipper shipper = null;
+        long start = System.nanoTime();
+        ReferenceTable<Shipper> table = referenceTable;
+        if (table != null) {
+            Shipper shipper = copyOf(table.find(shipperId));
+            runner.recordHit("ShipperDao.find", start);
+            return shipper;
+        }
+        EntityCache<Integer, Shipper> current = cache;
+        if (current == null) {
+            return load(shipperId);
+        }
+        Shipper cached = current.getIfPresent(shipperId);
+        if (cached != null) {
+            runner.recordHit("ShipperDao.find", start);
+            return copyOf(cached);
+        }
+        return copyOf(current.load(shipperId, this::load));
+    }
 
+    private Shipper load(int shipperId) {
         String query = """
                 SELECT ShipperID, CompanyName, Phone
                 FROM Shippers
                 WHERE ShipperID = ?;
                 """;
 
-        try (Connection connection = dataSource.getConnection();
-             PreparedStatement statement = connection.prepareStatement(query)) {
-
-            statement.setInt(1, shipperId);
-
-            try (ResultSet resultSet = statement.executeQuery()) {
+        return runner.queryOne("ShipperDao.find", query, statement -> statement.setInt(1, shipperId), RowMappers.SHIPPER);
+    }
 
-                if (resultSet.next()) {
-                    shipper = new Shipper(
-                            resultSet.getInt("ShipperID"),
-                            resultSet.getString("CompanyName"),
-                            resultSet.getString("Phone"));
+    // look up many shippers at once instead of one find() per id; chunks of MAX_IN_LIST ids share one connection
+    public Map<Integer, Shipper> findByIds(Collection<Integer> shipperIds) {
+        long startNanos = System.nanoTime();
+        Map<Integer, Shipper> shippers = new HashMap<>();
+        ReferenceTable<Shipper> table = referenceTable;
+        if (table != null) {
+            for (Integer shipperId : shipperIds) {
+                Shipper shipper = table.find(shipperId);
+                if (shipper != null) {
+                    shippers.put(shipperId, copyOf(shipper));
                 }
+            }
+            runner.recordHit("ShipperDao.findByIds", startNanos);
+            return shippers;
+        }
 
+        List<Integer> missing = new ArrayList<>();
+
+        for (Integer shipperId : new LinkedHashSet<>(shipperIds)) {
+            Shipper cached = cache == null ? null : cache.getIfPresent(shipperId);
+            if (cached != null) {
+                shippers.put(shipperId, copyOf(cached));
+            } else {
+                missing.add(shipperId);
             }
-        } catch (SQLException e) {
-            System.out.println("There was an error retrieving the data. Please try again.");
-            e.printStackTrace();
+        }
+        if (missing.isEmpty()) {
+            runner.recordHit("ShipperDao.findByIds", startNanos);
+            return shippers;
         }
 
-        return shipper;
+        return runner.withReadConnection("ShipperDao.findByIds", connection -> {
+            for (int start = 0; start < missing.size(); start += MAX_IN_LIST) {
+                List<Integer> chunk = missing.subList(start, Math.min(start + MAX_IN_LIST, missing.size()));
+
+                String query = """
+                        SELECT ShipperID, CompanyName, Phone
+                        FROM Shippers
+                        WHERE ShipperID IN (%s);
+                        """.formatted(JdbcRunner.placeholders(chunk.size()));
+
+                List<Shipper> found = runner.queryList(connection, query, statement -> {
+                    for (int i = 0; i < chunk.size(); i++) {
+                        statement.setInt(i + 1, chunk.get(i));
+                    }
+                }, RowMappers.SHIPPER);
+
+                for (Shipper shipper : found) {
+                    shippers.put(shipper.getShipperId(), shipper);
+                    if (cache != null) {
+                        cache.put(shipper.getShipperId(), copyOf(shipper));
+                    }
+                }
+            }
+            return shippers;
+        });
     }
 
     public Shipper add(Shipper shipper) {
@@ -85,27 +240,42 @@ public class ShipperDao{
                 VALUES (?, ?);
                 """;
 
-        try (Connection connection = dataSource.getConnection();
-             PreparedStatement statement = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
-
+        int generatedId = runner.insert("ShipperDao.add", query, statement -> {
             statement.setString(1, shipper.getCompanyName());
             statement.setString(2, shipper.getPhone());
+        });
+        if (generatedId != 0) {
+            shipper.setShipperId(generatedId);
+        }
+        invalidate(shipper.getShipperId());
 
-            statement.executeUpdate();
+        return shipper;
+    }
 
-            try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
-                if (generatedKeys.next()) {
-                    int generatedId = generatedKeys.getInt(1);
-                    shipper.setShipperId(generatedId);
-                }
-            }
+    // add many shippers on one connection and one transaction, batchSize rows per round trip
+    public List<Shipper> addAll(List<Shipper> shippers) {
+        String query = """
+                INSERT INTO Shippers (CompanyName, Phone)
+                VALUES (?, ?);
+                """;
 
-        } catch (SQLException e) {
-            System.out.println("There was an error adding the shipper. Please try again.");
-            e.printStackTrace();
+        try {
+            runner.inTransaction("ShipperDao.addAll", connection -> {
+                runner.insertBatch(connection, query, shippers, (statement, shipper) -> {
+                    statement.setString(1, shipper.getCompanyName());
+                    statement.setString(2, shipper.getPhone());
+                }, batchSize, Shipper::setShipperId);
+                return shippers;
+            });
+        } catch (RuntimeException e) {
+            for (Shipper shipper : shippers) {
+                shipper.setShipperId(0);
+            }
+            throw e;
         }
+        reloadReferenceTable();
 
-        return shipper;
+        return shippers;
     }
 
     public void update(Shipper shipper) {
@@ -115,18 +285,14 @@ public class ShipperDao{
                 WHERE ShipperID = ?;
                 """;
 
-        try (Connection connection = dataSource.getConnection();
-             PreparedStatement statement = connection.prepareStatement(query)) {
-
-            statement.setString(1, shipper.getCompanyName());
-            statement.setString(2, shipper.getPhone());
-            statement.setInt(3, shipper.getShipperId());
-
-            statement.executeUpdate();
-
-        } catch (SQLException e) {
-            System.out.println("There was an error updating the shipper. Please try again.");
-            e.printStackTrace();
+        try {
+            runner.update("ShipperDao.update", query, statement -> {
+                statement.setString(1, shipper.getCompanyName());
+                statement.setString(2, shipper.getPhone());
+                statement.setInt(3, shipper.getShipperId());
+            });
+        } finally {
+            invalidate(shipper.getShipperId());
         }
     }
 
@@ -136,17 +302,33 @@ public class ShipperDao{
                 WHERE ShipperID = ?;
                 """;
 
-        try (Connection connection = dataSource.getConnection();
-             PreparedStatement statement = connection.prepareStatement(query)) {
+        try {
+            runner.update("ShipperDao.delete", query, statement -> statement.setInt(1, shipperId));
+        } finally {
+            invalidate(shipperId);
+        }
+    }
 
-            statement.setInt(1, shipperId);
+    private void invalidate(int shipperId) {
+        if (cache != null) {
+            cache.invalidate(shipperId);
+        }
+        reloadReferenceTable();
+    }
 
-            statement.executeUpdate();
+    private void reloadReferenceTable() {
+        ReferenceTable<Shipper> table = referenceTable;
+        if (table != null) {
+            table.invalidate();
+        }
+    }
 
-        } catch (SQLException e) {
-            System.out.println("There was an error deleting the shipper. Please try again.");
-            e.printStackTrace();
+    // what comes out of the cache or the reference table, so no two callers share one mutable shipper
+    private static Shipper copyOf(Shipper shipper) {
+        if (shipper == null) {
+            return null;
         }
+        return new Shipper(shipper.getShipperId(), shipper.getCompanyName(), shipper.getPhone());
     }
 
-}
\ No newline at end of file
+}
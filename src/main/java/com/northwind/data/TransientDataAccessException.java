@@ -0,0 +1,11 @@
+package com.northwind.data;
+
+// A failure that may not happen again: a dropped connection, a deadlock, a lock wait timeout, an exhausted pool.
+// JdbcRunner retries these itself on read operations; writes are handed back to the caller to decide.
+public class TransientDataAccessException extends DataAccessException {
+    private static final long serialVersionUID = 1L;
+
+    public TransientDataAccessException(String operation, String message, Throwable cause) {
+        super(operation, message, cause);
+    }
+}
@@ -0,0 +1,12 @@
+package com.northwind.data;
+
+// what happened to one row passed to a batched write (upsertAll(), updateAll(), adjustStockAll());
+// a batch that fails as a whole throws DataAccessException instead
+public enum WriteOutcome {
+    INSERTED,
+    UPDATED,
+    UNCHANGED,
+    NOT_FOUND,
+    // the row exists but a condition on it did not hold (Ex. stock would go below zero)
+    REJECTED
+}
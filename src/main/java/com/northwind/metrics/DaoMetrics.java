@@ -0,0 +1,90 @@
+package com.northwind.metrics;
+
+import org.apache.commons.dbcp2.BasicDataSource;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Registry of per-method DAO stats, each exposed as a JMX MBean the first time the method runs.
+// Recording looks the method up by name in a ConcurrentHashMap and bumps counters: no allocation on the hot path.
+public class DaoMetrics {
+    private static final DaoMetrics DEFAULT = new DaoMetrics(true);
+
+    private final boolean registerMBeans;
+    private final ConcurrentHashMap<String, MethodStats> methods = new ConcurrentHashMap<>();
+    private final Map<BasicDataSource, LatencyHistogram> borrowWaits = Collections.synchronizedMap(new IdentityHashMap<>());
+    private final LatencyHistogram unknownPoolWait = new LatencyHistogram();
+
+    public DaoMetrics(boolean registerMBeans) {
+        this.registerMBeans = registerMBeans;
+    }
+
+    // the registry every JdbcRunner uses unless it is given another one
+    public static DaoMetrics getDefault() {
+        return DEFAULT;
+    }
+
+    public void record(String operation, long nanos, boolean failed) {
+        MethodStats stats = methods.get(operation);
+        if (stats == null) {
+            stats = methods.computeIfAbsent(operation, this::newStats);
+        }
+        stats.record(nanos, failed);
+    }
+
+    public MethodStats get(String operation) {
+        return methods.get(operation);
+    }
+
+    public Collection<MethodStats> getAll() {
+        return methods.values();
+    }
+
+    // the histogram a runner records getConnection() waits into for this data source
+    public LatencyHistogram borrowWait(Object dataSource) {
+        if (dataSource instanceof BasicDataSource pool) {
+            return borrowWaits.computeIfAbsent(pool, this::newPool);
+        }
+        return unknownPoolWait;
+    }
+
+    private MethodStats newStats(String operation) {
+        MethodStats stats = new MethodStats(operation);
+        int dot = operation.indexOf('.');
+        String dao = dot < 0 ? "Jdbc" : operation.substring(0, dot);
+        String method = dot < 0 ? operation : operation.substring(dot + 1);
+        register("com.northwind:type=DaoMethod,dao=" + ObjectName.quote(dao) + ",method=" + ObjectName.quote(method), stats);
+        return stats;
+    }
+
+    private LatencyHistogram newPool(BasicDataSource pool) {
+        LatencyHistogram borrowWait = new LatencyHistogram();
+        String name = Integer.toHexString(System.identityHashCode(pool));
+        // the url tells a primary pool and its replica pools apart
+        String url = pool.getUrl() == null ? "" : ",url=" + ObjectName.quote(pool.getUrl());
+        register("com.northwind:type=ConnectionPool,name=" + name + url, new PoolStats(pool, borrowWait));
+        return borrowWait;
+    }
+
+    private void register(String name, Object mbean) {
+        if (!registerMBeans) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(mbean, new ObjectName(name));
+        } catch (InstanceAlreadyExistsException e) {
+            // another registry already exposes this name; keep recording locally
+        } catch (JMException e) {
+            System.out.println("Could not register MBean " + name + ". " + e.getMessage());
+        }
+    }
+}
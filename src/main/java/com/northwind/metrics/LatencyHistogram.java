@@ -0,0 +1,89 @@
+package com.northwind.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// Lock-free, allocation-free latency histogram.
+// Values keep their top 4 significant bits, so every bucket is within 12.5% of the true value,
+// and the whole range of a long fits in 512 counters.
+public class LatencyHistogram {
+    private static final int BUCKETS = 512;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Long::max, 0);
+
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketOf(value));
+        total.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    public long getCount() {
+        return total.sum();
+    }
+
+    public long getMaxNanos() {
+        return max.get();
+    }
+
+    public double getMeanNanos() {
+        long count = total.sum();
+        return count == 0 ? 0.0 : (double) sum.sum() / count;
+    }
+
+    // upper bound of the bucket holding the given percentile (0-100), in nanoseconds
+    public long percentileNanos(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(count * Math.min(100.0, Math.max(0.0, percentile)) / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= Math.max(1, rank)) {
+                return Math.min(upperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        total.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    // values below 8 get their own bucket; above that, 8 buckets per power of two
+    static int bucketOf(long value) {
+        if (value < 8) {
+            return (int) value;
+        }
+        int shift = 60 - Long.numberOfLeadingZeros(value);
+        int top = (int) (value >>> shift);
+        return shift * 8 + top;
+    }
+
+    static long upperBound(int bucket) {
+        if (bucket < 8) {
+            return bucket;
+        }
+        int shift = bucket / 8 - 1;
+        long top = bucket % 8 + 8;
+        return ((top + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,77 @@
+package com.northwind.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// call count, error count and latency histogram for one DAO method
+public class MethodStats implements MethodStatsMXBean {
+    private final String operation;
+    private final LongAdder errors = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    public MethodStats(String operation) {
+        this.operation = operation;
+    }
+
+    public void record(long nanos, boolean failed) {
+        latency.record(nanos);
+        if (failed) {
+            errors.increment();
+        }
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    @Override
+    public String getOperation() {
+        return operation;
+    }
+
+    @Override
+    public long getCallCount() {
+        return latency.getCount();
+    }
+
+    @Override
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    @Override
+    public double getMeanMicros() {
+        return latency.getMeanNanos() / 1_000.0;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return latency.percentileNanos(50) / 1_000.0;
+    }
+
+    @Override
+    public double getP99Micros() {
+        return latency.percentileNanos(99) / 1_000.0;
+    }
+
+    @Override
+    public double getP999Micros() {
+        return latency.percentileNanos(99.9) / 1_000.0;
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return latency.getMaxNanos() / 1_000.0;
+    }
+
+    @Override
+    public void reset() {
+        latency.reset();
+        errors.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s calls=%d errors=%d p50=%.1fus p99=%.1fus p999=%.1fus max=%.1fus",
+                operation, getCallCount(), getErrorCount(), getP50Micros(), getP99Micros(), getP999Micros(), getMaxMicros());
+    }
+}
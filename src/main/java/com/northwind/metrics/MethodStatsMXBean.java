@@ -0,0 +1,22 @@
+package com.northwind.metrics;
+
+// JMX view of one DAO method: com.northwind:type=DaoMethod,dao=ProductDao,method=find
+public interface MethodStatsMXBean {
+    String getOperation();
+
+    long getCallCount();
+
+    long getErrorCount();
+
+    double getMeanMicros();
+
+    double getP50Micros();
+
+    double getP99Micros();
+
+    double getP999Micros();
+
+    double getMaxMicros();
+
+    void reset();
+}
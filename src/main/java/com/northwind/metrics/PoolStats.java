@@ -0,0 +1,64 @@
+package com.northwind.metrics;
+
+import org.apache.commons.dbcp2.BasicDataSource;
+
+// live BasicDataSource sizes plus how long callers waited in getConnection()
+public class PoolStats implements PoolStatsMXBean {
+    private final BasicDataSource dataSource;
+    private final LatencyHistogram borrowWait;
+
+    public PoolStats(BasicDataSource dataSource, LatencyHistogram borrowWait) {
+        this.dataSource = dataSource;
+        this.borrowWait = borrowWait;
+    }
+
+    @Override
+    public int getNumActive() {
+        return dataSource.getNumActive();
+    }
+
+    @Override
+    public int getNumIdle() {
+        return dataSource.getNumIdle();
+    }
+
+    @Override
+    public int getMaxTotal() {
+        return dataSource.getMaxTotal();
+    }
+
+    @Override
+    public int getMinIdle() {
+        return dataSource.getMinIdle();
+    }
+
+    @Override
+    public int getMaxIdle() {
+        return dataSource.getMaxIdle();
+    }
+
+    @Override
+    public long getBorrowCount() {
+        return borrowWait.getCount();
+    }
+
+    @Override
+    public double getBorrowWaitP50Micros() {
+        return borrowWait.percentileNanos(50) / 1_000.0;
+    }
+
+    @Override
+    public double getBorrowWaitP99Micros() {
+        return borrowWait.percentileNanos(99) / 1_000.0;
+    }
+
+    @Override
+    public double getBorrowWaitP999Micros() {
+        return borrowWait.percentileNanos(99.9) / 1_000.0;
+    }
+
+    @Override
+    public double getBorrowWaitMaxMicros() {
+        return borrowWait.getMaxNanos() / 1_000.0;
+    }
+}
@@ -0,0 +1,24 @@
+package com.northwind.metrics;
+
+// JMX view of a connection pool: com.northwind:type=ConnectionPool,name=...
+public interface PoolStatsMXBean {
+    int getNumActive();
+
+    int getNumIdle();
+
+    int getMaxTotal();
+
+    int getMinIdle();
+
+    int getMaxIdle();
+
+    long getBorrowCount();
+
+    double getBorrowWaitP50Micros();
+
+    double getBorrowWaitP99Micros();
+
+    double getBorrowWaitP999Micros();
+
+    double getBorrowWaitMaxMicros();
+}
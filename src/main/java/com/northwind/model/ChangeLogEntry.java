@@ -0,0 +1,55 @@
+package com.northwind.model;
+
+import java.time.LocalDateTime;
+
+// one row of change_log: a trigger-recorded insert, update or delete of one row of another table
+public class ChangeLogEntry {
+
+    // field members
+    private final long changeId;
+    private final String tableName;
+    private final String rowKey;
+    private final char operation; // 'I', 'U' or 'D'
+    private final LocalDateTime changedAt;
+
+    //constructor
+    public ChangeLogEntry(long changeId, String tableName, String rowKey, char operation, LocalDateTime changedAt) {
+        this.changeId = changeId;
+        this.tableName = tableName;
+        this.rowKey = rowKey;
+        this.operation = operation;
+        this.changedAt = changedAt;
+    }
+
+    //getters
+    public long getChangeId() {
+        return changeId;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public String getRowKey() {
+        return rowKey;
+    }
+
+    public char getOperation() {
+        return operation;
+    }
+
+    public LocalDateTime getChangedAt() {
+        return changedAt;
+    }
+
+    @Override
+    public String toString() {
+        return "ChangeLogEntry{" +
+                "changeId=" + changeId +
+                ", tableName='" + tableName + '\'' +
+                ", rowKey='" + rowKey + '\'' +
+                ", operation=" + operation +
+                ", changedAt=" + changedAt +
+                '}';
+    }
+}
@@ -1,6 +1,19 @@
 package com.northwind.model;
 
 public class Customer {
+    // one bit per non-key column, in table column order; setters mark their column dirty
+    public static final int COMPANY_NAME = 1 << 0;
+    public static final int CONTACT_NAME = 1 << 1;
+    public static final int CONTACT_TITLE = 1 << 2;
+    public static final int ADDRESS = 1 << 3;
+    public static final int CITY = 1 << 4;
+    public static final int REGION = 1 << 5;
+    public static final int POSTAL_CODE = 1 << 6;
+    public static final int COUNTRY = 1 << 7;
+    public static final int PHONE = 1 << 8;
+    public static final int FAX = 1 << 9;
+    public static final int ALL_COLUMNS = (1 << 10) - 1;
+
     // field members
     private String customerId;
     private String companyName;
@@ -13,6 +26,7 @@ public class Customer {
     private String country;
     private String phone;
     private String fax;
+    private int dirtyColumns;
     // Constructor
     public Customer(String customerId, String companyName, String contactName,
                     String contactTitle, String address, String city, String region,
@@ -28,6 +42,7 @@ public class Customer {
         this.country = country;
         this.phone = phone;
         this.fax = fax;
+        this.dirtyColumns = ALL_COLUMNS;
     }
     //getter and setters
     public String getCustomerId() {
@@ -44,6 +59,7 @@ public class Customer {
 
     public void setCompanyName(String companyName) {
         this.companyName = companyName;
+        dirtyColumns |= COMPANY_NAME;
     }
 
     public String getContactName() {
@@ -52,6 +68,7 @@ public class Customer {
 
     public void setContactName(String contactName) {
         this.contactName = contactName;
+        dirtyColumns |= CONTACT_NAME;
     }
 
     public String getContactTitle() {
@@ -60,6 +77,7 @@ public class Customer {
 
     public void setContactTitle(String contactTitle) {
         this.contactTitle = contactTitle;
+        dirtyColumns |= CONTACT_TITLE;
     }
 
     public String getAddress() {
@@ -68,6 +86,7 @@ public class Customer {
 
     public void setAddress(String address) {
         this.address = address;
+        dirtyColumns |= ADDRESS;
     }
 
     public String getCity() {
@@ -76,6 +95,7 @@ public class Customer {
 
     public void setCity(String city) {
         this.city = city;
+        dirtyColumns |= CITY;
     }
 
     public String getRegion() {
@@ -84,6 +104,7 @@ public class Customer {
 
     public void setRegion(String region) {
         this.region = region;
+        dirtyColumns |= REGION;
     }
 
     public String getPostalCode() {
@@ -92,6 +113,7 @@ public class Customer {
 
     public void setPostalCode(String postalCode) {
         this.postalCode = postalCode;
+        dirtyColumns |= POSTAL_CODE;
     }
 
     public String getCountry() {
@@ -100,6 +122,7 @@ public class Customer {
 
     public void setCountry(String country) {
         this.country = country;
+        dirtyColumns |= COUNTRY;
     }
 
     public String getPhone() {
@@ -108,6 +131,7 @@ public class Customer {
 
     public void setPhone(String phone) {
         this.phone = phone;
+        dirtyColumns |= PHONE;
     }
 
     public String getFax() {
@@ -116,6 +140,21 @@ public class Customer {
 
     public void setFax(String fax) {
         this.fax = fax;
+        dirtyColumns |= FAX;
+    }
+
+    // columns whose setters were called since the customer was loaded or last saved
+    public int getDirtyColumns() {
+        return dirtyColumns;
+    }
+
+    public boolean isDirty() {
+        return dirtyColumns != 0;
+    }
+
+    // called once the customer matches the database row (after loading or saving)
+    public void markClean() {
+        dirtyColumns = 0;
     }
 
     //toString
@@ -1,14 +1,18 @@
 package com.northwind.model;
 
+import java.time.LocalDateTime;
+import java.util.List;
+
 public class Order {
 
     // field
     private int orderId;
     private String customerId;
     private int employeeId;
-    private String orderDate; // format : "YYYY-MM-DD HH:MM:SS"
-    private String requiredDate;
-    private String shippedDate;
+    // wall-clock times as stored in the DATETIME columns; null when the column is NULL
+    private LocalDateTime orderDate;
+    private LocalDateTime requiredDate;
+    private LocalDateTime shippedDate;
     private int shipVia;
     private double freight;
     private String shipName;
@@ -18,13 +22,17 @@ public class Order {
     private String shipPostalCode;
     private String shipCountry;
 
+    // only filled in by OrderDao's detail loading methods; null means "not loaded"
+    private Shipper shipper;
+    private List<OrderDetail> details;
+
     //constructor
     public Order () {
 
     }
 
-    public Order(int orderId, String customerId, int employeeId, String orderDate,
-                 String requiredDate, String shippedDate, int shipVia, double freight,
+    public Order(int orderId, String customerId, int employeeId, LocalDateTime orderDate,
+                 LocalDateTime requiredDate, LocalDateTime shippedDate, int shipVia, double freight,
                  String shipName, String shipAddress, String shipCity, String shipRegion,
                  String shipPostalCode, String shipCountry) {
         this.orderId = orderId;
@@ -69,27 +77,27 @@ public class Order {
         this.employeeId = employeeId;
     }
 
-    public String getOrderDate() {
+    public LocalDateTime getOrderDate() {
         return orderDate;
     }
 
-    public void setOrderDate(String orderDate) {
+    public void setOrderDate(LocalDateTime orderDate) {
         this.orderDate = orderDate;
     }
 
-    public String getRequiredDate() {
+    public LocalDateTime getRequiredDate() {
         return requiredDate;
     }
 
-    public void setRequiredDate(String requiredDate) {
+    public void setRequiredDate(LocalDateTime requiredDate) {
         this.requiredDate = requiredDate;
     }
 
-    public String getShippedDate() {
+    public LocalDateTime getShippedDate() {
         return shippedDate;
     }
 
-    public void setShippedDate(String shippedDate) {
+    public void setShippedDate(LocalDateTime shippedDate) {
         this.shippedDate = shippedDate;
     }
 
@@ -157,6 +165,22 @@ public class Order {
         this.shipCountry = shipCountry;
     }
 
+    public Shipper getShipper() {
+        return shipper;
+    }
+
+    public void setShipper(Shipper shipper) {
+        this.shipper = shipper;
+    }
+
+    public List<OrderDetail> getDetails() {
+        return details;
+    }
+
+    public void setDetails(List<OrderDetail> details) {
+        this.details = details;
+    }
+
     @Override
     public String toString() {
         return "\nOrder:\n" +
@@ -174,6 +198,7 @@ public class Order {
                 ", shipRegion='" + shipRegion + '\'' +
                 ", shipPostalCode='" + shipPostalCode + '\'' +
                 ", shipCountry='" + shipCountry + '\'' +
+                (details == null ? "" : ", details=" + details.size()) +
                 '}';
     }
 }
@@ -0,0 +1,80 @@
+package com.northwind.model;
+
+public class OrderDetail {
+
+    // field members
+    private int orderId;
+    private int productId;
+    private double unitPrice;
+    private int quantity;
+    private double discount;
+
+    //constructor
+    public OrderDetail() {
+
+    }
+
+    public OrderDetail(int orderId, int productId, double unitPrice, int quantity, double discount) {
+        this.orderId = orderId;
+        this.productId = productId;
+        this.unitPrice = unitPrice;
+        this.quantity = quantity;
+        this.discount = discount;
+    }
+
+    //getters and setters
+    public int getOrderId() {
+        return orderId;
+    }
+
+    public void setOrderId(int orderId) {
+        this.orderId = orderId;
+    }
+
+    public int getProductId() {
+        return productId;
+    }
+
+    public void setProductId(int productId) {
+        this.productId = productId;
+    }
+
+    public double getUnitPrice() {
+        return unitPrice;
+    }
+
+    public void setUnitPrice(double unitPrice) {
+        this.unitPrice = unitPrice;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+
+    public double getDiscount() {
+        return discount;
+    }
+
+    public void setDiscount(double discount) {
+        this.discount = discount;
+    }
+
+    // line total after discount
+    public double getLineTotal() {
+        return unitPrice * quantity * (1 - discount);
+    }
+
+    @Override
+    public String toString() {
+        return "\nOrderDetail:\n" +
+                "orderId=" + orderId +
+                ", productId=" + productId +
+                ", unitPrice=" + unitPrice +
+                ", quantity=" + quantity +
+                ", discount=" + discount;
+    }
+}
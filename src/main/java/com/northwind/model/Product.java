@@ -2,6 +2,18 @@ package com.northwind.model;
 
 public class Product {
 
+    // one bit per non-key column, in table column order; setters mark their column dirty
+    public static final int PRODUCT_NAME = 1 << 0;
+    public static final int SUPPLIER_ID = 1 << 1;
+    public static final int CATEGORY_ID = 1 << 2;
+    public static final int QUANTITY_PER_UNIT = 1 << 3;
+    public static final int UNIT_PRICE = 1 << 4;
+    public static final int UNITS_IN_STOCK = 1 << 5;
+    public static final int UNITS_ON_ORDER = 1 << 6;
+    public static final int REORDER_LEVEL = 1 << 7;
+    public static final int DISCONTINUED = 1 << 8;
+    public static final int ALL_COLUMNS = (1 << 9) - 1;
+
     //field members
     private int productId;
     private String productName;
@@ -13,6 +25,7 @@ public class Product {
     private int unitsOnOrder;
     private int reorderLevel;
     private boolean discontinued;
+    private int dirtyColumns;
 
     //constructor
     public Product() {
@@ -30,6 +43,7 @@ public class Product {
         this.unitsOnOrder = unitsOnOrder;
         this.reorderLevel = reorderLevel;
         this.discontinued = discontinued;
+        this.dirtyColumns = ALL_COLUMNS;
     }
 
     //getters and setters
@@ -47,6 +61,7 @@ public class Product {
 
     public void setProductName(String productName) {
         this.productName = productName;
+        dirtyColumns |= PRODUCT_NAME;
     }
 
     public int getSupplierId() {
@@ -55,6 +70,7 @@ public class Product {
 
     public void setSupplierId(int supplierId) {
         this.supplierId = supplierId;
+        dirtyColumns |= SUPPLIER_ID;
     }
 
     public int getCategoryId() {
@@ -63,6 +79,7 @@ public class Product {
 
     public void setCategoryId(int categoryId) {
         this.categoryId = categoryId;
+        dirtyColumns |= CATEGORY_ID;
     }
 
     public String getQuantityPerUnit() {
@@ -71,6 +88,7 @@ public class Product {
 
     public void setQuantityPerUnit(String quantityPerUnit) {
         this.quantityPerUnit = quantityPerUnit;
+        dirtyColumns |= QUANTITY_PER_UNIT;
     }
 
     public double getUnitPrice() {
@@ -79,6 +97,7 @@ public class Product {
 
     public void setUnitPrice(double unitPrice) {
         this.unitPrice = unitPrice;
+        dirtyColumns |= UNIT_PRICE;
     }
 
     public int getUnitsInStock() {
@@ -87,6 +106,7 @@ public class Product {
 
     public void setUnitsInStock(int unitsInStock) {
         this.unitsInStock = unitsInStock;
+        dirtyColumns |= UNITS_IN_STOCK;
     }
 
     public int getUnitsOnOrder() {
@@ -95,6 +115,7 @@ public class Product {
 
     public void setUnitsOnOrder(int unitsOnOrder) {
         this.unitsOnOrder = unitsOnOrder;
+        dirtyColumns |= UNITS_ON_ORDER;
     }
 
     public int getReorderLevel() {
@@ -103,6 +124,7 @@ public class Product {
 
     public void setReorderLevel(int reorderLevel) {
         this.reorderLevel = reorderLevel;
+        dirtyColumns |= REORDER_LEVEL;
     }
 
     public boolean isDiscontinued() {
@@ -111,6 +133,21 @@ public class Product {
 
     public void setDiscontinued(boolean discontinued) {
         this.discontinued = discontinued;
+        dirtyColumns |= DISCONTINUED;
+    }
+
+    // columns whose setters were called since the product was loaded or last saved
+    public int getDirtyColumns() {
+        return dirtyColumns;
+    }
+
+    public boolean isDirty() {
+        return dirtyColumns != 0;
+    }
+
+    // called once the product matches the database row (after loading or saving)
+    public void markClean() {
+        dirtyColumns = 0;
     }
 
     //toString to display product data
@@ -0,0 +1,361 @@
+package com.northwind.search;
+
+import com.northwind.model.Customer;
+
+import java.text.Normalizer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+// In-memory type-ahead index over CompanyName, ContactName, City and Country.
+// Distinct words sit in a sorted map for prefix lookups ("alf" finds "Alfreds"), and their 3-letter grams
+// point back at them for matches inside a word ("katessen" finds "Delikatessen").
+// A query is first matched against the distinct words (each with a small int id), then their postings
+// (sorted slot numbers) give the customers; ranking only reads arrays indexed by those ids.
+// Every query word must match somewhere; results are ranked by how well and in which field they matched.
+// Reads share a lock, so searches run in parallel; put/remove are short exclusive updates.
+public class CustomerSearchIndex {
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    // a match in the company name counts more than one in the country
+    private static final int[] FIELD_WEIGHTS = {4, 3, 2, 1};
+
+    private static final int EXACT = 3;
+    private static final int PREFIX = 2;
+    private static final int INFIX = 1;
+    private static final int GRAM = 3;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> slots = new HashMap<>();
+    private final ArrayDeque<Integer> freeSlots = new ArrayDeque<>();
+    private Document[] documents = new Document[64];
+    private int slotCount;
+
+    private final TreeMap<String, Posting> words = new TreeMap<>();
+    private final ArrayDeque<Integer> freeWordIds = new ArrayDeque<>();
+    private int wordIdCount;
+    private final Map<String, Set<String>> grams = new HashMap<>();
+
+    public static CustomerSearchIndex of(Iterable<Customer> customers) {
+        CustomerSearchIndex index = new CustomerSearchIndex();
+        index.putAll(customers);
+        return index;
+    }
+
+    // adds the customer, or replaces what was indexed for its id
+    public void put(Customer customer) {
+        Document document = new Document(copyOf(customer));
+        lock.writeLock().lock();
+        try {
+            Integer slot = slots.get(customer.getCustomerId());
+            if (slot != null) {
+                unlink(slot);
+            } else {
+                slot = freeSlots.isEmpty() ? slotCount++ : freeSlots.pop();
+                if (slot == documents.length) {
+                    documents = Arrays.copyOf(documents, slot * 2);
+                }
+                slots.put(customer.getCustomerId(), slot);
+            }
+            documents[slot] = document;
+            link(slot);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void putAll(Iterable<Customer> customers) {
+        for (Customer customer : customers) {
+            put(customer);
+        }
+    }
+
+    public void remove(String customerId) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slots.remove(customerId);
+            if (slot != null) {
+                unlink(slot);
+                documents[slot] = null;
+                freeSlots.push(slot);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            slots.clear();
+            freeSlots.clear();
+            Arrays.fill(documents, null);
+            slotCount = 0;
+            words.clear();
+            freeWordIds.clear();
+            wordIdCount = 0;
+            grams.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slots.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // best matches first; every word of the query has to match a word in one of the indexed fields,
+    // either from its start or (for words of 3+ letters) anywhere inside it.
+    // The customers returned are copies: changing one does not change what the index holds
+    public List<Customer> search(String query, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        String[] terms = tokenize(query);
+        if (terms.length == 0) {
+            return new ArrayList<>();
+        }
+
+        lock.readLock().lock();
+        try {
+            List<byte[]> termMatches = new ArrayList<>(terms.length);
+            BitSet matches = null;
+            for (String term : terms) {
+                byte[] matched = new byte[wordIdCount];
+                BitSet slotsForTerm = new BitSet(slotCount);
+                for (Posting posting : matchWords(term)) {
+                    matched[posting.id] = (byte) (posting.word.length() == term.length() ? EXACT
+                            : posting.word.startsWith(term) ? PREFIX
+                            : INFIX);
+                    posting.addTo(slotsForTerm);
+                }
+
+                if (matches == null) {
+                    matches = slotsForTerm;
+                } else {
+                    matches.and(slotsForTerm);
+                }
+                if (matches.isEmpty()) {
+                    return new ArrayList<>();
+                }
+                termMatches.add(matched);
+            }
+            return top(matches, termMatches, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // every indexed word starting with the term, plus (for terms of 3+ letters) every word containing it
+    private List<Posting> matchWords(String term) {
+        List<Posting> matched = new ArrayList<>(words.subMap(term, true, term + Character.MAX_VALUE, true).values());
+
+        if (term.length() >= GRAM) {
+            // the rarest gram's words are the only ones that can contain the whole term
+            Set<String> fewest = null;
+            for (int i = 0; i + GRAM <= term.length(); i++) {
+                Set<String> withGram = grams.get(term.substring(i, i + GRAM));
+                if (withGram == null) {
+                    return matched;
+                }
+                if (fewest == null || withGram.size() < fewest.size()) {
+                    fewest = withGram;
+                }
+            }
+            for (String word : fewest) {
+                if (!word.startsWith(term) && word.contains(term)) {
+                    matched.add(words.get(word));
+                }
+            }
+        }
+        return matched;
+    }
+
+    private List<Customer> top(BitSet matches, List<byte[]> termMatches, int limit) {
+        // min-heap of the best limit hits so far, as (score << 32 | reversed slot); ties go to the lower slot
+        PriorityQueue<Long> best = new PriorityQueue<>(limit + 1);
+        for (int slot = matches.nextSetBit(0); slot >= 0; slot = matches.nextSetBit(slot + 1)) {
+            Document document = documents[slot];
+            int score = 0;
+            for (byte[] matched : termMatches) {
+                score += document.score(matched);
+            }
+
+            long hit = ((long) score << 32) | (Integer.MAX_VALUE - slot);
+            if (best.size() < limit) {
+                best.add(hit);
+            } else if (hit > best.peek()) {
+                best.poll();
+                best.add(hit);
+            }
+        }
+
+        List<Customer> results = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            results.add(copyOf(documents[Integer.MAX_VALUE - (int) (long) best.poll()].customer));
+        }
+        Collections.reverse(results);
+        return results;
+    }
+
+    // adds the slot to the posting of every word in its document, and records the words' ids in the document
+    private void link(int slot) {
+        Document document = documents[slot];
+        for (int f = 0; f < document.fields.length; f++) {
+            String[] field = document.fields[f];
+            for (int w = 0; w < field.length; w++) {
+                Posting posting = words.get(field[w]);
+                if (posting == null) {
+                    posting = new Posting(field[w], freeWordIds.isEmpty() ? wordIdCount++ : freeWordIds.pop());
+                    words.put(posting.word, posting);
+                    for (String gram : gramsOf(posting.word)) {
+                        grams.computeIfAbsent(gram, g -> new HashSet<>()).add(posting.word);
+                    }
+                }
+                posting.add(slot);
+                document.wordIds[f][w] = posting.id;
+            }
+        }
+    }
+
+    private void unlink(int slot) {
+        for (String[] field : documents[slot].fields) {
+            for (String word : field) {
+                Posting posting = words.get(word);
+                if (posting != null && posting.remove(slot) && posting.size == 0) {
+                    words.remove(word);
+                    freeWordIds.push(posting.id);
+                    for (String gram : gramsOf(word)) {
+                        Set<String> withGram = grams.get(gram);
+                        if (withGram != null && withGram.remove(word) && withGram.isEmpty()) {
+                            grams.remove(gram);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // lower case, accents stripped, split on anything that is not a letter or digit
+    static String[] tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return new String[0];
+        }
+        String folded = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        String cleaned = NON_WORD.matcher(folded.toLowerCase()).replaceAll(" ").trim();
+        return cleaned.isEmpty() ? new String[0] : cleaned.split(" ");
+    }
+
+    private static Set<String> gramsOf(String word) {
+        Set<String> result = new HashSet<>();
+        for (int i = 0; i + GRAM <= word.length(); i++) {
+            result.add(word.substring(i, i + GRAM));
+        }
+        return result;
+    }
+
+    // the index keeps its own copy so later changes to the caller's object cannot go unnoticed,
+    // and hands out copies so a caller cannot change the indexed one
+    private static Customer copyOf(Customer customer) {
+        Customer copy = new Customer(customer.getCustomerId(), customer.getCompanyName(), customer.getContactName(),
+                customer.getContactTitle(), customer.getAddress(), customer.getCity(), customer.getRegion(),
+                customer.getPostalCode(), customer.getCountry(), customer.getPhone(), customer.getFax());
+        copy.markClean();
+        return copy;
+    }
+
+    // sorted slot numbers of the customers containing one word or gram
+    private static final class Posting {
+        final String word;
+        final int id;
+        int[] slots = new int[4];
+        int size;
+
+        Posting(String word, int id) {
+            this.word = word;
+            this.id = id;
+        }
+
+        void add(int slot) {
+            int at = Arrays.binarySearch(slots, 0, size, slot);
+            if (at >= 0) {
+                return;
+            }
+            at = -at - 1;
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            System.arraycopy(slots, at, slots, at + 1, size - at);
+            slots[at] = slot;
+            size++;
+        }
+
+        boolean remove(int slot) {
+            int at = Arrays.binarySearch(slots, 0, size, slot);
+            if (at < 0) {
+                return false;
+            }
+            System.arraycopy(slots, at + 1, slots, at, size - at - 1);
+            size--;
+            return true;
+        }
+
+        void addTo(BitSet bits) {
+            for (int i = 0; i < size; i++) {
+                bits.set(slots[i]);
+            }
+        }
+    }
+
+    private static final class Document {
+        final Customer customer;
+        final String[][] fields;
+        final int[][] wordIds;
+
+        Document(Customer customer) {
+            this.customer = customer;
+            this.fields = new String[][]{
+                    tokenize(customer.getCompanyName()),
+                    tokenize(customer.getContactName()),
+                    tokenize(customer.getCity()),
+                    tokenize(customer.getCountry())};
+            this.wordIds = new int[fields.length][];
+            for (int f = 0; f < fields.length; f++) {
+                wordIds[f] = new int[fields[f].length];
+            }
+        }
+
+        // best match per field, weighted by field; a hit on the field's first word counts once more
+        int score(byte[] matched) {
+            int total = 0;
+            for (int f = 0; f < wordIds.length; f++) {
+                int best = 0;
+                for (int w = 0; w < wordIds[f].length; w++) {
+                    int match = matched[wordIds[f][w]];
+                    if (match > 0) {
+                        best = Math.max(best, w == 0 ? match + 1 : match);
+                    }
+                }
+                total += best * FIELD_WEIGHTS[f];
+            }
+            return total;
+        }
+    }
+}
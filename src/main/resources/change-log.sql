@@ -0,0 +1,42 @@
+-- Change log for the change feed (com.northwind.changefeed.ChangeFeed), MySQL.
+-- Triggers append one row per inserted, updated or deleted product or customer, in the same transaction
+-- as the write, so nothing can change a row without the feed hearing about it.
+-- Run once against the northwind database: mysql northwind < change-log.sql
+
+CREATE TABLE IF NOT EXISTS change_log (
+    ChangeID   BIGINT      NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    TableName  VARCHAR(32) NOT NULL,
+    RowKey     VARCHAR(16) NOT NULL,
+    Operation  CHAR(1)     NOT NULL, -- I = inserted, U = updated, D = deleted
+    ChangedAt  TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3)
+);
+
+DROP TRIGGER IF EXISTS products_log_insert;
+DROP TRIGGER IF EXISTS products_log_update;
+DROP TRIGGER IF EXISTS products_log_delete;
+DROP TRIGGER IF EXISTS customers_log_insert;
+DROP TRIGGER IF EXISTS customers_log_update;
+DROP TRIGGER IF EXISTS customers_log_delete;
+
+CREATE TRIGGER products_log_insert AFTER INSERT ON products FOR EACH ROW
+    INSERT INTO change_log (TableName, RowKey, Operation) VALUES ('products', NEW.ProductID, 'I');
+
+-- an UPDATE that sets every column to its current value still logs a row; the feed just publishes the same state again
+CREATE TRIGGER products_log_update AFTER UPDATE ON products FOR EACH ROW
+    INSERT INTO change_log (TableName, RowKey, Operation) VALUES ('products', NEW.ProductID, 'U');
+
+CREATE TRIGGER products_log_delete AFTER DELETE ON products FOR EACH ROW
+    INSERT INTO change_log (TableName, RowKey, Operation) VALUES ('products', OLD.ProductID, 'D');
+
+CREATE TRIGGER customers_log_insert AFTER INSERT ON customers FOR EACH ROW
+    INSERT INTO change_log (TableName, RowKey, Operation) VALUES ('customers', NEW.CustomerID, 'I');
+
+-- CustomerID is the key the application writes; if an update changes it, log the old key as gone and the new one as new
+CREATE TRIGGER customers_log_update AFTER UPDATE ON customers FOR EACH ROW
+    INSERT INTO change_log (TableName, RowKey, Operation)
+    SELECT 'customers', OLD.CustomerID, 'D' FROM DUAL WHERE OLD.CustomerID <> NEW.CustomerID
+    UNION ALL
+    SELECT 'customers', NEW.CustomerID, IF(OLD.CustomerID <> NEW.CustomerID, 'I', 'U') FROM DUAL;
+
+CREATE TRIGGER customers_log_delete AFTER DELETE ON customers FOR EACH ROW
+    INSERT INTO change_log (TableName, RowKey, Operation) VALUES ('customers', OLD.CustomerID, 'D');
@@ -0,0 +1,176 @@
+package com.northwind.analytics;
+
+import com.northwind.model.Order;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Every filter chain checked against the same filters as a plain loop over the List<Order>
+class OrderSelectionTest {
+    // around the 64-row word size, and bigger than the builder's first 1024 rows
+    private static final int[] SIZES = {0, 1, 63, 64, 65, 127, 128, 130, 1000, 2051};
+    private static final LocalDateTime BASE = LocalDateTime.of(1996, 7, 4, 0, 0);
+    private static final String[] CUSTOMERS = {"ALFKI", "BERGS", "VINET", null};
+    private static final String[] CITIES = {"Berlin", "Reims", "Lyon", null};
+    private static final String[] COUNTRIES = {"Germany", "France", null};
+
+    // orders with NULL dates (some before 1970) and strings, and freight in quarters so sums are exact doubles
+    private static List<Order> orders(int size, long seed) {
+        Random random = new Random(seed);
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            Order order = new Order();
+            order.setOrderId(10248 + i);
+            order.setCustomerId(pick(random, CUSTOMERS));
+            order.setEmployeeId(1 + random.nextInt(9));
+            LocalDateTime ordered = random.nextInt(10) == 0 ? BASE.minusYears(40) : BASE.plusDays(random.nextInt(700));
+            order.setOrderDate(random.nextInt(8) == 0 ? null : ordered);
+            order.setRequiredDate(random.nextInt(8) == 0 ? null : ordered.plusDays(28));
+            order.setShippedDate(random.nextInt(5) == 0 ? null : ordered.plusDays(random.nextInt(40)));
+            order.setShipVia(1 + random.nextInt(3));
+            order.setFreight(random.nextInt(4000) / 4.0);
+            order.setShipCity(pick(random, CITIES));
+            order.setShipCountry(pick(random, COUNTRIES));
+            orders.add(order);
+        }
+        return orders;
+    }
+
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    private static boolean between(LocalDateTime date, LocalDateTime from, LocalDateTime to) {
+        return date != null && (from == null || !date.isBefore(from)) && (to == null || date.isBefore(to));
+    }
+
+    private static int[] ids(List<Order> orders, Predicate<Order> filter) {
+        return orders.stream().filter(filter).mapToInt(Order::getOrderId).toArray();
+    }
+
+    // runs chain on a fresh selection and compares ids, count and freight with the loop's answer
+    private static void check(List<Order> orders, String chain, Function<OrderSelection, OrderSelection> selection,
+                              Predicate<Order> filter) {
+        OrderSelection selected = selection.apply(OrderColumnStore.of(orders).select());
+        String message = chain + " over " + orders.size() + " orders";
+
+        int[] expected = ids(orders, filter);
+        assertArrayEquals(expected, selected.orderIds(), message);
+        assertEquals(expected.length, selected.count(), message);
+        double sum = orders.stream().filter(filter).mapToDouble(Order::getFreight).sum();
+        assertEquals(sum, selected.sumFreight(), message);
+        double max = orders.stream().filter(filter).mapToDouble(Order::getFreight).max().orElse(Double.NaN);
+        assertEquals(max, selected.maxFreight(), message);
+    }
+
+    @Test
+    void singleFiltersMatchALoop() {
+        for (int size : SIZES) {
+            List<Order> orders = orders(size, size);
+            LocalDateTime from = BASE.plusDays(100);
+            LocalDateTime to = BASE.plusDays(400);
+
+            check(orders, "everything", s -> s, o -> true);
+            check(orders, "shipVia(2)", s -> s.shipVia(2), o -> o.getShipVia() == 2);
+            check(orders, "employee(5)", s -> s.employee(5), o -> o.getEmployeeId() == 5);
+            check(orders, "customer(VINET)", s -> s.customer("VINET"), o -> "VINET".equals(o.getCustomerId()));
+            check(orders, "customer(null)", s -> s.customer(null), o -> o.getCustomerId() == null);
+            check(orders, "shipCity(Reims)", s -> s.shipCity("Reims"), o -> "Reims".equals(o.getShipCity()));
+            check(orders, "shipCountry(null)", s -> s.shipCountry(null), o -> o.getShipCountry() == null);
+            check(orders, "freightAbove(500)", s -> s.freightAbove(500), o -> o.getFreight() > 500);
+            check(orders, "freightBelow(500)", s -> s.freightBelow(500), o -> o.getFreight() < 500);
+            check(orders, "freightAbove(-1)", s -> s.freightAbove(-1), o -> true);
+            check(orders, "orderDateBetween", s -> s.orderDateBetween(from, to),
+                    o -> between(o.getOrderDate(), from, to));
+            check(orders, "orderDateBetween(null, null)", s -> s.orderDateBetween(null, null),
+                    o -> o.getOrderDate() != null);
+            check(orders, "orderDateBetween(null, 1970)", s -> s.orderDateBetween(null, LocalDateTime.of(1970, 1, 1, 0, 0)),
+                    o -> between(o.getOrderDate(), null, LocalDateTime.of(1970, 1, 1, 0, 0)));
+            check(orders, "shippedBetween(from, null)", s -> s.shippedBetween(from, null),
+                    o -> between(o.getShippedDate(), from, null));
+            check(orders, "notShipped", OrderSelection::notShipped, o -> o.getShippedDate() == null);
+            check(orders, "shippedLate", OrderSelection::shippedLate,
+                    o -> o.getShippedDate() != null && o.getRequiredDate() != null
+                            && o.getShippedDate().isAfter(o.getRequiredDate()));
+        }
+    }
+
+    @Test
+    void stringsNoOrderHasMatchNothing() {
+        for (int size : SIZES) {
+            List<Order> orders = orders(size, 31 * size);
+
+            check(orders, "customer(NOBODY)", s -> s.customer("NOBODY"), o -> false);
+            check(orders, "shipCity(Paris)", s -> s.shipCity("Paris"), o -> false);
+            check(orders, "shipVia(1).shipCountry(Spain)", s -> s.shipVia(1).shipCountry("Spain"), o -> false);
+        }
+    }
+
+    @Test
+    void chainedFiltersMatchALoop() {
+        for (int size : SIZES) {
+            List<Order> orders = orders(size, 7 * size + 1);
+            LocalDateTime from = BASE.plusDays(30);
+            LocalDateTime to = BASE.plusDays(500);
+
+            check(orders, "shipVia(2).freightAbove(100).orderDateBetween",
+                    s -> s.shipVia(2).freightAbove(100).orderDateBetween(from, to),
+                    o -> o.getShipVia() == 2 && o.getFreight() > 100 && between(o.getOrderDate(), from, to));
+            check(orders, "shipCountry(Germany).shippedLate.freightBelow(900)",
+                    s -> s.shipCountry("Germany").shippedLate().freightBelow(900),
+                    o -> "Germany".equals(o.getShipCountry()) && o.getShippedDate() != null
+                            && o.getRequiredDate() != null && o.getShippedDate().isAfter(o.getRequiredDate())
+                            && o.getFreight() < 900);
+            check(orders, "customer(ALFKI) or notShipped",
+                    s -> s.copy().customer("ALFKI").or(s.notShipped()),
+                    o -> "ALFKI".equals(o.getCustomerId()) || o.getShippedDate() == null);
+            check(orders, "freightAbove(200) and shipCity(Lyon)",
+                    s -> s.copy().freightAbove(200).and(s.shipCity("Lyon")),
+                    o -> o.getFreight() > 200 && "Lyon".equals(o.getShipCity()));
+        }
+    }
+
+    @Test
+    void groupingsMatchALoop() {
+        for (int size : SIZES) {
+            List<Order> orders = orders(size, 3 * size + 2);
+            OrderSelection selected = OrderColumnStore.of(orders).select().freightAbove(250);
+
+            Map<String, Integer> byCountry = new HashMap<>();
+            Map<Integer, Double> byShipper = new HashMap<>();
+            for (Order order : orders) {
+                if (order.getFreight() > 250) {
+                    byCountry.merge(order.getShipCountry(), 1, Integer::sum);
+                    byShipper.merge(order.getShipVia(), order.getFreight(), Double::sum);
+                }
+            }
+
+            assertEquals(byCountry, selected.countByShipCountry(), size + " orders");
+            assertEquals(byShipper, selected.freightByShipVia(), size + " orders");
+        }
+    }
+
+    @Test
+    void rowsReadBackThroughTheStore() {
+        List<Order> orders = orders(130, 5);
+        OrderColumnStore store = OrderColumnStore.of(orders);
+
+        for (int row : store.select().shipVia(3).rows()) {
+            Order order = orders.get(row);
+            assertEquals(order.getOrderId(), store.getOrderId(row));
+            assertEquals(3, store.getShipVia(row));
+            assertEquals(order.getShipCity(), store.getShipCity(row));
+            assertEquals(order.getShippedDate(), store.getShippedDate(row));
+            assertEquals(order.getFreight(), store.getFreight(row));
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.northwind.bulk;
+
+import com.northwind.data.JdbcRunner;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Exports and imports on in-memory H2 databases in MySQL mode, in both formats
+class BulkRoundTripTest {
+    private static final int ROWS = 40;
+    // Note last, so a corrupt string length in the last row reaches the end of the file
+    private static final TableSpec ITEMS = new TableSpec.Builder("items", "ItemID")
+            .column("ItemID", ColumnType.INT)
+            .column("Name", ColumnType.STRING)
+            .column("Qty", ColumnType.INT)
+            .column("Price", ColumnType.DOUBLE)
+            .column("Active", ColumnType.BOOLEAN)
+            .column("Added", ColumnType.TIMESTAMP)
+            .column("Note", ColumnType.STRING)
+            .build();
+
+    private final List<JdbcDataSource> databases = new ArrayList<>();
+
+    @TempDir
+    Path directory;
+
+    @AfterEach
+    void dropDatabases() throws SQLException {
+        for (JdbcDataSource database : databases) {
+            execute(database, "DROP ALL OBJECTS");
+        }
+    }
+
+    // a new database with an empty items table
+    private JdbcDataSource database() throws SQLException {
+        JdbcDataSource database = new JdbcDataSource();
+        database.setURL("jdbc:h2:mem:bulk-" + UUID.randomUUID() + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        databases.add(database);
+        execute(database, """
+                CREATE TABLE items (
+                    ItemID INT PRIMARY KEY,
+                    Name   VARCHAR(40),
+                    Qty    INT,
+                    Price  DOUBLE,
+                    Active BOOLEAN,
+                    Added  TIMESTAMP,
+                    Note   VARCHAR(80)
+                )""");
+        return database;
+    }
+
+    // ROWS items mixing NULLs, empty strings and text that needs quoting; the last one has Note 'zz'
+    private JdbcDataSource filledDatabase() throws SQLException {
+        JdbcDataSource database = database();
+        try (Connection connection = database.getConnection();
+             PreparedStatement statement = connection.prepareStatement(ITEMS.insertQuery())) {
+            for (int i = 1; i <= ROWS; i++) {
+                statement.setInt(1, i);
+                statement.setObject(2, i % 3 == 0 ? null : i % 3 == 1 ? "" : "Item " + i);
+                statement.setObject(3, i % 4 == 0 ? null : -1000 * i);
+                statement.setObject(4, i % 5 == 0 ? null : i * 1.25);
+                statement.setObject(5, i % 7 == 0 ? null : i % 2 == 0);
+                statement.setObject(6, i % 6 == 0 ? null : LocalDateTime.of(2024, 5, 1, 10, 15, 30).plusMinutes(i));
+                statement.setObject(7, i == ROWS ? "zz" : i % 2 == 0 ? null : i % 3 == 0 ? "" : "say \"hi\", then\r\nbye ü");
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+        return database;
+    }
+
+    private static void execute(JdbcDataSource database, String... statements) throws SQLException {
+        try (Connection connection = database.getConnection(); Statement statement = connection.createStatement()) {
+            for (String sql : statements) {
+                statement.execute(sql);
+            }
+        }
+    }
+
+    private static List<List<Object>> rows(JdbcDataSource database) throws SQLException {
+        List<List<Object>> rows = new ArrayList<>();
+        try (Connection connection = database.getConnection(); Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(ITEMS.selectQuery())) {
+            while (resultSet.next()) {
+                List<Object> row = new ArrayList<>();
+                for (int i = 1; i <= ITEMS.getColumnCount(); i++) {
+                    row.add(resultSet.getObject(i));
+                }
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    private Path export(JdbcDataSource database, BulkFormat format) throws IOException {
+        JdbcRunner runner = new JdbcRunner(database);
+        runner.setStreamFetchSize(100);
+        Path file = directory.resolve("items." + format.name().toLowerCase());
+        assertEquals(ROWS, new BulkExporter(runner).export(ITEMS, format, file).getRows());
+        return file;
+    }
+
+    private static BulkImporter importer(JdbcDataSource database, long windowSize) {
+        BulkImporter importer = new BulkImporter(database);
+        importer.setWindowSize(windowSize);
+        importer.setBatchSize(7);
+        importer.setCommitInterval(11);
+        return importer;
+    }
+
+    @Test
+    void nullsAndEmptyStringsSurviveARoundTrip() throws Exception {
+        JdbcDataSource source = filledDatabase();
+        for (BulkFormat format : BulkFormat.values()) {
+            JdbcDataSource target = database();
+
+            BulkResult result = importer(target, 1 << 20).importFile(ITEMS, format, export(source, format));
+
+            assertEquals(ROWS, result.getRows(), format.name());
+            List<List<Object>> imported = rows(target);
+            assertEquals(rows(source), imported, format.name());
+            assertEquals("", imported.get(0).get(1), format + ": Name of item 1 is an empty string");
+            assertNull(imported.get(2).get(1), format + ": Name of item 3 is NULL");
+        }
+    }
+
+    @Test
+    void rowsSplitAcrossWindowsAreReadWhole() throws Exception {
+        JdbcDataSource source = filledDatabase();
+        for (BulkFormat format : BulkFormat.values()) {
+            Path file = export(source, format);
+            // windows smaller than a row, and sizes that cut rows at every offset
+            for (long windowSize = 8; windowSize <= 96; windowSize += 11) {
+                JdbcDataSource target = database();
+
+                importer(target, windowSize).importFile(ITEMS, format, file);
+
+                assertEquals(rows(source), rows(target), format + " in " + windowSize + "-byte windows");
+            }
+        }
+    }
+
+    @Test
+    void aRowCutAnywhereIsIncompleteAndReadAgainWhole() throws Exception {
+        JdbcDataSource source = filledDatabase();
+        for (BulkFormat format : BulkFormat.values()) {
+            byte[] bytes = Files.readAllBytes(export(source, format));
+            try (Connection connection = database().getConnection();
+                 PreparedStatement statement = connection.prepareStatement(ITEMS.insertQuery())) {
+
+                BulkCodec codec = BulkCodec.of(format);
+                ByteBuffer whole = ByteBuffer.wrap(bytes);
+                assertEquals(BulkCodec.Decoded.ROW, codec.readHeader(whole, ITEMS, true));
+                int rowStart = whole.position();
+                assertEquals(BulkCodec.Decoded.ROW, codec.readRow(whole, ITEMS, statement, true));
+                int rowEnd = whole.position();
+
+                for (int cut = rowStart; cut < rowEnd; cut++) {
+                    ByteBuffer window = ByteBuffer.wrap(bytes, 0, cut);
+                    codec = BulkCodec.of(format);
+                    assertEquals(BulkCodec.Decoded.ROW, codec.readHeader(window, ITEMS, false));
+
+                    assertEquals(BulkCodec.Decoded.INCOMPLETE, codec.readRow(window, ITEMS, statement, false),
+                            format + " cut at byte " + cut);
+                    assertEquals(rowStart, window.position(), format + " cut at byte " + cut);
+
+                    // the next window starts where the cut row does
+                    ByteBuffer next = ByteBuffer.wrap(Arrays.copyOfRange(bytes, rowStart, bytes.length));
+                    assertEquals(BulkCodec.Decoded.ROW, codec.readRow(next, ITEMS, statement, false));
+                    assertEquals(rowEnd - rowStart, next.position(), format + " cut at byte " + cut);
+                }
+            }
+        }
+    }
+
+    @Test
+    void aQuotedEmptyIntIsRejected() throws Exception {
+        JdbcDataSource target = database();
+        Path file = directory.resolve("items.csv");
+        // "" is an empty string, not NULL, and no number; the '-' of the field before it must not make it 0
+        Files.write(file, "ItemID,Name,Qty,Price,Active,Added,Note\n7,-,\"\",,,,\n".getBytes(StandardCharsets.UTF_8));
+
+        IOException e = assertThrows(IOException.class, () -> importer(target, 1 << 20).importFile(ITEMS, BulkFormat.CSV, file));
+
+        assertTrue(e.getMessage().contains("field 3"), e.getMessage());
+        assertEquals(List.of(), rows(target));
+    }
+
+    @Test
+    void aCorruptBinaryStringLengthIsAnIOException() throws Exception {
+        Path file = export(filledDatabase(), BulkFormat.BINARY);
+        byte[] bytes = Files.readAllBytes(file);
+        // the file ends with the last row's Note ('zz', a 1-byte length and 2 bytes) and the 4-byte trailer
+        int noteLength = bytes.length - Integer.BYTES - 3;
+        assertEquals(2, bytes[noteLength]);
+        bytes[noteLength] = 0x7F;
+        Files.write(file, bytes);
+
+        JdbcDataSource target = database();
+        IOException e = assertThrows(IOException.class,
+                () -> importer(target, 1 << 20).importFile(ITEMS, BulkFormat.BINARY, file));
+
+        assertTrue(e.getMessage().startsWith("corrupt row"), e.getMessage());
+        // the rows before the last one were committed in chunks of 11
+        assertEquals(33, rows(target).size());
+    }
+}
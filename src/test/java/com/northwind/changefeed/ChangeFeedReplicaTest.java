@@ -0,0 +1,114 @@
+package com.northwind.changefeed;
+
+import com.northwind.data.ChangeLogDao;
+import com.northwind.data.JdbcRunner;
+import com.northwind.data.ProductDao;
+import com.northwind.data.ReadWriteRoutingDataSource;
+import com.northwind.model.Product;
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// a feed behind a ReadWriteRoutingDataSource whose second replica has not caught up yet
+class ChangeFeedReplicaTest {
+    private final List<BasicDataSource> pools = new ArrayList<>();
+    private ReadWriteRoutingDataSource routing;
+
+    @BeforeEach
+    void createDatabases() throws SQLException {
+        BasicDataSource primary = database();
+        BasicDataSource current = database();
+        BasicDataSource lagging = database();
+        // the primary and the first replica have the new product and its log entry; the lagging one has neither
+        for (BasicDataSource upToDate : List.of(primary, current)) {
+            execute(upToDate,
+                    "INSERT INTO products (ProductName) VALUES ('Chai')",
+                    "INSERT INTO change_log (TableName, RowKey, Operation) VALUES ('products', '1', 'I')");
+        }
+        routing = new ReadWriteRoutingDataSource(primary, List.of(current, lagging), Duration.ZERO, Duration.ofHours(1));
+    }
+
+    @AfterEach
+    void closeDatabases() throws SQLException {
+        routing.close();
+        for (BasicDataSource pool : pools) {
+            pool.close();
+        }
+    }
+
+    private BasicDataSource database() throws SQLException {
+        BasicDataSource pool = new BasicDataSource();
+        pool.setUrl("jdbc:h2:mem:feed-" + UUID.randomUUID() + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE");
+        pool.setMinIdle(1);
+        pools.add(pool);
+        execute(pool, """
+                CREATE TABLE products (
+                    ProductID       INT AUTO_INCREMENT PRIMARY KEY,
+                    ProductName     VARCHAR(40) NOT NULL,
+                    SupplierID      INT,
+                    CategoryID      INT,
+                    QuantityPerUnit VARCHAR(20),
+                    UnitPrice       DECIMAL(10, 4) DEFAULT 0,
+                    UnitsInStock    SMALLINT DEFAULT 0,
+                    UnitsOnOrder    SMALLINT DEFAULT 0,
+                    ReorderLevel    SMALLINT DEFAULT 0,
+                    Discontinued    BOOLEAN NOT NULL DEFAULT FALSE
+                )""", """
+                CREATE TABLE change_log (
+                    ChangeID  BIGINT AUTO_INCREMENT PRIMARY KEY,
+                    TableName VARCHAR(32) NOT NULL,
+                    RowKey    VARCHAR(16) NOT NULL,
+                    Operation CHAR(1) NOT NULL,
+                    ChangedAt TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3)
+                )""");
+        return pool;
+    }
+
+    private static void execute(BasicDataSource pool, String... statements) throws SQLException {
+        try (Connection connection = pool.getConnection(); Statement statement = connection.createStatement()) {
+            for (String sql : statements) {
+                statement.execute(sql);
+            }
+        }
+    }
+
+    @Test
+    void rowsAreReadFromAReplicaAtLeastAsNewAsTheLog() {
+        // separate runners, as separate DAOs would have: only the shared data source ties their reads together
+        ChangeLogDao changeLog = new ChangeLogDao(new JdbcRunner(routing));
+        ProductDao productDao = new ProductDao(new JdbcRunner(routing));
+        List<Change<Integer, Product>> delivered = new ArrayList<>();
+
+        ChangeFeed feed = new ChangeFeed("replicas", changeLog, new CheckpointStore() {
+            @Override
+            public long load(String feedName) {
+                return 0;
+            }
+
+            @Override
+            public void save(String feedName, long changeId) {
+            }
+        });
+        feed.setSettleTime(Duration.ZERO);
+        feed.subscribe(FeedTable.products(productDao), delivered::addAll);
+
+        // the log read goes to the first replica; without a consistent view the rows come from the lagging
+        // one, the insert looks like "inserted and deleted again" and is dropped for good
+        assertEquals(1, feed.poll());
+
+        assertEquals(1, delivered.size());
+        assertEquals(ChangeType.INSERTED, delivered.get(0).getType());
+        assertEquals("Chai", delivered.get(0).getRow().getProductName());
+    }
+}
@@ -0,0 +1,226 @@
+package com.northwind.changefeed;
+
+import com.northwind.data.ChangeLogDao;
+import com.northwind.data.JdbcRunner;
+import com.northwind.model.ChangeLogEntry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// ChangeFeed against an in-memory change log, table and checkpoint store
+class ChangeFeedTest {
+    private final StubChangeLog changeLog = new StubChangeLog();
+    private final MemoryCheckpointStore checkpoints = new MemoryCheckpointStore();
+    // the "products" table as it is now: id -> name
+    private final Map<Integer, String> rows = new HashMap<>();
+    private final List<List<Change<Integer, String>>> delivered = new ArrayList<>();
+
+    private ChangeFeed feed(Duration settleTime) {
+        ChangeFeed feed = new ChangeFeed("test", changeLog, checkpoints);
+        feed.setSettleTime(settleTime);
+        feed.subscribe(new FeedTable<>("products", Integer::valueOf, ids -> {
+            Map<Integer, String> found = new HashMap<>();
+            for (Integer id : ids) {
+                if (rows.containsKey(id)) {
+                    found.put(id, rows.get(id));
+                }
+            }
+            return found;
+        }), delivered::add);
+        return feed;
+    }
+
+    @Test
+    void rowInsertedAndDeletedInOneBatchIsNotPublished() {
+        ChangeFeed feed = feed(Duration.ZERO);
+        changeLog.log(1, 'I');
+        changeLog.log(1, 'D');
+        changeLog.log(2, 'I');
+        rows.put(2, "two");
+
+        assertEquals(3, feed.poll());
+
+        assertEquals(1, delivered.size());
+        assertEquals(List.of("INSERTED 2 (change 3)"), describe(delivered.get(0)));
+        assertEquals(3, checkpoints.saved.get("test"));
+    }
+
+    @Test
+    void rowDeletedAndInsertedAgainInOneBatchIsAnUpdate() {
+        ChangeFeed feed = feed(Duration.ZERO);
+        changeLog.log(1, 'D');
+        changeLog.log(1, 'I');
+        rows.put(1, "back again");
+
+        feed.poll();
+
+        Change<Integer, String> change = delivered.get(0).get(0);
+        assertEquals(ChangeType.UPDATED, change.getType());
+        assertEquals("back again", change.getRow());
+        assertEquals(2, change.getChangeId());
+    }
+
+    @Test
+    void deltasAreOrderedByTheirLastChangeId() {
+        ChangeFeed feed = feed(Duration.ZERO);
+        changeLog.log(1, 'U');
+        changeLog.log(2, 'U');
+        changeLog.log(3, 'D');
+        changeLog.log(1, 'U');
+        rows.put(1, "one");
+        rows.put(2, "two");
+
+        feed.poll();
+
+        assertEquals(List.of("UPDATED 2 (change 2)", "DELETED 3 (change 3)", "UPDATED 1 (change 4)"),
+                describe(delivered.get(0)));
+    }
+
+    @Test
+    void pollStopsAtAGapUntilSettleTimeHasPassed() throws Exception {
+        ChangeFeed feed = feed(Duration.ofMillis(300));
+        rows.put(1, "one");
+        rows.put(3, "three");
+        changeLog.log(1, 'U');
+        changeLog.skip();
+        changeLog.log(3, 'U');
+
+        assertEquals(1, feed.poll());
+        assertEquals(1, feed.getCheckpoint());
+        assertEquals(0, feed.poll());
+        assertEquals(1, delivered.size());
+
+        Thread.sleep(400);
+
+        assertEquals(1, feed.poll());
+        assertEquals(3, feed.getCheckpoint());
+        assertEquals(List.of("UPDATED 3 (change 3)"), describe(delivered.get(1)));
+    }
+
+    @Test
+    void lateCommitFillingTheGapIsDeliveredInOrder() {
+        ChangeFeed feed = feed(Duration.ofMinutes(1));
+        rows.put(1, "one");
+        rows.put(2, "two");
+        changeLog.log(1, 'U');
+        long late = changeLog.skip();
+        changeLog.log(1, 'U');
+
+        assertEquals(1, feed.poll());
+        changeLog.fill(late, 2, 'U');
+
+        assertEquals(2, feed.poll());
+        assertEquals(List.of("UPDATED 2 (change 2)", "UPDATED 1 (change 3)"), describe(delivered.get(1)));
+    }
+
+    @Test
+    void failingListenerLeavesTheCheckpointAndGetsTheBatchAgain() {
+        ChangeFeed feed = feed(Duration.ZERO);
+        feed.subscribe(new FeedTable<>("products", Integer::valueOf, ids -> Map.of()), changes -> {
+            if (delivered.size() == 1) {
+                throw new IllegalStateException("consumer down");
+            }
+        });
+        rows.put(1, "one");
+        changeLog.log(1, 'U');
+
+        assertThrows(IllegalStateException.class, feed::poll);
+        assertFalse(checkpoints.saved.containsKey("test"));
+        assertEquals(0, feed.getCheckpoint());
+
+        assertEquals(1, feed.poll());
+        assertEquals(2, delivered.size());
+        assertEquals(1, checkpoints.saved.get("test"));
+    }
+
+    @Test
+    void resumesFromTheSavedCheckpoint() {
+        checkpoints.saved.put("test", 1L);
+        ChangeFeed feed = feed(Duration.ZERO);
+        rows.put(1, "one");
+        rows.put(2, "two");
+        changeLog.log(1, 'U');
+        changeLog.log(2, 'U');
+
+        assertEquals(1, feed.poll());
+        assertEquals(List.of("UPDATED 2 (change 2)"), describe(delivered.get(0)));
+    }
+
+    private static List<String> describe(List<Change<Integer, String>> changes) {
+        List<String> described = new ArrayList<>();
+        for (Change<Integer, String> change : changes) {
+            described.add(change.toString());
+        }
+        return described;
+    }
+
+    // change_log in a list; skip() leaves an id unused (a transaction that has not committed yet)
+    private static final class StubChangeLog extends ChangeLogDao {
+        private final List<ChangeLogEntry> entries = new ArrayList<>();
+        private long nextId = 1;
+
+        StubChangeLog() {
+            super((JdbcRunner) null);
+        }
+
+        void log(int productId, char operation) {
+            entries.add(entry(nextId++, productId, operation));
+        }
+
+        long skip() {
+            return nextId++;
+        }
+
+        void fill(long changeId, int productId, char operation) {
+            entries.add(entry(changeId, productId, operation));
+            entries.sort((a, b) -> Long.compare(a.getChangeId(), b.getChangeId()));
+        }
+
+        @Override
+        public List<ChangeLogEntry> readAfter(long afterChangeId, int limit) {
+            List<ChangeLogEntry> result = new ArrayList<>();
+            for (ChangeLogEntry entry : entries) {
+                if (entry.getChangeId() > afterChangeId && result.size() < limit) {
+                    result.add(entry);
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public <R> R readConsistently(Supplier<R> work) {
+            return work.get();
+        }
+
+        @Override
+        public long getLastChangeId() {
+            return entries.isEmpty() ? 0 : entries.get(entries.size() - 1).getChangeId();
+        }
+
+        private static ChangeLogEntry entry(long changeId, int productId, char operation) {
+            return new ChangeLogEntry(changeId, "products", Integer.toString(productId), operation, LocalDateTime.now());
+        }
+    }
+
+    private static final class MemoryCheckpointStore implements CheckpointStore {
+        final Map<String, Long> saved = new HashMap<>();
+
+        @Override
+        public long load(String feedName) {
+            return saved.getOrDefault(feedName, 0L);
+        }
+
+        @Override
+        public void save(String feedName, long changeId) {
+            saved.put(feedName, changeId);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.northwind.changefeed;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileCheckpointStoreTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void missingFileMeansNoCheckpointYet() {
+        assertEquals(0, new FileCheckpointStore(directory).load("feed"));
+    }
+
+    @Test
+    void savedCheckpointIsLoadedBackAndReplacesTheOldOne() {
+        FileCheckpointStore store = new FileCheckpointStore(directory.resolve("nested"));
+
+        store.save("feed", 41);
+        store.save("feed", 42);
+
+        assertEquals(42, new FileCheckpointStore(directory.resolve("nested")).load("feed"));
+        assertFalse(Files.exists(directory.resolve("nested").resolve("feed.checkpoint.tmp")));
+    }
+
+    @Test
+    void emptyFileIsReportedInsteadOfGuessed() throws Exception {
+        Files.writeString(directory.resolve("feed.checkpoint"), "");
+
+        UncheckedIOException e = assertThrows(UncheckedIOException.class,
+                () -> new FileCheckpointStore(directory).load("feed"));
+        assertTrue(e.getMessage().contains("empty"));
+    }
+
+    @Test
+    void corruptFileIsReportedInsteadOfGuessed() throws Exception {
+        Files.writeString(directory.resolve("feed.checkpoint"), "12x4");
+        assertThrows(UncheckedIOException.class, () -> new FileCheckpointStore(directory).load("feed"));
+
+        Files.writeString(directory.resolve("feed.checkpoint"), "-5");
+        assertThrows(UncheckedIOException.class, () -> new FileCheckpointStore(directory).load("feed"));
+    }
+}
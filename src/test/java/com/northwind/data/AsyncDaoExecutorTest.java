@@ -0,0 +1,50 @@
+package com.northwind.data;
+
+import com.northwind.metrics.DaoMetrics;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncDaoExecutorTest {
+
+    private static JdbcRunner runner() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:async");
+        return new JdbcRunner(dataSource, new DaoMetrics(false));
+    }
+
+    @Test
+    void runnerMovesToANewSharedExecutorAfterClose() throws Exception {
+        JdbcRunner runner = runner();
+        AsyncDaoExecutor first = runner.getAsyncExecutor();
+        assertSame(first, AsyncDaoExecutor.forDataSource(runner.getDataSource()));
+
+        first.close();
+        assertTrue(first.isClosed());
+        assertThrows(RejectedExecutionException.class, () -> first.submit(() -> 1));
+
+        AsyncDaoExecutor second = runner.getAsyncExecutor();
+        assertNotSame(first, second);
+        assertFalse(second.isClosed());
+        assertEquals("done", second.submit(() -> "done").get(5, TimeUnit.SECONDS));
+        second.close();
+    }
+
+    @Test
+    void closedExecutorSetOnTheRunnerIsReplaced() throws Exception {
+        JdbcRunner runner = runner();
+        AsyncDaoExecutor own = new AsyncDaoExecutor(2);
+        runner.setAsyncExecutor(own);
+        assertSame(own, runner.getAsyncExecutor());
+
+        own.close();
+        AsyncDaoExecutor replacement = runner.getAsyncExecutor();
+        assertNotSame(own, replacement);
+        assertEquals(1, replacement.submit(() -> 1).get(5, TimeUnit.SECONDS));
+        replacement.close();
+    }
+}
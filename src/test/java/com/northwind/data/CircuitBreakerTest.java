@@ -0,0 +1,113 @@
+package com.northwind.data;
+
+import com.northwind.metrics.DaoMetrics;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTimeoutException;
+import java.time.Duration;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// which failures JdbcRunner reports to the circuit breaker
+class CircuitBreakerTest {
+    private JdbcRunner runner;
+    private CircuitBreaker breaker;
+
+    @BeforeEach
+    void setUp() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:breaker");
+        runner = new JdbcRunner(dataSource, new DaoMetrics(false));
+        runner.setRetryPolicy(new RetryPolicy(3, Duration.ZERO, Duration.ZERO));
+        breaker = new CircuitBreaker("test", 2, Duration.ofHours(1));
+        runner.setCircuitBreaker(breaker);
+    }
+
+    private void fail(SQLException e) {
+        assertThrows(DataAccessException.class, () -> runner.withReadConnection("test", connection -> {
+            throw e;
+        }));
+    }
+
+    private static SQLException poolExhausted() {
+        return new SQLException("Cannot get a connection, pool error Timeout waiting for idle object",
+                new NoSuchElementException("Timeout waiting for idle object, borrowMaxWaitDuration=PT0.05S"));
+    }
+
+    @Test
+    void connectionErrorsCountOncePerCall() {
+        fail(new SQLException("Communications link failure", "08S01"));
+        assertEquals(1, breaker.getConsecutiveFailures());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        fail(new SQLRecoverableException("connection reset"));
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertThrows(CircuitOpenException.class, () -> runner.withReadConnection("test", connection -> 1));
+    }
+
+    @Test
+    void serverStatementTimeoutsCount() {
+        fail(new SQLTimeoutException("Statement cancelled due to timeout"));
+        fail(new SQLException("Query execution was interrupted, maximum statement execution time exceeded", "HY000", 3024));
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void busyDatabaseFailuresAreNeutral() {
+        fail(new SQLException("Communications link failure", "08S01"));
+        assertEquals(1, breaker.getConsecutiveFailures());
+
+        fail(poolExhausted());
+        fail(new SQLException("Deadlock found when trying to get lock", "40001", 1213));
+        fail(new SQLException("Lock wait timeout exceeded", "HY000", 1205));
+
+        // neither counted nor reset
+        assertEquals(1, breaker.getConsecutiveFailures());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void deadlineExpiryIsNeutral() {
+        runner.setDeadline(Duration.ofMillis(1));
+        for (int i = 0; i < 3; i++) {
+            assertThrows(QueryTimeoutException.class, () -> runner.withReadConnection("test", connection -> {
+                long until = System.nanoTime() + 5_000_000;
+                while (System.nanoTime() < until) {
+                    Thread.onSpinWait();
+                }
+                runner.prepare(connection, "SELECT 1").close();
+                return 1;
+            }));
+        }
+        assertEquals(0, breaker.getConsecutiveFailures());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void answersResetTheCount() {
+        fail(new SQLException("Communications link failure", "08S01"));
+        fail(new SQLException("Duplicate entry", "23000", 1062));
+        assertEquals(0, breaker.getConsecutiveFailures());
+    }
+
+    @Test
+    void neutralFailureHandsTheHalfOpenTrialToTheNextCaller() throws Exception {
+        breaker = new CircuitBreaker("test", 1, Duration.ofMillis(1));
+        runner.setCircuitBreaker(breaker);
+        fail(new SQLException("Communications link failure", "08S01"));
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        Thread.sleep(5);
+        runner.setRetryPolicy(RetryPolicy.NONE);
+        fail(poolExhausted());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        assertEquals("up", runner.withReadConnection("test", connection -> "up"));
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+}
@@ -0,0 +1,60 @@
+package com.northwind.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EntityCacheTest {
+
+    @Test
+    void getIfPresentCountsHitsAndMisses() {
+        EntityCache<Integer, String> cache = new EntityCache<>(10, Duration.ofMinutes(1));
+
+        assertNull(cache.getIfPresent(1));
+        cache.put(1, "one");
+        assertEquals("one", cache.getIfPresent(1));
+
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    void getCountsOneMissPerLoadAndHitsAfterwards() {
+        EntityCache<Integer, String> cache = new EntityCache<>(10, Duration.ofMinutes(1));
+        AtomicInteger loads = new AtomicInteger();
+
+        assertEquals("v1", cache.get(1, key -> "v" + loads.incrementAndGet()));
+        assertEquals("v1", cache.get(1, key -> "v" + loads.incrementAndGet()));
+
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    void loadAfterACountedMissDoesNotCountAgain() {
+        EntityCache<Integer, String> cache = new EntityCache<>(10, Duration.ofMinutes(1));
+
+        assertNull(cache.getIfPresent(1));
+        assertEquals("one", cache.load(1, key -> "one"));
+
+        assertEquals(0, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals("one", cache.getIfPresent(1));
+    }
+
+    @Test
+    void invalidateDuringALoadKeepsTheStaleValueOut() {
+        EntityCache<Integer, String> cache = new EntityCache<>(10, Duration.ofMinutes(1));
+
+        assertEquals("stale", cache.get(1, key -> {
+            cache.invalidate(1);
+            return "stale";
+        }));
+
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,160 @@
+package com.northwind.data;
+
+import com.northwind.model.Product;
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// ProductCatalog and ProductDao.checksums() on an in-memory H2 database in MySQL mode
+public class ProductCatalogTest {
+    private final List<BasicDataSource> pools = new ArrayList<>();
+    private BasicDataSource dataSource;
+    private ReadWriteRoutingDataSource routing;
+    private JdbcRunner runner;
+    private ProductDao productDao;
+
+    // H2 has no CRC32(); the test database gets this one
+    public static long crc32(String value) {
+        if (value == null) {
+            return 0;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(value.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+
+    @BeforeEach
+    void createDatabase() throws SQLException {
+        dataSource = database();
+
+        runner = new JdbcRunner(dataSource);
+        // H2 rejects MySQL's Integer.MIN_VALUE streaming hint
+        runner.setStreamFetchSize(100);
+        productDao = new ProductDao(runner);
+    }
+
+    // a new database with products 1 (Chai) and 2 (Chang)
+    private BasicDataSource database() throws SQLException {
+        BasicDataSource pool = new BasicDataSource();
+        pool.setUrl("jdbc:h2:mem:catalog-" + UUID.randomUUID() + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        pools.add(pool);
+        execute(pool, "CREATE ALIAS CRC32 FOR \"com.northwind.data.ProductCatalogTest.crc32\"",
+                """
+                CREATE TABLE products (
+                    ProductID       INT AUTO_INCREMENT PRIMARY KEY,
+                    ProductName     VARCHAR(40) NOT NULL,
+                    SupplierID      INT,
+                    CategoryID      INT,
+                    QuantityPerUnit VARCHAR(20),
+                    UnitPrice       DECIMAL(10, 4) DEFAULT 0,
+                    UnitsInStock    SMALLINT DEFAULT 0,
+                    UnitsOnOrder    SMALLINT DEFAULT 0,
+                    ReorderLevel    SMALLINT DEFAULT 0,
+                    Discontinued    BOOLEAN NOT NULL DEFAULT FALSE
+                )""",
+                "INSERT INTO products (ProductName, SupplierID, CategoryID) VALUES ('Chai', NULL, 5), ('Chang', 1, 1)");
+        return pool;
+    }
+
+    @AfterEach
+    void dropDatabases() throws SQLException {
+        if (routing != null) {
+            routing.close();
+        }
+        for (BasicDataSource pool : pools) {
+            execute(pool, "DROP ALL OBJECTS");
+            pool.close();
+        }
+    }
+
+    private void execute(String... statements) throws SQLException {
+        execute(dataSource, statements);
+    }
+
+    private static void execute(BasicDataSource pool, String... statements) throws SQLException {
+        try (Connection connection = pool.getConnection(); Statement statement = connection.createStatement()) {
+            for (String sql : statements) {
+                statement.execute(sql);
+            }
+        }
+    }
+
+    @Test
+    void nullMovingToAnotherColumnChangesTheChecksum() throws SQLException {
+        long before = productDao.checksums()[0];
+
+        // CONCAT_WS alone would read both rows as "Chai|5|..."
+        execute("UPDATE products SET SupplierID = 5, CategoryID = NULL WHERE ProductID = 1");
+
+        assertNotEquals(before, productDao.checksums()[0]);
+    }
+
+    @Test
+    void refreshPicksUpAChangedNullableColumn() throws SQLException {
+        ProductCatalog catalog = ProductCatalog.load(productDao);
+
+        execute("UPDATE products SET SupplierID = 5, CategoryID = NULL WHERE ProductID = 1");
+
+        assertEquals(1, catalog.refresh());
+        assertEquals(5, catalog.find(1).getSupplierId());
+        assertEquals(0, catalog.find(1).getCategoryId());
+        assertEquals(0, catalog.refresh());
+    }
+
+    @Test
+    void refreshDropsARowDeletedBeforeItCouldBeReloaded() throws SQLException {
+        long[][] checksumsSeen = new long[1][];
+        ProductDao racingDao = new ProductDao(runner) {
+            @Override
+            public long[] checksums() {
+                return checksumsSeen[0] != null ? checksumsSeen[0] : super.checksums();
+            }
+        };
+        ProductCatalog catalog = ProductCatalog.load(racingDao);
+
+        // product 2 changes and is then deleted between refresh()'s checksum read and its findByIds()
+        long[] stale = productDao.checksums();
+        stale[1] ^= 1;
+        checksumsSeen[0] = stale;
+        execute("DELETE FROM products WHERE ProductID = 2");
+
+        assertEquals(1, catalog.refresh());
+        assertNull(catalog.find(2));
+        assertEquals(1, catalog.size());
+        assertEquals(1, catalog.getAll().size());
+    }
+
+    @Test
+    void refreshReadsTheChecksumsAndTheRowsFromOneReplica() throws SQLException {
+        BasicDataSource current = database();
+        BasicDataSource lagging = database();
+        routing = new ReadWriteRoutingDataSource(dataSource, List.of(current, lagging), Duration.ZERO, Duration.ofHours(1));
+        JdbcRunner routedRunner = new JdbcRunner(routing);
+        routedRunner.setStreamFetchSize(100);
+        ProductCatalog catalog = ProductCatalog.load(new ProductDao(routedRunner));
+
+        // the primary and the first replica have the rename; the second replica has not caught up
+        for (BasicDataSource upToDate : List.of(dataSource, current)) {
+            execute(upToDate, "UPDATE products SET ProductName = 'Chai Tea' WHERE ProductID = 1");
+        }
+
+        // reads take turns on the replicas: one of these refreshes starts on the up-to-date one, and a catalog
+        // that then read the row from the lagging one would keep "Chai" under the new checksum for good
+        catalog.refresh();
+        catalog.refresh();
+        assertEquals("Chai Tea", catalog.find(1).getProductName());
+    }
+}
@@ -0,0 +1,377 @@
+package com.northwind.data;
+
+import com.northwind.model.Product;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The guarantees listed in ProductWriteBehind's class comment, run against a ProductDao stub
+// that records each batch and can be told to fail, refuse rows or stall.
+class ProductWriteBehindTest {
+    private static final Duration LONG = Duration.ofHours(1);
+
+    private final StubProductDao dao = new StubProductDao();
+    private final Map<Integer, WriteOutcome> droppedOutcomes = new LinkedHashMap<>();
+    private final List<Integer> unwritten = new ArrayList<>();
+    private ProductWriteBehind writeBehind;
+
+    @AfterEach
+    void closeBuffer() {
+        if (writeBehind != null) {
+            dao.failing.set(false);
+            writeBehind.close();
+        }
+    }
+
+    private ProductWriteBehind open(int maxPending, int flushSize, Duration flushInterval) {
+        writeBehind = new ProductWriteBehind(dao, maxPending, flushSize, flushInterval);
+        writeBehind.setDroppedWriteListener(new ProductWriteBehind.DroppedWriteListener() {
+            @Override
+            public synchronized void dropped(int productId, WriteOutcome outcome) {
+                droppedOutcomes.put(productId, outcome);
+            }
+
+            @Override
+            public synchronized void unwritten(int productId, DataAccessException cause) {
+                unwritten.add(productId);
+            }
+        });
+        return writeBehind;
+    }
+
+    @Test
+    void lastUpdateWinsAndStockDeltasAddUp() throws Exception {
+        open(100, 100, LONG);
+
+        writeBehind.update(product(1, "First", 10));
+        writeBehind.update(product(1, "Second", 20));
+        writeBehind.adjustStock(1, -3);
+        writeBehind.adjustStock(2, 5);
+        writeBehind.adjustStock(2, 7);
+        writeBehind.flush();
+
+        assertEquals(1, dao.updateBatches.size());
+        Product written = dao.updateBatches.get(0).get(0);
+        assertEquals("Second", written.getProductName());
+        assertEquals(Set.of(1), dao.keptStock);
+        assertEquals(List.of(Map.of(1, -3, 2, 12)), dao.deltaBatches);
+        assertEquals(5, writeBehind.getAcceptedCount());
+        assertEquals(3, writeBehind.getCoalescedCount());
+    }
+
+    @Test
+    void queuedProductIsACopy() throws Exception {
+        open(100, 100, LONG);
+        Product product = product(1, "Queued", 10);
+
+        writeBehind.update(product);
+        product.setProductName("Changed after queueing");
+        writeBehind.flush();
+
+        assertEquals("Queued", dao.updateBatches.get(0).get(0).getProductName());
+    }
+
+    @Test
+    void flushesWhenFlushSizeProductsAreWaiting() throws Exception {
+        open(100, 3, LONG);
+
+        writeBehind.adjustStock(1, 1);
+        writeBehind.adjustStock(2, 1);
+        assertFalse(dao.awaitWrites(1, 200), "flushed before flushSize was reached");
+
+        writeBehind.adjustStock(3, 1);
+        assertTrue(dao.awaitWrites(1, 5_000));
+        assertEquals(Map.of(1, 1, 2, 1, 3, 1), dao.deltaBatches.get(0));
+    }
+
+    @Test
+    void flushesWhenTheOldestWriteIsFlushIntervalOld() throws Exception {
+        open(100, 100, Duration.ofMillis(100));
+
+        long start = System.nanoTime();
+        writeBehind.adjustStock(1, 1);
+
+        assertTrue(dao.awaitWrites(1, 5_000));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(90), "flushed before flushInterval");
+        assertEquals(0, writeBehind.getPendingCount());
+    }
+
+    @Test
+    void writersBlockAtMaxPendingUntilAFlushMakesRoom() throws Exception {
+        open(2, 2, LONG);
+        dao.stall = new CountDownLatch(1);
+
+        // the first two fill the buffer and start a flush, which stalls inside the DAO
+        writeBehind.adjustStock(1, 1);
+        writeBehind.adjustStock(2, 1);
+        assertTrue(dao.awaitCalls(1, 5_000));
+        writeBehind.adjustStock(3, 1);
+        writeBehind.adjustStock(4, 1);
+
+        AtomicBoolean fifthAccepted = new AtomicBoolean();
+        Thread writer = new Thread(() -> {
+            try {
+                writeBehind.adjustStock(5, 1);
+                fifthAccepted.set(true);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        writer.start();
+
+        writer.join(300);
+        assertTrue(writer.isAlive(), "a write for a new product was accepted past maxPending");
+        assertFalse(fifthAccepted.get());
+
+        // a product already pending is merged, so it does not wait for room
+        writeBehind.adjustStock(3, 1);
+
+        dao.stall.countDown();
+        writer.join(5_000);
+        assertTrue(fifthAccepted.get());
+    }
+
+    @Test
+    void failedBatchIsRequeuedUnderNewerWritesAndRetried() throws Exception {
+        open(100, 100, LONG);
+        dao.failing.set(true);
+
+        writeBehind.update(product(1, "Old", 10));
+        writeBehind.adjustStock(2, 4);
+        writeBehind.flush();
+
+        assertEquals(2, writeBehind.getPendingCount());
+        assertEquals(2, writeBehind.getRetriedCount());
+        assertTrue(droppedOutcomes.isEmpty());
+
+        // newer writes go on top of the requeued ones
+        writeBehind.adjustStock(1, 5);
+        writeBehind.adjustStock(2, 1);
+        dao.failing.set(false);
+        writeBehind.flush();
+
+        Product written = dao.lastUpdateBatch().get(0);
+        assertEquals("Old", written.getProductName());
+        assertEquals(Map.of(1, 5, 2, 5), dao.lastDeltaBatch());
+        assertEquals(0, writeBehind.getPendingCount());
+    }
+
+    @Test
+    void deltaAfterAnUpdateKeepsItsStockFloor() throws Exception {
+        open(100, 100, LONG);
+        dao.outcomes.put(3, WriteOutcome.REJECTED);
+
+        writeBehind.update(product(3, "Renamed", 50));
+        writeBehind.adjustStock(3, -10);
+        writeBehind.update(product(4, "Plain", 8));
+        writeBehind.flush();
+
+        // the row is written without its stock, and the delta is checked against the stored stock on its own
+        assertEquals(Set.of(3), dao.keptStock);
+        assertEquals(2, dao.updateBatches.size());
+        assertEquals(Map.of(3, -10), dao.lastDeltaBatch());
+        assertEquals(Map.of(3, WriteOutcome.REJECTED), droppedOutcomes);
+    }
+
+    @Test
+    void failedDeltaGoesBackWithoutItsRow() throws Exception {
+        open(100, 100, LONG);
+        dao.failDeltas.set(true);
+
+        writeBehind.update(product(5, "Five", 1));
+        writeBehind.adjustStock(5, 2);
+        writeBehind.flush();
+        assertEquals(1, dao.updateBatches.size());
+
+        dao.failDeltas.set(false);
+        writeBehind.flush();
+        assertEquals(1, dao.updateBatches.size(), "the row was written again");
+        assertEquals(Map.of(5, 2), dao.lastDeltaBatch());
+    }
+
+    @Test
+    void refusedWritesAreDroppedAndReported() throws Exception {
+        open(100, 100, LONG);
+        dao.outcomes.put(7, WriteOutcome.NOT_FOUND);
+        dao.outcomes.put(8, WriteOutcome.REJECTED);
+
+        writeBehind.update(product(7, "Missing", 1));
+        writeBehind.adjustStock(8, -100);
+        writeBehind.adjustStock(9, 1);
+        writeBehind.flush();
+
+        assertEquals(Map.of(7, WriteOutcome.NOT_FOUND, 8, WriteOutcome.REJECTED), droppedOutcomes);
+        assertEquals(2, writeBehind.getDroppedCount());
+        assertEquals(0, writeBehind.getPendingCount());
+    }
+
+    @Test
+    void closeFlushesEverythingPending() throws Exception {
+        open(100, 100, LONG);
+
+        writeBehind.adjustStock(1, 2);
+        writeBehind.update(product(2, "Two", 3));
+        writeBehind.close();
+
+        assertEquals(Map.of(1, 2), dao.lastDeltaBatch());
+        assertEquals("Two", dao.lastUpdateBatch().get(0).getProductName());
+        assertEquals(0, writeBehind.getPendingCount());
+        assertThrows(IllegalStateException.class, () -> writeBehind.adjustStock(1, 1));
+    }
+
+    @Test
+    void closeRetriesTheFinalFlush() throws Exception {
+        open(100, 100, Duration.ofMillis(10));
+        dao.failuresLeft.set(2);
+
+        writeBehind.adjustStock(1, 2);
+        writeBehind.close();
+
+        assertEquals(Map.of(1, 2), dao.lastDeltaBatch());
+        assertTrue(unwritten.isEmpty());
+    }
+
+    @Test
+    void closeReportsWritesItCouldNotSave() throws Exception {
+        open(100, 100, Duration.ofMillis(1));
+        dao.failing.set(true);
+
+        writeBehind.adjustStock(1, 2);
+        writeBehind.update(product(2, "Two", 3));
+        writeBehind.close();
+
+        assertEquals(Set.of(1, 2), Set.copyOf(unwritten));
+        assertEquals(2, writeBehind.getDroppedCount());
+        assertEquals(0, writeBehind.getPendingCount());
+    }
+
+    private static Product product(int productId, String name, int unitsInStock) {
+        return new Product(productId, name, 1, 1, "1 box", 1.0, unitsInStock, 0, 0, false);
+    }
+
+    // records every batch; failing (or failuresLeft) makes batches throw, outcomes refuses rows, stall holds a batch
+    private static final class StubProductDao extends ProductDao {
+        final List<List<Product>> updateBatches = new ArrayList<>();
+        final List<Map<Integer, Integer>> deltaBatches = new ArrayList<>();
+        final Map<Integer, WriteOutcome> outcomes = new HashMap<>();
+        final Set<Integer> keptStock = new HashSet<>();
+        final AtomicBoolean failing = new AtomicBoolean();
+        final AtomicBoolean failDeltas = new AtomicBoolean();
+        final AtomicInteger failuresLeft = new AtomicInteger();
+        final AtomicInteger calls = new AtomicInteger();
+        volatile CountDownLatch stall;
+
+        StubProductDao() {
+            super((JdbcRunner) null);
+        }
+
+        @Override
+        public List<WriteOutcome> updateAll(List<Product> products) {
+            enter();
+            List<WriteOutcome> result = new ArrayList<>();
+            synchronized (this) {
+                updateBatches.add(new ArrayList<>(products));
+                for (Product product : products) {
+                    result.add(outcomes.getOrDefault(product.getProductId(), WriteOutcome.UPDATED));
+                }
+                notifyAll();
+            }
+            return result;
+        }
+
+        @Override
+        public List<WriteOutcome> updateAllKeepingStock(List<Product> products) {
+            List<WriteOutcome> result = updateAll(products);
+            synchronized (this) {
+                for (Product product : products) {
+                    keptStock.add(product.getProductId());
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public Map<Integer, WriteOutcome> adjustStockAll(Map<Integer, Integer> deltas) {
+            if (deltas.isEmpty()) {
+                return Map.of();
+            }
+            enter();
+            if (failDeltas.get()) {
+                throw new TransientDataAccessException("ProductDao.stub", "simulated outage", null);
+            }
+            Map<Integer, WriteOutcome> result = new LinkedHashMap<>();
+            synchronized (this) {
+                deltaBatches.add(new LinkedHashMap<>(deltas));
+                for (Integer productId : deltas.keySet()) {
+                    result.put(productId, outcomes.getOrDefault(productId, WriteOutcome.UPDATED));
+                }
+                notifyAll();
+            }
+            return result;
+        }
+
+        private void enter() {
+            synchronized (this) {
+                calls.incrementAndGet();
+                notifyAll();
+            }
+            CountDownLatch latch = stall;
+            if (latch != null) {
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (failing.get() || failuresLeft.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                throw new TransientDataAccessException("ProductDao.stub", "simulated outage", null);
+            }
+        }
+
+        synchronized List<Product> lastUpdateBatch() {
+            return updateBatches.get(updateBatches.size() - 1);
+        }
+
+        synchronized Map<Integer, Integer> lastDeltaBatch() {
+            return deltaBatches.get(deltaBatches.size() - 1);
+        }
+
+        synchronized boolean awaitWrites(int batches, long millis) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + millis;
+            while (updateBatches.size() + deltaBatches.size() < batches) {
+                long left = deadline - System.currentTimeMillis();
+                if (left <= 0) {
+                    return false;
+                }
+                wait(left);
+            }
+            return true;
+        }
+
+        synchronized boolean awaitCalls(int count, long millis) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + millis;
+            while (calls.get() < count) {
+                long left = deadline - System.currentTimeMillis();
+                if (left <= 0) {
+                    return false;
+                }
+                wait(left);
+            }
+            return true;
+        }
+    }
+}
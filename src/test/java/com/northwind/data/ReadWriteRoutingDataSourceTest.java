@@ -0,0 +1,165 @@
+package com.northwind.data;
+
+import com.northwind.metrics.DaoMetrics;
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// routing over real dbcp2 pools on in-memory H2 databases
+class ReadWriteRoutingDataSourceTest {
+    private final List<BasicDataSource> pools = new ArrayList<>();
+    private ReadWriteRoutingDataSource routing;
+
+    @AfterEach
+    void closePools() throws SQLException {
+        if (routing != null) {
+            routing.close();
+        }
+        for (BasicDataSource pool : pools) {
+            pool.close();
+        }
+    }
+
+    private BasicDataSource pool(String url, int maxTotal) {
+        BasicDataSource pool = new BasicDataSource();
+        pool.setUrl(url);
+        pool.setMaxTotal(maxTotal);
+        pool.setMaxWait(Duration.ofMillis(50));
+        pools.add(pool);
+        return pool;
+    }
+
+    private ReadWriteRoutingDataSource routing(BasicDataSource primary, BasicDataSource... replicas) {
+        routing = new ReadWriteRoutingDataSource(primary, List.of(replicas), Duration.ZERO, Duration.ofHours(1));
+        return routing;
+    }
+
+    private static String urlOf(Connection connection) throws SQLException {
+        return connection.getMetaData().getURL();
+    }
+
+    @Test
+    void exhaustedReplicaStaysInRotationAndTheReadFails() throws Exception {
+        BasicDataSource primary = pool("jdbc:h2:mem:routing-primary-1", 4);
+        BasicDataSource replica = pool("jdbc:h2:mem:routing-replica-1", 1);
+        routing(primary, replica);
+
+        try (Connection busy = routing.getReadConnection()) {
+            assertEquals("jdbc:h2:mem:routing-replica-1", urlOf(busy));
+
+            SQLException e = assertThrows(SQLException.class, routing::getReadConnection);
+            assertTrue(ReadWriteRoutingDataSource.isPoolExhausted(e));
+            assertTrue(DataAccessException.translate("test", e) instanceof TransientDataAccessException);
+            assertEquals(1, routing.getHealthyReplicaCount());
+        }
+
+        try (Connection connection = routing.getReadConnection()) {
+            assertEquals("jdbc:h2:mem:routing-replica-1", urlOf(connection));
+        }
+    }
+
+    @Test
+    void exhaustedReplicaPassesTheReadToTheNextOne() throws Exception {
+        BasicDataSource primary = pool("jdbc:h2:mem:routing-primary-2", 4);
+        BasicDataSource first = pool("jdbc:h2:mem:routing-replica-2a", 1);
+        BasicDataSource second = pool("jdbc:h2:mem:routing-replica-2b", 4);
+        routing(primary, first, second);
+
+        try (Connection busy = first.getConnection()) {
+            for (int i = 0; i < 4; i++) {
+                try (Connection connection = routing.getReadConnection()) {
+                    assertEquals("jdbc:h2:mem:routing-replica-2b", urlOf(connection));
+                }
+            }
+        }
+        assertEquals(2, routing.getHealthyReplicaCount());
+    }
+
+    @Test
+    void brokenReplicaIsTakenOutOfRotationAndReadsUseThePrimary() throws Exception {
+        BasicDataSource primary = pool("jdbc:h2:mem:routing-primary-3", 4);
+        // IFEXISTS=TRUE refuses to create the database, so every connection attempt fails
+        BasicDataSource replica = pool("jdbc:h2:mem:routing-missing-3;IFEXISTS=TRUE", 4);
+        routing(primary, replica);
+
+        try (Connection connection = routing.getReadConnection()) {
+            assertEquals("jdbc:h2:mem:routing-primary-3", urlOf(connection));
+        }
+        assertEquals(0, routing.getHealthyReplicaCount());
+    }
+
+    @Test
+    void healthCheckLeavesAnExhaustedReplicaInRotation() throws Exception {
+        BasicDataSource primary = pool("jdbc:h2:mem:routing-primary-6", 4);
+        BasicDataSource replica = pool("jdbc:h2:mem:routing-replica-6", 1);
+        routing = new ReadWriteRoutingDataSource(primary, List.of(replica), Duration.ZERO, Duration.ofMillis(10));
+
+        try (Connection busy = replica.getConnection()) {
+            // several health checks run while the only connection is out, and each one times out borrowing
+            Thread.sleep(300);
+            assertEquals(1, routing.getHealthyReplicaCount());
+        }
+
+        try (Connection connection = routing.getReadConnection()) {
+            assertEquals("jdbc:h2:mem:routing-replica-6", urlOf(connection));
+        }
+    }
+
+    @Test
+    void consistentReadsStayOnTheFirstReplicaAndOnlyFailOverToThePrimary() throws Exception {
+        BasicDataSource primary = pool("jdbc:h2:mem:routing-primary-5", 4);
+        BasicDataSource first = pool("jdbc:h2:mem:routing-replica-5a", 4);
+        BasicDataSource second = pool("jdbc:h2:mem:routing-replica-5b", 4);
+        routing(primary, first, second);
+
+        List<String> urls = routing.readConsistently(() -> {
+            List<String> seen = new ArrayList<>();
+            try {
+                for (int i = 0; i < 3; i++) {
+                    try (Connection connection = routing.getReadConnection()) {
+                        seen.add(urlOf(connection));
+                    }
+                }
+                // the replica goes away: the next read moves to the primary, never to the other replica
+                first.close();
+                try (Connection connection = routing.getReadConnection()) {
+                    seen.add(urlOf(connection));
+                }
+            } catch (SQLException e) {
+                throw new AssertionError(e);
+            }
+            return seen;
+        });
+
+        assertEquals(List.of("jdbc:h2:mem:routing-replica-5a", "jdbc:h2:mem:routing-replica-5a",
+                "jdbc:h2:mem:routing-replica-5a", "jdbc:h2:mem:routing-primary-5"), urls);
+
+        // outside the scope reads go round the healthy replicas again
+        try (Connection connection = routing.getReadConnection()) {
+            assertEquals("jdbc:h2:mem:routing-replica-5b", urlOf(connection));
+        }
+    }
+
+    @Test
+    void eachPoolRecordsItsOwnBorrowWaits() {
+        BasicDataSource primary = pool("jdbc:h2:mem:routing-primary-4", 4);
+        BasicDataSource replica = pool("jdbc:h2:mem:routing-replica-4", 4);
+        DaoMetrics metrics = new DaoMetrics(false);
+        JdbcRunner runner = new JdbcRunner(routing(primary, replica), metrics);
+
+        runner.withReadConnection("Test.read", connection -> null);
+        runner.withReadConnection("Test.read", connection -> null);
+        runner.withConnection("Test.write", connection -> null);
+
+        assertEquals(2, metrics.borrowWait(replica).getCount());
+        assertEquals(1, metrics.borrowWait(primary).getCount());
+    }
+}
@@ -0,0 +1,116 @@
+package com.northwind.data;
+
+import com.northwind.metrics.DaoMetrics;
+import com.northwind.model.Shipper;
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// ShipperDao's reference table and fingerprint on in-memory H2 databases in MySQL mode
+class ReferenceTableTest {
+    private final List<BasicDataSource> pools = new ArrayList<>();
+    private ReadWriteRoutingDataSource routing;
+
+    @AfterEach
+    void dropDatabases() throws SQLException {
+        if (routing != null) {
+            routing.close();
+        }
+        for (BasicDataSource pool : pools) {
+            execute(pool, "DROP ALL OBJECTS");
+            pool.close();
+        }
+    }
+
+    // a new database with shipper 1 (Speedy Express)
+    private BasicDataSource database() throws SQLException {
+        BasicDataSource pool = new BasicDataSource();
+        pool.setUrl("jdbc:h2:mem:shippers-" + UUID.randomUUID() + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        pools.add(pool);
+        execute(pool, "CREATE ALIAS CRC32 FOR \"com.northwind.data.ProductCatalogTest.crc32\"",
+                """
+                CREATE TABLE shippers (
+                    ShipperID   INT AUTO_INCREMENT PRIMARY KEY,
+                    CompanyName VARCHAR(40) NOT NULL,
+                    Phone       VARCHAR(24)
+                )""",
+                "INSERT INTO shippers (CompanyName, Phone) VALUES ('Speedy Express', '(503) 555-9831')");
+        return pool;
+    }
+
+    private static void execute(BasicDataSource pool, String... statements) throws SQLException {
+        try (Connection connection = pool.getConnection(); Statement statement = connection.createStatement()) {
+            for (String sql : statements) {
+                statement.execute(sql);
+            }
+        }
+    }
+
+    @Test
+    void fingerprintTellsANullPhoneFromAMovedSeparator() throws SQLException {
+        BasicDataSource dataSource = database();
+        ShipperDao shipperDao = new ShipperDao(new JdbcRunner(dataSource));
+
+        execute(dataSource, "UPDATE shippers SET CompanyName = 'Speedy|Express', Phone = NULL");
+        long before = shipperDao.fingerprint();
+
+        // CONCAT_WS alone would read both rows as "1|Speedy|Express"
+        execute(dataSource, "UPDATE shippers SET CompanyName = 'Speedy', Phone = 'Express'");
+        assertNotEquals(before, shipperDao.fingerprint());
+    }
+
+    @Test
+    void reloadReadsTheFingerprintAndTheRowsFromOneReplica() throws SQLException {
+        BasicDataSource primary = database();
+        BasicDataSource current = database();
+        BasicDataSource lagging = database();
+        routing = new ReadWriteRoutingDataSource(primary, List.of(current, lagging), Duration.ZERO, Duration.ofHours(1));
+        ShipperDao shipperDao = new ShipperDao(new JdbcRunner(routing));
+        ReferenceTable<Shipper> table = shipperDao.preload();
+
+        // the primary and the first replica have the rename; the second replica has not caught up
+        for (BasicDataSource upToDate : List.of(primary, current)) {
+            execute(upToDate, "UPDATE shippers SET CompanyName = 'Speedy Express Ltd'");
+        }
+        // reads take turns on the replicas; a reload that paired the new fingerprint with the lagging
+        // replica's rows would keep the old name even after that replica catches up
+        table.reload();
+        table.reload();
+        execute(lagging, "UPDATE shippers SET CompanyName = 'Speedy Express Ltd'");
+        table.refresh();
+
+        assertEquals("Speedy Express Ltd", table.find(1).getCompanyName());
+    }
+
+    @Test
+    void readsServedFromMemoryAreRecorded() throws SQLException {
+        DaoMetrics metrics = new DaoMetrics(false);
+        ShipperDao shipperDao = new ShipperDao(new JdbcRunner(database(), metrics));
+
+        shipperDao.setCache(new EntityCache<>(10, Duration.ofMinutes(1)));
+        shipperDao.find(1);
+        shipperDao.find(1);
+        shipperDao.findByIds(Set.of(1));
+        // one database call for the miss, then two hits
+        assertEquals(2, metrics.get("ShipperDao.find").getCallCount());
+        assertEquals(1, metrics.get("ShipperDao.findByIds").getCallCount());
+
+        shipperDao.preload();
+        shipperDao.find(1);
+        shipperDao.getAll();
+        assertEquals(3, metrics.get("ShipperDao.find").getCallCount());
+        // preload's own read, then the hit
+        assertEquals(2, metrics.get("ShipperDao.getAll").getCallCount());
+    }
+}
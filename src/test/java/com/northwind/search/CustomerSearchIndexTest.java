@@ -0,0 +1,119 @@
+package com.northwind.search;
+
+import com.northwind.model.Customer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CustomerSearchIndexTest {
+    private final CustomerSearchIndex index = CustomerSearchIndex.of(List.of(
+            customer("ALFKI", "Alfreds Futterkiste", "Maria Anders", "Berlin", "Germany"),
+            customer("BERBO", "Berlin Books", "Hanna Moos", "Hamburg", "Germany"),
+            customer("DELIK", "Delikatessen Müller", "Peter Franken", "München", "Germany"),
+            customer("ANATR", "Ana Trujillo Emparedados", "Ana Trujillo", "México D.F.", "Mexico")));
+
+    private static Customer customer(String id, String company, String contact, String city, String country) {
+        return new Customer(id, company, contact, "Owner", "1 Main St", city, null, "12209", country, "030-0074321", null);
+    }
+
+    private static List<String> ids(List<Customer> customers) {
+        List<String> ids = new ArrayList<>();
+        for (Customer customer : customers) {
+            ids.add(customer.getCustomerId());
+        }
+        return ids;
+    }
+
+    @Test
+    void matchesWordsByPrefix() {
+        assertEquals(List.of("ALFKI"), ids(index.search("alf", 10)));
+        assertEquals(List.of("ANATR"), ids(index.search("ana tru", 10)));
+    }
+
+    @Test
+    void matchesInsideWordsOfThreeOrMoreLetters() {
+        assertEquals(List.of("DELIK"), ids(index.search("katessen", 10)));
+        // two letters only match from the start of a word
+        assertEquals(List.of(), ids(index.search("ll", 10)));
+    }
+
+    @Test
+    void ignoresCaseAndAccents() {
+        assertEquals(List.of("DELIK"), ids(index.search("MULLER", 10)));
+        assertEquals(List.of("ANATR"), ids(index.search("méxico", 10)));
+    }
+
+    @Test
+    void everyQueryWordHasToMatch() {
+        assertEquals(List.of("ALFKI"), ids(index.search("berlin maria", 10)));
+        assertEquals(List.of(), ids(index.search("berlin nobody", 10)));
+    }
+
+    @Test
+    void ranksCompanyNameMatchesAboveCityMatches() {
+        // "Berlin Books" has it in the company name, Alfreds only in the city
+        assertEquals(List.of("BERBO", "ALFKI"), ids(index.search("berlin", 10)));
+    }
+
+    @Test
+    void ranksExactWordsAbovePrefixes() {
+        CustomerSearchIndex ranked = CustomerSearchIndex.of(List.of(
+                customer("LONGE", "Chopsuey Chinese", "Yang Wang", "Bern", "Switzerland"),
+                customer("EXACT", "Chop Shop", "Yang Wang", "Bern", "Switzerland")));
+
+        assertEquals(List.of("EXACT", "LONGE"), ids(ranked.search("chop", 10)));
+    }
+
+    @Test
+    void limitKeepsTheBestMatches() {
+        List<Customer> results = index.search("germany", 2);
+
+        assertEquals(2, results.size());
+        assertEquals(3, index.search("germany", 10).size());
+        assertThrows(IllegalArgumentException.class, () -> index.search("germany", 0));
+    }
+
+    @Test
+    void putReplacesTheIndexedCustomer() {
+        index.put(customer("ALFKI", "Zeppelin Traders", "Maria Anders", "Berlin", "Germany"));
+
+        assertEquals(List.of(), ids(index.search("alfreds", 10)));
+        assertEquals(List.of("ALFKI"), ids(index.search("zeppelin", 10)));
+        assertEquals(4, index.size());
+    }
+
+    @Test
+    void removeDropsTheCustomerAndItsWords() {
+        index.remove("DELIK");
+
+        assertEquals(List.of(), ids(index.search("katessen", 10)));
+        assertEquals(3, index.size());
+
+        // the freed slot is reused by the next customer
+        index.put(customer("WOLZA", "Wolski Zajazd", "Zbyszek", "Warszawa", "Poland"));
+        assertEquals(List.of("WOLZA"), ids(index.search("zaj", 10)));
+        assertEquals(4, index.size());
+    }
+
+    @Test
+    void resultsAreCopies() {
+        Customer found = index.search("alfreds", 1).get(0);
+        found.setCompanyName("Changed by the caller");
+
+        assertEquals("Alfreds Futterkiste", index.search("alfreds", 1).get(0).getCompanyName());
+        assertNotSame(index.search("alfreds", 1).get(0), index.search("alfreds", 1).get(0));
+    }
+
+    @Test
+    void changesToAnIndexedObjectAreNotPickedUp() {
+        Customer customer = customer("FOLKO", "Folk och fä HB", "Maria Larsson", "Bräcke", "Sweden");
+        index.put(customer);
+        customer.setCompanyName("Renamed");
+
+        assertEquals(List.of("FOLKO"), ids(index.search("folk", 10)));
+        assertEquals(List.of(), ids(index.search("renamed", 10)));
+    }
+}